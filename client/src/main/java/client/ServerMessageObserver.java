@@ -0,0 +1,10 @@
+package client;
+
+import websocket.messages.ServerMessage;
+
+/**
+ * Gets every message the server sends over the game websocket
+ */
+public interface ServerMessageObserver {
+    void notify(ServerMessage message);
+}
@@ -0,0 +1,175 @@
+package client;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import websocket.commands.AnalyzeCommand;
+import websocket.commands.BinaryCommandCodec;
+import websocket.commands.ConnectCommand;
+import websocket.commands.MakeMoveCommand;
+import websocket.commands.UserGameCommand;
+import websocket.messages.AnalysisMessage;
+import websocket.messages.ErrorMessage;
+import websocket.messages.LoadGameMessage;
+import websocket.messages.MoveMessage;
+import websocket.messages.NotificationMessage;
+import websocket.messages.ServerMessage;
+
+import com.google.gson.Gson;
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.MessageHandler;
+import jakarta.websocket.Session;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+
+/**
+ * Talks to the server's /ws game endpoint. Commands go out as JSON, or in the compact
+ * {@link BinaryCommandCodec} form when {@code binary} is set; messages from the server are
+ * always JSON and are passed to the observer.
+ */
+public class WebSocketFacade extends Endpoint {
+    private final Gson gson = new Gson();
+    private final Session session;
+    private final boolean binary;
+    private final BinaryCommandCodec.Encoder encoder = new BinaryCommandCodec.Encoder();
+    // the game as of the last LOAD_GAME or MOVE, and the token to ask for it again with
+    private volatile ChessGame game;
+    private volatile String authToken;
+    private volatile boolean resyncing;
+
+    /**
+     * @param binary      send commands as binary frames
+     * @param moveUpdates ask for MOVE messages after each move instead of a whole LOAD_GAME
+     */
+    public WebSocketFacade(int port, boolean binary, boolean moveUpdates, ServerMessageObserver observer)
+            throws ClientException {
+        this.binary = binary;
+        try {
+            URI uri = new URI("ws://localhost:" + port + "/ws?delta=" + moveUpdates
+                    + (binary ? "&binary=" + BinaryCommandCodec.VERSION : ""));
+            session = ContainerProvider.getWebSocketContainer().connectToServer(this, uri);
+            session.addMessageHandler(new MessageHandler.Whole<String>() {
+                @Override
+                public void onMessage(String text) {
+                    ServerMessage message = read(text);
+                    if (message instanceof MoveMessage update && !follow(update)) {
+                        // out of step with the server; the whole game comes back as a LOAD_GAME, and
+                        // MOVEs until then are dropped
+                        if (!resyncing) {
+                            resyncing = true;
+                            try {
+                                resync(authToken, update.getGameID());
+                            } catch (ClientException ex) {
+                                observer.notify(new ErrorMessage(ex.getMessage()));
+                            }
+                        }
+                        return;
+                    }
+                    if (message instanceof LoadGameMessage load) {
+                        game = load.getGame().game();
+                        resyncing = false;
+                    }
+                    observer.notify(message);
+                }
+            });
+        } catch (Exception ex) {
+            throw new ClientException("Error: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public void onOpen(Session session, EndpointConfig config) {
+    }
+
+    /**
+     * @return the game as of the last LOAD_GAME or MOVE, or null before the first one
+     */
+    public ChessGame getGame() {
+        return game;
+    }
+
+    public void connect(String authToken, int gameID) throws ClientException {
+        this.authToken = authToken;
+        send(new ConnectCommand(authToken, gameID, null));
+    }
+
+    /**
+     * Reconnects to a game, asking for just the events after {@code lastSequence} (the sequence of
+     * the last message we got for it). The server sends the whole game if it can't
+     */
+    public void resume(String authToken, int gameID, long lastSequence) throws ClientException {
+        this.authToken = authToken;
+        send(new ConnectCommand(authToken, gameID, lastSequence));
+    }
+
+    public void makeMove(String authToken, int gameID, ChessMove move) throws ClientException {
+        send(new MakeMoveCommand(authToken, gameID, move));
+    }
+
+    public void leave(String authToken, int gameID) throws ClientException {
+        send(new UserGameCommand(UserGameCommand.CommandType.LEAVE, authToken, gameID));
+    }
+
+    public void resign(String authToken, int gameID) throws ClientException {
+        send(new UserGameCommand(UserGameCommand.CommandType.RESIGN, authToken, gameID));
+    }
+
+    /**
+     * Asks for the whole game again, e.g. when a MOVE doesn't line up with our board
+     */
+    public void resync(String authToken, int gameID) throws ClientException {
+        send(new UserGameCommand(UserGameCommand.CommandType.RESYNC, authToken, gameID));
+    }
+
+    /**
+     * Asks the engine for the best move in the game's current position; the answer comes back as
+     * an ANALYSIS message. Leave the limits null for the server's defaults
+     */
+    public void analyze(String authToken, int gameID, Integer depth, Long millis) throws ClientException {
+        send(new AnalyzeCommand(authToken, gameID, depth, millis));
+    }
+
+    public void close() throws ClientException {
+        try {
+            session.close();
+        } catch (IOException ex) {
+            throw new ClientException("Error: " + ex.getMessage());
+        }
+    }
+
+    // applies a MOVE to our board; false if the board didn't line up with it
+    private boolean follow(MoveMessage update) {
+        ChessGame current = game;
+        ChessGame next = current == null || resyncing ? null : update.applyTo(current);
+        if (next == null) {
+            return false;
+        }
+        game = next;
+        return true;
+    }
+
+    private synchronized void send(UserGameCommand command) throws ClientException {
+        try {
+            if (binary) {
+                session.getBasicRemote().sendBinary(ByteBuffer.wrap(encoder.encode(command)));
+            } else {
+                session.getBasicRemote().sendText(gson.toJson(command));
+            }
+        } catch (IOException ex) {
+            throw new ClientException("Error: " + ex.getMessage());
+        }
+    }
+
+    private ServerMessage read(String text) {
+        ServerMessage message = gson.fromJson(text, ServerMessage.class);
+        return switch (message.getServerMessageType()) {
+            case LOAD_GAME -> gson.fromJson(text, LoadGameMessage.class);
+            case MOVE -> gson.fromJson(text, MoveMessage.class);
+            case ERROR -> gson.fromJson(text, ErrorMessage.class);
+            case NOTIFICATION -> gson.fromJson(text, NotificationMessage.class);
+            case ANALYSIS -> gson.fromJson(text, AnalysisMessage.class);
+        };
+    }
+}
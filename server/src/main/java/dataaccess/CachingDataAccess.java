@@ -0,0 +1,354 @@
+package dataaccess;
+
+import chess.ChessClock;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.InvalidMoveException;
+import model.AuthData;
+import model.GameData;
+import model.UserData;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps games that are being played in memory so a move doesn't have to load and save the
+ * whole game from the database.
+ * <p>
+ * A move is applied to the in-memory game and only the move itself is written (to the move
+ * journal) before it's acknowledged. A background thread saves the boards of changed games in
+ * batches every so often, and drops the journal entries those boards already include. If the
+ * server stops before a board is saved, the journal is replayed the next time the game is loaded.
+ * <p>
+ * Board changes must only come from the game's own mailbox (see server.GameActors); other
+ * threads should use {@link #updatePlayers} to change who is playing.
+ */
+public class CachingDataAccess implements DataAccess {
+    private final DataAccess db;
+    private final int maxGames;
+    private final long idleMillis;
+    private final ConcurrentHashMap<Integer, Entry> games = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    private static class Entry {
+        final ReentrantLock lock = new ReentrantLock();
+        volatile GameData data;
+        volatile long lastUsed;
+        // copy of the board as of the last recorded change, and the last journal id it includes
+        ChessGame saved;
+        long journalID;
+        boolean dirty;
+
+        Entry(GameData data, long journalID) {
+            this.data = data;
+            this.saved = new ChessGame(data.game());
+            this.journalID = journalID;
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * @param db          where games really live
+     * @param maxGames    most games to keep in memory
+     * @param idleMillis  how long a game can go unused before it's dropped from memory
+     * @param flushMillis how often changed boards are saved
+     */
+    public CachingDataAccess(DataAccess db, int maxGames, long idleMillis, long flushMillis) {
+        this.db = db;
+        this.maxGames = maxGames;
+        this.idleMillis = idleMillis;
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "game-cache-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // GAMES
+
+    @Override
+    public GameData getGame(int gameID) throws DataAccessException {
+        Entry entry = games.get(gameID);
+        if (entry != null) {
+            entry.lastUsed = System.currentTimeMillis();
+            return entry.data;
+        }
+        GameData game = db.getGame(gameID);
+        if (game == null) {
+            return null;
+        }
+        Entry loaded = load(game);
+        Entry existing = games.putIfAbsent(gameID, loaded);
+        return existing == null ? loaded.data : existing.data;
+    }
+
+    // replays any moves made after the board was last saved
+    private Entry load(GameData game) throws DataAccessException {
+        long journalID = 0;
+        List<JournaledMove> moves = db.journaledMoves(game.gameID());
+        // the journal doesn't record when moves were made, so replay them without the clock;
+        // it stays as of the saved board, which is at most a flush interval old
+        ChessClock clock = game.game().getClock();
+        game.game().setClock(null);
+        try {
+            for (JournaledMove journaled : moves) {
+                try {
+                    game.game().makeMove(journaled.move());
+                } catch (InvalidMoveException ex) {
+                    throw new DataAccessException("Journal for game " + game.gameID() + " doesn't replay: " + ex.getMessage());
+                }
+                journalID = journaled.journalID();
+            }
+        } finally {
+            game.game().setClock(clock);
+        }
+        Entry entry = new Entry(game, journalID);
+        entry.dirty = !moves.isEmpty();
+        return entry;
+    }
+
+    @Override
+    public void recordMove(GameData game, ChessMove move) throws DataAccessException {
+        Entry entry = games.get(game.gameID());
+        if (entry == null) {
+            updateGame(game);
+            return;
+        }
+        entry.lock.lock();
+        try {
+            entry.journalID = db.appendMove(game.gameID(), move);
+            adopt(entry, game);
+            entry.saved = new ChessGame(game.game());
+            entry.dirty = true;
+            entry.lastUsed = System.currentTimeMillis();
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    // the mover's board replaces the cached one (moves are made on a copy), but the players stay
+    // as the cache has them
+    private void adopt(Entry entry, GameData game) {
+        GameData data = entry.data;
+        if (data.game() != game.game()) {
+            entry.data = new GameData(data.gameID(), data.whiteUsername(), data.blackUsername(), data.gameName(), game.game());
+        }
+    }
+
+    @Override
+    public void updateGame(GameData game) throws DataAccessException {
+        // only the board is saved: the players in a game being played can be older than a join that
+        // came in over HTTP, and updatePlayers is what changes those
+        Entry entry = games.get(game.gameID());
+        if (entry == null) {
+            // the board was loaded with its journal replayed, so none of the journal is needed now
+            db.saveSnapshots(List.of(new GameSnapshot(game.gameID(), new ChessGame(game.game()), Long.MAX_VALUE)));
+            return;
+        }
+        entry.lock.lock();
+        try {
+            ChessGame copy = new ChessGame(game.game());
+            db.saveSnapshots(List.of(new GameSnapshot(game.gameID(), copy, entry.journalID)));
+            adopt(entry, game);
+            entry.saved = copy;
+            entry.dirty = false;
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    @Override
+    public void updatePlayers(int gameID, String whiteUsername, String blackUsername) throws DataAccessException {
+        Entry entry = games.get(gameID);
+        if (entry == null) {
+            db.updatePlayers(gameID, whiteUsername, blackUsername);
+            return;
+        }
+        entry.lock.lock();
+        try {
+            db.updatePlayers(gameID, whiteUsername, blackUsername);
+            GameData data = entry.data;
+            entry.data = new GameData(gameID, whiteUsername, blackUsername, data.gameName(), data.game());
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    @Override
+    public GameData createGame(GameData game) throws DataAccessException {
+        return db.createGame(game);
+    }
+
+    @Override
+    public Collection<GameData> listGames() throws DataAccessException {
+        var results = new ArrayList<GameData>();
+        forEachGame(results::add);
+        return results;
+    }
+
+    @Override
+    public void forEachGame(GameVisitor visitor) throws DataAccessException {
+        // games in memory may be ahead of the database, so list those instead
+        db.forEachGame(game -> {
+            Entry entry = games.get(game.gameID());
+            visitor.visit(entry == null ? game : current(entry));
+        });
+    }
+
+    // a copy safe to read on this thread while the game's own thread keeps playing
+    private GameData current(Entry entry) {
+        entry.lock.lock();
+        try {
+            GameData data = entry.data;
+            return new GameData(data.gameID(), data.whiteUsername(), data.blackUsername(), data.gameName(), entry.saved);
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    @Override
+    public long appendMove(int gameID, ChessMove move) throws DataAccessException {
+        return db.appendMove(gameID, move);
+    }
+
+    @Override
+    public List<JournaledMove> journaledMoves(int gameID) throws DataAccessException {
+        return db.journaledMoves(gameID);
+    }
+
+    @Override
+    public void saveSnapshots(Collection<GameSnapshot> snapshots) throws DataAccessException {
+        db.saveSnapshots(snapshots);
+    }
+
+    // FLUSHING AND EVICTION
+
+    /**
+     * Saves every changed board now, then drops games that haven't been used in a while
+     */
+    public void flush() throws DataAccessException {
+        var snapshots = new ArrayList<GameSnapshot>();
+        for (Entry entry : games.values()) {
+            entry.lock.lock();
+            try {
+                if (entry.dirty) {
+                    snapshots.add(new GameSnapshot(entry.data.gameID(), entry.saved, entry.journalID));
+                }
+            } finally {
+                entry.lock.unlock();
+            }
+        }
+
+        db.saveSnapshots(snapshots);
+
+        for (GameSnapshot snapshot : snapshots) {
+            Entry entry = games.get(snapshot.gameID());
+            if (entry == null) {
+                continue;
+            }
+            entry.lock.lock();
+            try {
+                // only clean if nothing else was recorded while we were saving
+                if (entry.journalID == snapshot.journalID()) {
+                    entry.dirty = false;
+                }
+            } finally {
+                entry.lock.unlock();
+            }
+        }
+        evict();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (DataAccessException | RuntimeException ex) {
+            // the games stay dirty and get another try next time
+            System.err.println("Unable to save cached games: " + ex.getMessage());
+        }
+    }
+
+    private void evict() {
+        long cutoff = System.currentTimeMillis() - idleMillis;
+        for (Map.Entry<Integer, Entry> mapEntry : games.entrySet()) {
+            if (mapEntry.getValue().lastUsed < cutoff) {
+                removeIfClean(mapEntry.getKey());
+            }
+        }
+
+        int extra = games.size() - maxGames;
+        if (extra > 0) {
+            games.entrySet().stream()
+                    .sorted(Comparator.comparingLong(mapEntry -> mapEntry.getValue().lastUsed))
+                    .limit(extra)
+                    .forEach(mapEntry -> removeIfClean(mapEntry.getKey()));
+        }
+    }
+
+    private void removeIfClean(int gameID) {
+        games.computeIfPresent(gameID, (id, entry) -> {
+            entry.lock.lock();
+            try {
+                return entry.dirty ? entry : null;
+            } finally {
+                entry.lock.unlock();
+            }
+        });
+    }
+
+    public int cachedGames() {
+        return games.size();
+    }
+
+    public void close() {
+        flusher.shutdown();
+        flushQuietly();
+    }
+
+    // EVERYTHING ELSE GOES STRAIGHT THROUGH
+
+    @Override
+    public void clear() throws DataAccessException {
+        games.clear();
+        db.clear();
+    }
+
+    @Override
+    public void createUser(UserData user) throws DataAccessException {
+        db.createUser(user);
+    }
+
+    @Override
+    public void createHashedUser(UserData user) throws DataAccessException {
+        db.createHashedUser(user);
+    }
+
+    @Override
+    public UserData getUser(String username) throws DataAccessException {
+        return db.getUser(username);
+    }
+
+    @Override
+    public void createAuth(AuthData auth) throws DataAccessException {
+        db.createAuth(auth);
+    }
+
+    @Override
+    public AuthData getAuth(String authToken) throws DataAccessException {
+        return db.getAuth(authToken);
+    }
+
+    @Override
+    public void deleteAuth(String authToken) throws DataAccessException {
+        db.deleteAuth(authToken);
+    }
+}
@@ -1,6 +1,9 @@
 package dataaccess;
 
 import java.util.Collection;
+import java.util.List;
+
+import chess.ChessMove;
 import model.UserData;
 import model.GameData;
 import model.AuthData;
@@ -11,6 +14,12 @@ public interface DataAccess {
 
     void createUser(UserData user) throws DataAccessException;
 
+    /**
+     * Same as createUser, but the password has already been through {@link PasswordHasher}, so
+     * it's stored as is
+     */
+    void createHashedUser(UserData user) throws DataAccessException;
+
     UserData getUser(String username) throws DataAccessException;
 
     GameData createGame(GameData game) throws DataAccessException;
@@ -19,8 +28,43 @@ public interface DataAccess {
 
     Collection<GameData> listGames() throws DataAccessException;
 
+    /**
+     * Hands every game to the visitor in turn without building a list first
+     */
+    void forEachGame(GameVisitor visitor) throws DataAccessException;
+
     void updateGame(GameData game) throws DataAccessException;
 
+    /**
+     * Changes who is playing a game without touching the board
+     */
+    void updatePlayers(int gameID, String whiteUsername, String blackUsername) throws DataAccessException;
+
+    /**
+     * Saves a game right after a move was made on it. By default that is just a full updateGame,
+     * but a cache can apply it in memory and save the board later
+     */
+    default void recordMove(GameData game, ChessMove move) throws DataAccessException {
+        updateGame(game);
+    }
+
+    /**
+     * Adds a move to the game's move journal
+     *
+     * @return the id the move was journaled under, increasing over time
+     */
+    long appendMove(int gameID, ChessMove move) throws DataAccessException;
+
+    /**
+     * Moves journaled for the game that its saved board doesn't include yet, oldest first
+     */
+    List<JournaledMove> journaledMoves(int gameID) throws DataAccessException;
+
+    /**
+     * Saves each snapshot's board and drops the journaled moves it already includes, as one unit
+     */
+    void saveSnapshots(Collection<GameSnapshot> snapshots) throws DataAccessException;
+
     void createAuth(AuthData auth) throws DataAccessException;
 
     AuthData getAuth(String authToken) throws DataAccessException;
@@ -1,7 +1,13 @@
 package dataaccess;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.*;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
 
 public class DatabaseManager {
     private static String databaseName;
@@ -9,6 +15,22 @@ public class DatabaseManager {
     private static String dbPassword;
     private static String connectionUrl;
 
+    /*
+     * Connections are pooled separately from the request threads. With virtual threads there can be
+     * thousands of requests in flight, but only this many of them talk to MySQL at once; the rest
+     * wait for a permit.
+     */
+    private static volatile Semaphore permits = new Semaphore(16, true);
+    private static final ConcurrentLinkedDeque<IdleConnection> idle = new ConcurrentLinkedDeque<>();
+    // goes up every time the properties change, so connections to the old database aren't reused
+    private static volatile int generation;
+    // a connection that sat idle longer than this is checked with the server before it's handed out,
+    // since MySQL drops connections that go quiet for too long
+    private static final long VALIDATE_AFTER_IDLE_MILLIS = 30_000;
+    private static final int VALIDATE_TIMEOUT_SECONDS = 2;
+
+    private record IdleConnection(Connection conn, int generation, long idleSince) {}
+
     /*
      * Load the database information for the db.properties file.
      */
@@ -42,16 +64,116 @@ public class DatabaseManager {
      * </code>
      */
     static Connection getConnection() throws DataAccessException {
+        Semaphore pool = permits;
         try {
-            //do not wrap the following line with a try-with-resources
-            var conn = DriverManager.getConnection(connectionUrl, dbUsername, dbPassword);
-            conn.setCatalog(databaseName);
-            return conn;
+            pool.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessException("interrupted while waiting for a connection", ex);
+        }
+        try {
+            int current = generation;
+            Connection conn = borrowIdle(current);
+            if (conn == null) {
+                //do not wrap the following line with a try-with-resources
+                conn = DriverManager.getConnection(connectionUrl, dbUsername, dbPassword);
+                conn.setCatalog(databaseName);
+            }
+            return pooled(conn, pool, current);
         } catch (SQLException ex) {
+            pool.release();
             throw new DataAccessException("failed to get connection", ex);
         }
     }
 
+    // the most recently used idle connection that still works, or null if there isn't one
+    private static Connection borrowIdle(int current) {
+        IdleConnection entry;
+        while ((entry = idle.pollFirst()) != null) {
+            Connection conn = entry.conn();
+            try {
+                boolean stale = System.currentTimeMillis() - entry.idleSince() > VALIDATE_AFTER_IDLE_MILLIS;
+                if (entry.generation() == current && !conn.isClosed()
+                        && (!stale || conn.isValid(VALIDATE_TIMEOUT_SECONDS))) {
+                    return conn;
+                }
+            } catch (SQLException ex) {
+                // broken; drop it and try the next one
+            }
+            closeQuietly(conn);
+        }
+        return null;
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException ignored) {
+            // already broken, nothing else to do
+        }
+    }
+
+    /**
+     * Sets how many connections can be open at once. Call before the server starts taking requests.
+     */
+    public static void setMaxConnections(int maxConnections) {
+        permits = new Semaphore(maxConnections, true);
+    }
+
+    // wraps the connection so close() puts it back in the pool instead of closing it
+    private static Connection pooled(Connection conn, Semaphore pool, int connGeneration) {
+        InvocationHandler handler = new InvocationHandler() {
+            private boolean returned = false;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close" -> {
+                        if (!returned) {
+                            returned = true;
+                            release(conn, pool, connGeneration);
+                        }
+                        return null;
+                    }
+                    case "isClosed" -> {
+                        return returned || conn.isClosed();
+                    }
+                    default -> {
+                        if (returned) {
+                            throw new SQLException("connection already closed");
+                        }
+                        try {
+                            return method.invoke(conn, args);
+                        } catch (InvocationTargetException ex) {
+                            throw ex.getCause();
+                        }
+                    }
+                }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(
+                DatabaseManager.class.getClassLoader(), new Class<?>[]{Connection.class}, handler);
+    }
+
+    private static void release(Connection conn, Semaphore pool, int connGeneration) {
+        try {
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+            if (connGeneration != generation) {
+                // the properties changed while it was out
+                conn.close();
+            } else if (!conn.isClosed()) {
+                idle.offerFirst(new IdleConnection(conn, connGeneration, System.currentTimeMillis()));
+            }
+        } catch (SQLException ex) {
+            closeQuietly(conn);
+        } finally {
+            pool.release();
+        }
+    }
+
     private static void loadPropertiesFromResources() {
         try (var propStream = Thread.currentThread().getContextClassLoader().getResourceAsStream("db.properties")) {
             if (propStream == null) {
@@ -65,7 +187,7 @@ public class DatabaseManager {
         }
     }
 
-    private static void loadProperties(Properties props) {
+    private static synchronized void loadProperties(Properties props) {
         databaseName = props.getProperty("db.name");
         dbUsername = props.getProperty("db.user");
         dbPassword = props.getProperty("db.password");
@@ -73,5 +195,12 @@ public class DatabaseManager {
         var host = props.getProperty("db.host");
         var port = Integer.parseInt(props.getProperty("db.port"));
         connectionUrl = String.format("jdbc:mysql://%s:%d", host, port);
+
+        // pooled connections still point at the old database
+        generation++;
+        IdleConnection entry;
+        while ((entry = idle.pollFirst()) != null) {
+            closeQuietly(entry.conn());
+        }
     }
 }
@@ -0,0 +1,9 @@
+package dataaccess;
+
+import chess.ChessGame;
+
+/**
+ * A copy of a game's board to save, and the last journaled move that copy already includes
+ */
+public record GameSnapshot(int gameID, ChessGame game, long journalID) {
+}
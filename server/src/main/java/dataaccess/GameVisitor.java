@@ -0,0 +1,14 @@
+package dataaccess;
+
+import model.GameData;
+
+import java.io.IOException;
+
+/**
+ * Receives games one at a time from {@link DataAccess#forEachGame}, so callers can write
+ * each one out without holding the whole list in memory.
+ */
+@FunctionalInterface
+public interface GameVisitor {
+    void visit(GameData game) throws IOException;
+}
@@ -0,0 +1,10 @@
+package dataaccess;
+
+/**
+ * Indicates the password hasher is already at its limit and didn't take the request
+ */
+public class HasherBusyException extends DataAccessException {
+    public HasherBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,9 @@
+package dataaccess;
+
+import chess.ChessMove;
+
+/**
+ * A move saved to the move journal, and the id it was saved under
+ */
+public record JournaledMove(long journalID, ChessMove move) {
+}
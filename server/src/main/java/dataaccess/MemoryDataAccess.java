@@ -4,23 +4,42 @@ import model.AuthData;
 import model.UserData;
 import model.GameData;
 
-import org.mindrot.jbcrypt.BCrypt;
+import chess.ChessGame;
+import chess.ChessMove;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Collection;
 
+// every method that touches the maps is synchronized, since users get created on the password
+// hasher's threads while request threads read and write the same maps. createUser hashes outside
+// the lock so one slow hash doesn't hold everyone else up
 public class MemoryDataAccess implements DataAccess {
     private Map<String, UserData> users = new HashMap<>();
     private Map<Integer, GameData> games = new HashMap<>();
     private Map<String, AuthData> auths = new HashMap<>();
+    private Map<Integer, List<JournaledMove>> journal = new HashMap<>();
     int nextGameId = 1;
+    long nextJournalId = 1;
+    private final PasswordHasher hasher;
+
+    public MemoryDataAccess() {
+        this(PasswordHasher.defaultHasher());
+    }
+
+    public MemoryDataAccess(PasswordHasher hasher) {
+        this.hasher = hasher;
+    }
 
     @Override
-    public void clear() {
+    public synchronized void clear() {
         users.clear();
         games.clear();
         auths.clear();
+        journal.clear();
         nextGameId = 1;
     }
 
@@ -28,59 +47,122 @@ public class MemoryDataAccess implements DataAccess {
 
     @Override
     public void createUser(UserData user) throws DataAccessException {
-        if (users.containsKey(user.username())) {
+        if (getUser(user.username()) != null) {
             throw new DataAccessException("User already taken: " + user.username());
         }
-        String hashedPassword = BCrypt.hashpw(user.password(), BCrypt.gensalt());
-        users.put(user.username(), new UserData(user.username(), hashedPassword, user.email()));
+        createHashedUser(new UserData(user.username(), hasher.hash(user.password()), user.email()));
     }
 
     @Override
-    public UserData getUser(String username) {
+    public synchronized void createHashedUser(UserData user) throws DataAccessException {
+        if (users.putIfAbsent(user.username(), user) != null) {
+            throw new DataAccessException("User already taken: " + user.username());
+        }
+    }
+
+    @Override
+    public synchronized UserData getUser(String username) {
         return users.get(username);
     }
 
 
 
     @Override
-    public GameData createGame(GameData game) {
+    public synchronized GameData createGame(GameData game) {
         GameData saved = new GameData(nextGameId++, game.whiteUsername(), game.blackUsername(), game.gameName(), game.game());
-        games.put(saved.gameID(), saved);
+        games.put(saved.gameID(), copy(saved));
         return saved;
     }
 
     @Override
-    public GameData getGame(int gameID) {
-        return games.get(gameID);
+    public synchronized GameData getGame(int gameID) {
+        return copy(games.get(gameID));
+    }
+
+    // games are copied in and out like a real database would, so changing one
+    // we handed out doesn't quietly change what's stored
+    private GameData copy(GameData game) {
+        if (game == null || game.game() == null) {
+            return game;
+        }
+        return new GameData(game.gameID(), game.whiteUsername(), game.blackUsername(), game.gameName(),
+                new ChessGame(game.game()));
+    }
+
+    @Override
+    public synchronized Collection<GameData> listGames() {
+        return new ArrayList<>(games.values());
     }
 
     @Override
-    public Collection<GameData> listGames() {
-        return games.values();
+    public synchronized void forEachGame(GameVisitor visitor) throws DataAccessException {
+        try {
+            for (GameData game : games.values()) {
+                visitor.visit(game);
+            }
+        } catch (IOException ex) {
+            throw new DataAccessException("Unable to write game: " + ex.getMessage(), ex);
+        }
     }
 
     @Override
-    public void updateGame(GameData game) throws DataAccessException {
+    public synchronized void updateGame(GameData game) throws DataAccessException {
         if (!games.containsKey(game.gameID())) {
             throw new DataAccessException("Game not found: " + game.gameID());
         }
-        games.put(game.gameID(), game);
+        games.put(game.gameID(), copy(game));
+    }
+
+    @Override
+    public synchronized void updatePlayers(int gameID, String whiteUsername, String blackUsername) throws DataAccessException {
+        GameData game = games.get(gameID);
+        if (game == null) {
+            throw new DataAccessException("Game not found: " + gameID);
+        }
+        games.put(gameID, new GameData(gameID, whiteUsername, blackUsername, game.gameName(), game.game()));
+    }
+
+    @Override
+    public synchronized long appendMove(int gameID, ChessMove move) {
+        long id = nextJournalId++;
+        journal.computeIfAbsent(gameID, k -> new ArrayList<>()).add(new JournaledMove(id, move));
+        return id;
+    }
+
+    @Override
+    public synchronized List<JournaledMove> journaledMoves(int gameID) {
+        return new ArrayList<>(journal.getOrDefault(gameID, List.of()));
+    }
+
+    @Override
+    public synchronized void saveSnapshots(Collection<GameSnapshot> snapshots) {
+        for (GameSnapshot snapshot : snapshots) {
+            GameData game = games.get(snapshot.gameID());
+            if (game != null) {
+                games.put(game.gameID(), new GameData(game.gameID(), game.whiteUsername(), game.blackUsername(),
+                        game.gameName(), snapshot.game()));
+            }
+            List<JournaledMove> moves = journal.get(snapshot.gameID());
+            if (moves != null) {
+                moves.removeIf(move -> move.journalID() <= snapshot.journalID());
+            }
+        }
     }
 
 
 
     @Override
-    public void createAuth(AuthData auth) {
+    public synchronized void createAuth(AuthData auth) {
         auths.put(auth.authToken(), auth);
     }
 
     @Override
-    public AuthData getAuth(String authToken) {
+    public synchronized AuthData getAuth(String authToken) {
         return auths.get(authToken);
     }
 
     @Override
-    public void deleteAuth(String authToken) throws DataAccessException {
+    public synchronized void deleteAuth(String authToken) throws DataAccessException {
         if (!auths.containsKey(authToken)) {
             throw new DataAccessException("Auth token not found: " + authToken);
         }
@@ -1,25 +1,37 @@
 package dataaccess;
 
 import chess.ChessGame;
+import chess.ChessMove;
 import model.GameData;
 import model.UserData;
 import model.AuthData;
 
-import org.mindrot.jbcrypt.BCrypt;
 import com.google.gson.Gson;
+import serialization.Serializer;
 
+import java.io.IOException;
 import java.sql.*;
 import static java.sql.Statement.RETURN_GENERATED_KEYS;
 import static java.sql.Types.NULL;
 import java.util.Collection;
 import java.util.ArrayList;
+import java.util.List;
 
 
 
 public class MySQLDataAccess implements DataAccess {
-    private final Gson gson = new Gson();
+    // games read per query when listing; bounds the memory a list takes on the server
+    private static final int LIST_PAGE_SIZE = 100;
+
+    private final Gson gson = Serializer.gson();
+    private final PasswordHasher hasher;
 
     public MySQLDataAccess() throws DataAccessException {
+        this(PasswordHasher.defaultHasher());
+    }
+
+    public MySQLDataAccess(PasswordHasher hasher) throws DataAccessException {
+        this.hasher = hasher;
         configureDatabase();
     }
 
@@ -48,6 +60,15 @@ public class MySQLDataAccess implements DataAccess {
               game TEXT NOT NULL,
               PRIMARY KEY (gameID)
             ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci
+            """,
+            """
+            CREATE TABLE IF NOT EXISTS moves (
+              moveID BIGINT NOT NULL AUTO_INCREMENT,
+              gameID INT NOT NULL,
+              move varchar(256) NOT NULL,
+              PRIMARY KEY (moveID),
+              INDEX (gameID, moveID)
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci
             """
     };
 
@@ -66,17 +87,21 @@ public class MySQLDataAccess implements DataAccess {
 
     @Override
     public void clear() throws DataAccessException {
-        for (String table: new String[]{"auth" ,"games", "users"}) {
+        for (String table: new String[]{"auth" ,"games", "users", "moves"}) {
             executeUpdate("TRUNCATE TABLE " + table);
         }
     }
 
     @Override
     public void createUser(UserData user) throws DataAccessException {
-        String hashedPassword = BCrypt.hashpw(user.password(), BCrypt.gensalt());
+        createHashedUser(new UserData(user.username(), hasher.hash(user.password()), user.email()));
+    }
+
+    @Override
+    public void createHashedUser(UserData user) throws DataAccessException {
         var statement = "INSERT INTO users (username, password, email) VALUES (?, ?, ?)";
         try {
-            executeUpdate(statement, user.username(), hashedPassword, user.email());
+            executeUpdate(statement, user.username(), user.password(), user.email());
         } catch (DataAccessException ex) {
             if (ex.getMessage().contains("Duplicate entry")) {
                 throw new DataAccessException("Error: username already taken");
@@ -177,6 +202,40 @@ public class MySQLDataAccess implements DataAccess {
 
     }
 
+    @Override
+    public void forEachGame(GameVisitor visitor) throws DataAccessException {
+        var statement = "SELECT gameID, whiteUsername, blackUsername, gameName, game FROM games"
+                + " WHERE gameID > ? ORDER BY gameID LIMIT " + LIST_PAGE_SIZE;
+
+        // read a page at a time and give the connection back before handing the page on, so a
+        // slow reader on the other end never holds a pooled connection
+        var page = new ArrayList<GameData>(LIST_PAGE_SIZE);
+        int after = 0;
+        do {
+            page.clear();
+            try (Connection conn = DatabaseManager.getConnection(); PreparedStatement ps = conn.prepareStatement(statement)) {
+                ps.setInt(1, after);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        page.add(gameInfo(rs));
+                    }
+                }
+            } catch (SQLException ex) {
+                throw new DataAccessException("Unable to list games: " + ex.getMessage(), ex);
+            }
+            try {
+                for (GameData game : page) {
+                    visitor.visit(game);
+                }
+            } catch (IOException ex) {
+                throw new DataAccessException("Unable to write game: " + ex.getMessage(), ex);
+            }
+            if (!page.isEmpty()) {
+                after = page.get(page.size() - 1).gameID();
+            }
+        } while (page.size() == LIST_PAGE_SIZE);
+    }
+
     @Override
     public void updateGame(GameData game) throws DataAccessException {
         var statement = " UPDATE games SET whiteUsername=?, blackUsername=?, gameName=?, game=? WHERE gameID=?";
@@ -184,6 +243,72 @@ public class MySQLDataAccess implements DataAccess {
         executeUpdate(statement, game.whiteUsername(), game.blackUsername(), game.gameName(), json, game.gameID());
     }
 
+    @Override
+    public void updatePlayers(int gameID, String whiteUsername, String blackUsername) throws DataAccessException {
+        var statement = "UPDATE games SET whiteUsername=?, blackUsername=? WHERE gameID=?";
+        executeUpdate(statement, whiteUsername, blackUsername, gameID);
+    }
+
+    @Override
+    public long appendMove(int gameID, ChessMove move) throws DataAccessException {
+        var statement = "INSERT INTO moves (gameID, move) VALUES (?, ?)";
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement ps = conn.prepareStatement(statement, RETURN_GENERATED_KEYS)) {
+            ps.setInt(1, gameID);
+            ps.setString(2, gson.toJson(move));
+            ps.executeUpdate();
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        } catch (SQLException ex) {
+            throw new DataAccessException("Unable to journal move: " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public List<JournaledMove> journaledMoves(int gameID) throws DataAccessException {
+        var moves = new ArrayList<JournaledMove>();
+        var statement = "SELECT moveID, move FROM moves WHERE gameID=? ORDER BY moveID";
+        try (Connection conn = DatabaseManager.getConnection(); PreparedStatement ps = conn.prepareStatement(statement)) {
+            ps.setInt(1, gameID);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    moves.add(new JournaledMove(rs.getLong("moveID"), gson.fromJson(rs.getString("move"), ChessMove.class)));
+                }
+            }
+        } catch (SQLException ex) {
+            throw new DataAccessException("Unable to read journaled moves: " + ex.getMessage(), ex);
+        }
+        return moves;
+    }
+
+    @Override
+    public void saveSnapshots(Collection<GameSnapshot> snapshots) throws DataAccessException {
+        if (snapshots.isEmpty()) {
+            return;
+        }
+        // one transaction so a board is never saved without its journal being trimmed, or the other way
+        try (Connection conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement update = conn.prepareStatement("UPDATE games SET game=? WHERE gameID=?");
+                 PreparedStatement trim = conn.prepareStatement("DELETE FROM moves WHERE gameID=? AND moveID<=?")) {
+                for (GameSnapshot snapshot : snapshots) {
+                    update.setString(1, gson.toJson(snapshot.game()));
+                    update.setInt(2, snapshot.gameID());
+                    update.addBatch();
+                    trim.setInt(1, snapshot.gameID());
+                    trim.setLong(2, snapshot.journalID());
+                    trim.addBatch();
+                }
+                update.executeBatch();
+                trim.executeBatch();
+            }
+            conn.commit();
+        } catch (SQLException ex) {
+            throw new DataAccessException("Unable to save games: " + ex.getMessage(), ex);
+        }
+    }
 
     private GameData gameInfo(ResultSet rs) throws SQLException {
         int gameID = rs.getInt("gameID");
@@ -0,0 +1,127 @@
+package dataaccess;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs BCrypt on its own small pool of threads so a burst of registers/logins can only ever
+ * use that many cores. When the pool and its queue are both full new work is turned away right
+ * away with a {@link HasherBusyException} instead of piling up on the request threads.
+ * <p>
+ * The async methods don't hold the caller's thread at all while the hash waits and runs; the
+ * blocking ones are for callers that have nothing else to do in the meantime.
+ */
+public class PasswordHasher {
+    private static PasswordHasher defaultHasher;
+
+    private final ThreadPoolExecutor executor;
+    private final int logRounds;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    public record Stats(int queueDepth, int active, long completed, long rejected,
+                        double averageHashMillis, double averageWaitMillis) {}
+
+    /**
+     * @param threads    most hashes that can run at once
+     * @param queueLimit most hashes that can wait for a thread before we start rejecting
+     * @param logRounds  bcrypt cost factor used for new hashes
+     */
+    public PasswordHasher(int threads, int queueLimit, int logRounds) {
+        this.logRounds = logRounds;
+        AtomicInteger count = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueLimit), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Hasher with one thread per core, used when nothing else was passed in (tests, mostly)
+     */
+    public static synchronized PasswordHasher defaultHasher() {
+        if (defaultHasher == null) {
+            defaultHasher = new PasswordHasher(Runtime.getRuntime().availableProcessors(), 64, 10);
+        }
+        return defaultHasher;
+    }
+
+    public String hash(String password) throws DataAccessException {
+        return await(hashAsync(password));
+    }
+
+    public boolean check(String password, String hashed) throws DataAccessException {
+        return await(checkAsync(password, hashed));
+    }
+
+    /**
+     * @throws HasherBusyException if the pool and its queue are full
+     */
+    public CompletableFuture<String> hashAsync(String password) throws HasherBusyException {
+        return submit(() -> BCrypt.hashpw(password, BCrypt.gensalt(logRounds)));
+    }
+
+    /**
+     * @throws HasherBusyException if the pool and its queue are full
+     */
+    public CompletableFuture<Boolean> checkAsync(String password, String hashed) throws HasherBusyException {
+        return submit(() -> BCrypt.checkpw(password, hashed));
+    }
+
+    public Stats stats() {
+        long done = completed.sum();
+        double hashMillis = done == 0 ? 0 : hashNanos.sum() / 1_000_000.0 / done;
+        double waitMillis = done == 0 ? 0 : waitNanos.sum() / 1_000_000.0 / done;
+        return new Stats(executor.getQueue().size(), executor.getActiveCount(), done, rejected.sum(),
+                hashMillis, waitMillis);
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> work) throws HasherBusyException {
+        long submitted = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                long started = System.nanoTime();
+                try {
+                    return work.get();
+                } finally {
+                    waitNanos.add(started - submitted);
+                    hashNanos.add(System.nanoTime() - started);
+                    completed.increment();
+                }
+            }, executor);
+        } catch (RejectedExecutionException ex) {
+            rejected.increment();
+            throw new HasherBusyException("Too many password requests, try again later");
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws DataAccessException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new DataAccessException("Interrupted while hashing password", ex);
+        } catch (ExecutionException ex) {
+            throw new DataAccessException("Unable to hash password: " + ex.getCause().getMessage(), ex.getCause());
+        }
+    }
+}
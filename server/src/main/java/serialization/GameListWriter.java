@@ -0,0 +1,78 @@
+package serialization;
+
+import dataaccess.GameVisitor;
+import model.GameData;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+import io.javalin.http.Context;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes {"games": [...]} straight to the response stream one game at a time, so the
+ * memory used by a list request doesn't grow with the number of games.
+ * <p>
+ * Nothing is written until the first game (or {@link #finish()}), so if the request fails
+ * before that the normal exception handler can still send its error body. Once games have gone
+ * out the 200 can't be taken back, so a failure after that is written with {@link #fail} instead:
+ * the list is closed off and the error added next to it, {"games": [...], "message": "Error: ..."}.
+ */
+public class GameListWriter implements GameVisitor {
+    private final Context context;
+    private final TypeAdapter<GameData> adapter = Serializer.gson().getAdapter(GameData.class);
+    private JsonWriter json;
+
+    public GameListWriter(Context context) {
+        this.context = context;
+    }
+
+    @Override
+    public void visit(GameData game) throws IOException {
+        start();
+        adapter.write(json, game);
+    }
+
+    public void finish() throws IOException {
+        start();
+        json.endArray();
+        json.endObject();
+        json.close();
+    }
+
+    /**
+     * @return true once some of the response has been written
+     */
+    public boolean started() {
+        return json != null;
+    }
+
+    /**
+     * Ends a list that's already been started with an error instead of finishing it normally
+     */
+    public void fail(String message) {
+        try {
+            json.endArray();
+            json.name("message").value(message);
+            json.endObject();
+            json.close();
+        } catch (IOException | IllegalStateException ex) {
+            // the client has gone away, or the writer broke part way through a game; nothing
+            // more can be sent
+        }
+    }
+
+    private void start() throws IOException {
+        if (json != null) {
+            return;
+        }
+        context.contentType("application/json");
+        json = new JsonWriter(new BufferedWriter(
+                new OutputStreamWriter(context.outputStream(), StandardCharsets.UTF_8)));
+        json.beginObject();
+        json.name("games").beginArray();
+    }
+}
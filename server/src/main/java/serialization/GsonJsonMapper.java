@@ -0,0 +1,35 @@
+package serialization;
+
+import com.google.gson.Gson;
+import io.javalin.json.JsonMapper;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Lets Javalin's {@code ctx.json} and {@code ctx.bodyAsClass} use the shared {@link Serializer} gson.
+ */
+public class GsonJsonMapper implements JsonMapper {
+    private final Gson gson = Serializer.gson();
+
+    @NotNull
+    @Override
+    public String toJsonString(@NotNull Object obj, @NotNull Type type) {
+        return gson.toJson(obj, type);
+    }
+
+    @NotNull
+    @Override
+    public <T> T fromJsonString(@NotNull String json, @NotNull Type targetType) {
+        return gson.fromJson(json, targetType);
+    }
+
+    @NotNull
+    @Override
+    public <T> T fromJsonStream(@NotNull InputStream json, @NotNull Type targetType) {
+        return gson.fromJson(new InputStreamReader(json, StandardCharsets.UTF_8), targetType);
+    }
+}
@@ -0,0 +1,570 @@
+package serialization;
+
+import chess.ChessBoard;
+import chess.ChessClock;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import model.GameData;
+import service.GameService;
+import service.UserService;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Holds the one Gson instance the server uses for every request. Gson is thread safe once built,
+ * so building it (and its reflection metadata) once instead of per request saves a lot of work.
+ * <p>
+ * The hot types get hand written adapters so nothing goes through reflection at runtime. The
+ * adapters write exactly the same JSON the reflection based Gson did, so stored games and
+ * clients using a plain {@code new Gson()} keep working.
+ */
+public final class Serializer {
+
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(ChessPosition.class, new PositionAdapter().nullSafe())
+            .registerTypeAdapter(ChessPiece.class, new PieceAdapter().nullSafe())
+            .registerTypeAdapter(ChessMove.class, new MoveAdapter().nullSafe())
+            .registerTypeAdapter(ChessBoard.class, new BoardAdapter().nullSafe())
+            .registerTypeAdapter(ChessGame.class, new GameAdapter().nullSafe())
+            .registerTypeAdapter(GameData.class, new GameDataAdapter().nullSafe())
+            .registerTypeAdapter(UserService.RegisterRequest.class, new RegisterRequestAdapter().nullSafe())
+            .registerTypeAdapter(UserService.RegisterResult.class, new RegisterResultAdapter().nullSafe())
+            .registerTypeAdapter(UserService.LoginRequest.class, new LoginRequestAdapter().nullSafe())
+            .registerTypeAdapter(UserService.LoginResult.class, new LoginResultAdapter().nullSafe())
+            .registerTypeAdapter(GameService.CreateGameRequest.class, new CreateGameRequestAdapter().nullSafe())
+            .registerTypeAdapter(GameService.CreateGameResult.class, new CreateGameResultAdapter().nullSafe())
+            .registerTypeAdapter(GameService.JoinGameRequest.class, new JoinGameRequestAdapter().nullSafe())
+            .create();
+
+    private Serializer() {
+    }
+
+    public static Gson gson() {
+        return GSON;
+    }
+
+    // helpers so the adapters below don't all repeat the null checks
+
+    private static String nextStringOrNull(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    private static int nextIntOrZero(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return 0;
+        }
+        return in.nextInt();
+    }
+
+    private static Long nextLongOrNull(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextLong();
+    }
+
+    private static <E extends Enum<E>> E nextEnumOrNull(JsonReader in, Class<E> type) throws IOException {
+        String name = nextStringOrNull(in);
+        return name == null ? null : Enum.valueOf(type, name);
+    }
+
+    // writes the field only when it has a value, same as gson does by default
+    private static void writeIfPresent(JsonWriter out, String name, String value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value);
+        }
+    }
+
+    private static void writeIfPresent(JsonWriter out, String name, Enum<?> value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value.name());
+        }
+    }
+
+    // CHESS
+
+    private static class PositionAdapter extends TypeAdapter<ChessPosition> {
+        @Override
+        public void write(JsonWriter out, ChessPosition position) throws IOException {
+            out.beginObject();
+            out.name("row").value(position.getRow());
+            out.name("col").value(position.getColumn());
+            out.endObject();
+        }
+
+        @Override
+        public ChessPosition read(JsonReader in) throws IOException {
+            int row = 0;
+            int col = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "row" -> row = in.nextInt();
+                    case "col" -> col = in.nextInt();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return new ChessPosition(row, col);
+        }
+    }
+
+    private static class PieceAdapter extends TypeAdapter<ChessPiece> {
+        @Override
+        public void write(JsonWriter out, ChessPiece piece) throws IOException {
+            out.beginObject();
+            writeIfPresent(out, "pieceColor", piece.getTeamColor());
+            writeIfPresent(out, "type", piece.getPieceType());
+            out.endObject();
+        }
+
+        @Override
+        public ChessPiece read(JsonReader in) throws IOException {
+            ChessGame.TeamColor color = null;
+            ChessPiece.PieceType type = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "pieceColor" -> color = nextEnumOrNull(in, ChessGame.TeamColor.class);
+                    case "type" -> type = nextEnumOrNull(in, ChessPiece.PieceType.class);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return new ChessPiece(color, type);
+        }
+    }
+
+    private static class MoveAdapter extends TypeAdapter<ChessMove> {
+        private final TypeAdapter<ChessPosition> positions = new PositionAdapter().nullSafe();
+
+        @Override
+        public void write(JsonWriter out, ChessMove move) throws IOException {
+            out.beginObject();
+            out.name("startPosition");
+            positions.write(out, move.getStartPosition());
+            out.name("endPosition");
+            positions.write(out, move.getEndPosition());
+            writeIfPresent(out, "promotionPiece", move.getPromotionPiece());
+            out.endObject();
+        }
+
+        @Override
+        public ChessMove read(JsonReader in) throws IOException {
+            ChessPosition start = null;
+            ChessPosition end = null;
+            ChessPiece.PieceType promotion = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "startPosition" -> start = positions.read(in);
+                    case "endPosition" -> end = positions.read(in);
+                    case "promotionPiece" -> promotion = nextEnumOrNull(in, ChessPiece.PieceType.class);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return new ChessMove(start, end, promotion);
+        }
+    }
+
+    private static class BoardAdapter extends TypeAdapter<ChessBoard> {
+        private final TypeAdapter<ChessPiece> pieces = new PieceAdapter().nullSafe();
+
+        // squares[row - 1][col - 1], same layout as the field inside ChessBoard
+        @Override
+        public void write(JsonWriter out, ChessBoard board) throws IOException {
+            out.beginObject();
+            out.name("squares").beginArray();
+            for (int row = 1; row <= 8; row++) {
+                out.beginArray();
+                for (int col = 1; col <= 8; col++) {
+                    ChessPiece piece = board.getPiece(new ChessPosition(row, col));
+                    pieces.write(out, piece);
+                }
+                out.endArray();
+            }
+            out.endArray();
+            out.endObject();
+        }
+
+        @Override
+        public ChessBoard read(JsonReader in) throws IOException {
+            ChessBoard board = new ChessBoard();
+            in.beginObject();
+            while (in.hasNext()) {
+                if (in.nextName().equals("squares")) {
+                    readSquares(in, board);
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return board;
+        }
+
+        private void readSquares(JsonReader in, ChessBoard board) throws IOException {
+            in.beginArray();
+            int row = 1;
+            while (in.hasNext()) {
+                in.beginArray();
+                int col = 1;
+                while (in.hasNext()) {
+                    ChessPiece piece = pieces.read(in);
+                    if (piece != null) {
+                        board.addPiece(new ChessPosition(row, col), piece);
+                    }
+                    col++;
+                }
+                in.endArray();
+                row++;
+            }
+            in.endArray();
+        }
+    }
+
+    private static class ClockAdapter extends TypeAdapter<ChessClock> {
+        @Override
+        public void write(JsonWriter out, ChessClock clock) throws IOException {
+            out.beginObject();
+            writeIfPresent(out, "mode", clock.getMode());
+            out.name("baseMillis").value(clock.getBaseMillis());
+            out.name("incrementMillis").value(clock.getIncrementMillis());
+            out.name("whiteMillis").value(clock.storedMillis(ChessGame.TeamColor.WHITE));
+            out.name("blackMillis").value(clock.storedMillis(ChessGame.TeamColor.BLACK));
+            out.name("turnStarted").value(clock.getTurnStarted());
+            out.endObject();
+        }
+
+        @Override
+        public ChessClock read(JsonReader in) throws IOException {
+            ChessClock.Mode mode = null;
+            long base = 0;
+            long increment = 0;
+            long white = 0;
+            long black = 0;
+            long turnStarted = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "mode" -> mode = nextEnumOrNull(in, ChessClock.Mode.class);
+                    case "baseMillis" -> base = in.nextLong();
+                    case "incrementMillis" -> increment = in.nextLong();
+                    case "whiteMillis" -> white = in.nextLong();
+                    case "blackMillis" -> black = in.nextLong();
+                    case "turnStarted" -> turnStarted = in.nextLong();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return new ChessClock(mode, base, increment, white, black, turnStarted);
+        }
+    }
+
+    private static class GameAdapter extends TypeAdapter<ChessGame> {
+        private final TypeAdapter<ChessBoard> boards = new BoardAdapter().nullSafe();
+        private final TypeAdapter<ChessClock> clocks = new ClockAdapter().nullSafe();
+
+        @Override
+        public void write(JsonWriter out, ChessGame game) throws IOException {
+            out.beginObject();
+            out.name("board");
+            boards.write(out, game.getBoard());
+            writeIfPresent(out, "turn", game.getTeamTurn());
+            out.name("gameOver").value(game.isGameOver());
+            out.name("ply").value(game.getPly());
+            if (game.getClock() != null) {
+                out.name("clock");
+                clocks.write(out, game.getClock());
+            }
+            out.endObject();
+        }
+
+        @Override
+        public ChessGame read(JsonReader in) throws IOException {
+            // same defaults as ChessGame's constructor when a field is missing, but the board is
+            // only set up if there isn't one to read
+            boolean hasBoard = false;
+            ChessBoard board = null;
+            ChessGame.TeamColor turn = ChessGame.TeamColor.WHITE;
+            boolean gameOver = false;
+            int ply = 0;
+            ChessClock clock = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "board" -> {
+                        board = boards.read(in);
+                        hasBoard = true;
+                    }
+                    case "turn" -> turn = nextEnumOrNull(in, ChessGame.TeamColor.class);
+                    case "gameOver" -> gameOver = in.nextBoolean();
+                    case "ply" -> ply = in.nextInt();
+                    case "clock" -> clock = clocks.read(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            ChessGame game = hasBoard ? new ChessGame(board, turn) : new ChessGame();
+            game.setTeamTurn(turn);
+            game.setGameOver(gameOver);
+            game.setPly(ply);
+            game.setClock(clock);
+            return game;
+        }
+    }
+
+    // MODEL
+
+    private static class GameDataAdapter extends TypeAdapter<GameData> {
+        private final TypeAdapter<ChessGame> games = new GameAdapter().nullSafe();
+
+        @Override
+        public void write(JsonWriter out, GameData data) throws IOException {
+            out.beginObject();
+            out.name("gameID").value(data.gameID());
+            writeIfPresent(out, "whiteUsername", data.whiteUsername());
+            writeIfPresent(out, "blackUsername", data.blackUsername());
+            writeIfPresent(out, "gameName", data.gameName());
+            if (data.game() != null) {
+                out.name("game");
+                games.write(out, data.game());
+            }
+            out.endObject();
+        }
+
+        @Override
+        public GameData read(JsonReader in) throws IOException {
+            int gameID = 0;
+            String white = null;
+            String black = null;
+            String name = null;
+            ChessGame game = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "gameID" -> gameID = nextIntOrZero(in);
+                    case "whiteUsername" -> white = nextStringOrNull(in);
+                    case "blackUsername" -> black = nextStringOrNull(in);
+                    case "gameName" -> name = nextStringOrNull(in);
+                    case "game" -> game = games.read(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return new GameData(gameID, white, black, name, game);
+        }
+    }
+
+    // SERVICE REQUESTS AND RESULTS
+
+    private static class RegisterRequestAdapter extends TypeAdapter<UserService.RegisterRequest> {
+        @Override
+        public void write(JsonWriter out, UserService.RegisterRequest req) throws IOException {
+            out.beginObject();
+            writeIfPresent(out, "username", req.username());
+            writeIfPresent(out, "password", req.password());
+            writeIfPresent(out, "email", req.email());
+            out.endObject();
+        }
+
+        @Override
+        public UserService.RegisterRequest read(JsonReader in) throws IOException {
+            String username = null;
+            String password = null;
+            String email = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "username" -> username = nextStringOrNull(in);
+                    case "password" -> password = nextStringOrNull(in);
+                    case "email" -> email = nextStringOrNull(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return new UserService.RegisterRequest(username, password, email);
+        }
+    }
+
+    private static class RegisterResultAdapter extends TypeAdapter<UserService.RegisterResult> {
+        @Override
+        public void write(JsonWriter out, UserService.RegisterResult result) throws IOException {
+            out.beginObject();
+            writeIfPresent(out, "username", result.username());
+            writeIfPresent(out, "authToken", result.authToken());
+            out.endObject();
+        }
+
+        @Override
+        public UserService.RegisterResult read(JsonReader in) throws IOException {
+            String username = null;
+            String authToken = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "username" -> username = nextStringOrNull(in);
+                    case "authToken" -> authToken = nextStringOrNull(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return new UserService.RegisterResult(username, authToken);
+        }
+    }
+
+    private static class LoginRequestAdapter extends TypeAdapter<UserService.LoginRequest> {
+        @Override
+        public void write(JsonWriter out, UserService.LoginRequest req) throws IOException {
+            out.beginObject();
+            writeIfPresent(out, "username", req.username());
+            writeIfPresent(out, "password", req.password());
+            out.endObject();
+        }
+
+        @Override
+        public UserService.LoginRequest read(JsonReader in) throws IOException {
+            String username = null;
+            String password = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "username" -> username = nextStringOrNull(in);
+                    case "password" -> password = nextStringOrNull(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return new UserService.LoginRequest(username, password);
+        }
+    }
+
+    private static class LoginResultAdapter extends TypeAdapter<UserService.LoginResult> {
+        @Override
+        public void write(JsonWriter out, UserService.LoginResult result) throws IOException {
+            out.beginObject();
+            writeIfPresent(out, "username", result.username());
+            writeIfPresent(out, "authToken", result.authToken());
+            out.endObject();
+        }
+
+        @Override
+        public UserService.LoginResult read(JsonReader in) throws IOException {
+            String username = null;
+            String authToken = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "username" -> username = nextStringOrNull(in);
+                    case "authToken" -> authToken = nextStringOrNull(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return new UserService.LoginResult(username, authToken);
+        }
+    }
+
+    private static class CreateGameRequestAdapter extends TypeAdapter<GameService.CreateGameRequest> {
+        @Override
+        public void write(JsonWriter out, GameService.CreateGameRequest req) throws IOException {
+            out.beginObject();
+            writeIfPresent(out, "gameName", req.gameName());
+            if (req.baseMillis() != null) {
+                out.name("baseMillis").value(req.baseMillis());
+            }
+            if (req.incrementMillis() != null) {
+                out.name("incrementMillis").value(req.incrementMillis());
+            }
+            if (req.clockMode() != null) {
+                out.name("clockMode").value(req.clockMode().name());
+            }
+            out.endObject();
+        }
+
+        @Override
+        public GameService.CreateGameRequest read(JsonReader in) throws IOException {
+            String gameName = null;
+            Long baseMillis = null;
+            Long incrementMillis = null;
+            ChessClock.Mode clockMode = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "gameName" -> gameName = nextStringOrNull(in);
+                    case "baseMillis" -> baseMillis = nextLongOrNull(in);
+                    case "incrementMillis" -> incrementMillis = nextLongOrNull(in);
+                    case "clockMode" -> clockMode = nextEnumOrNull(in, ChessClock.Mode.class);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return new GameService.CreateGameRequest(gameName, baseMillis, incrementMillis, clockMode);
+        }
+    }
+
+    private static class CreateGameResultAdapter extends TypeAdapter<GameService.CreateGameResult> {
+        @Override
+        public void write(JsonWriter out, GameService.CreateGameResult result) throws IOException {
+            out.beginObject();
+            out.name("gameID").value(result.gameID());
+            out.endObject();
+        }
+
+        @Override
+        public GameService.CreateGameResult read(JsonReader in) throws IOException {
+            int gameID = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                if (in.nextName().equals("gameID")) {
+                    gameID = nextIntOrZero(in);
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return new GameService.CreateGameResult(gameID);
+        }
+    }
+
+    private static class JoinGameRequestAdapter extends TypeAdapter<GameService.JoinGameRequest> {
+        @Override
+        public void write(JsonWriter out, GameService.JoinGameRequest req) throws IOException {
+            out.beginObject();
+            writeIfPresent(out, "playerColor", req.playerColor());
+            out.name("gameID").value(req.gameID());
+            out.endObject();
+        }
+
+        @Override
+        public GameService.JoinGameRequest read(JsonReader in) throws IOException {
+            String playerColor = null;
+            int gameID = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "playerColor" -> playerColor = nextStringOrNull(in);
+                    case "gameID" -> gameID = nextIntOrZero(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return new GameService.JoinGameRequest(playerColor, gameID);
+        }
+    }
+}
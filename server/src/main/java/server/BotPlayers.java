@@ -0,0 +1,130 @@
+package server;
+
+import chess.ChessClock;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.engine.Search;
+import chess.engine.SearchLimits;
+import chess.engine.TranspositionTable;
+import service.BotService;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Does the bots' thinking. Every bot game shares one fixed pool of threads, which is all the CPU
+ * bots get however many games are going.
+ * <p>
+ * To keep things fair, a game only ever has one think waiting (only one side can be on move),
+ * and thinks run in the order they were asked for, so a game waits behind at most one think per
+ * other bot game. A think stops at its bot's node budget or at the time limit, whichever comes
+ * first, so a strong bot can't hold a thread for long. In a timed game it also stops early enough
+ * to leave the bot time on its clock.
+ */
+public class BotPlayers {
+    // a bot in a timed game spends at most this share of what's left on its clock on one move
+    private static final int CLOCK_SHARE = 20;
+
+    private final ThreadPoolExecutor executor;
+    private final ThreadLocal<Search> searches;
+    private final long maxThinkMillis;
+    // games with a think waiting or running
+    private final Set<Integer> thinking = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder thinkNanos = new LongAdder();
+
+    public record Stats(int threads, int waiting, int thinking, long moves, long failures,
+                        double averageWaitMillis, double averageThinkMillis) {}
+
+    /**
+     * @param threads        most thinks that can run at once
+     * @param maxThinkMillis longest one move can take, however strong the bot
+     * @param tableMb        size of each thread's transposition table
+     */
+    public BotPlayers(int threads, long maxThinkMillis, int tableMb) {
+        this(threads, maxThinkMillis, () -> new Search(new TranspositionTable(tableMb)));
+    }
+
+    // newSearch makes each thread's search; tests swap in one that fails
+    BotPlayers(int threads, long maxThinkMillis, Supplier<Search> newSearch) {
+        this.maxThinkMillis = maxThinkMillis;
+        AtomicInteger count = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "bot-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        searches = ThreadLocal.withInitial(newSearch);
+    }
+
+    /**
+     * Starts {@code bot} thinking about its move in a game, unless that game already has a think
+     * going. Must be called on the game's mailbox; the game is copied before this returns.
+     *
+     * @param onMove    called with the move, on a thinking thread, once it's found; not called if
+     *                  the bot has no moves
+     * @param onFailure called, on a thinking thread, if the search throws. The game has no think
+     *                  going by then, so it can ask again
+     */
+    public void think(int gameID, ChessGame game, BotService.Bot bot, Consumer<ChessMove> onMove,
+                      Runnable onFailure) {
+        if (!thinking.add(gameID)) {
+            return;
+        }
+        var position = new ChessGame(game);
+        var limits = new SearchLimits(SearchLimits.MAX_DEPTH, thinkMillis(game), bot.nodes());
+        long submitted = System.nanoTime();
+        executor.execute(() -> {
+            long started = System.nanoTime();
+            ChessMove move;
+            try {
+                move = searches.get().search(position, limits).move();
+            } catch (RuntimeException ex) {
+                thinking.remove(gameID);
+                failures.increment();
+                System.err.println("Bot " + bot.username() + " failed to think in game " + gameID + ": " + ex);
+                onFailure.run();
+                return;
+            }
+            thinking.remove(gameID);
+            waitNanos.add(started - submitted);
+            thinkNanos.add(System.nanoTime() - started);
+            moves.increment();
+            if (move != null) {
+                onMove.accept(move);
+            }
+        });
+    }
+
+    public Stats stats() {
+        long done = moves.sum();
+        double waitMillis = done == 0 ? 0 : waitNanos.sum() / 1_000_000.0 / done;
+        double thinkMillis = done == 0 ? 0 : thinkNanos.sum() / 1_000_000.0 / done;
+        return new Stats(executor.getMaximumPoolSize(), executor.getQueue().size(), executor.getActiveCount(),
+                done, failures.sum(), waitMillis, thinkMillis);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private long thinkMillis(ChessGame game) {
+        ChessClock clock = game.getClock();
+        if (clock == null || !clock.isRunning()) {
+            return maxThinkMillis;
+        }
+        long left = clock.remainingMillis(game.getTeamTurn(), game.getTeamTurn(), System.currentTimeMillis());
+        return Math.max(1, Math.min(maxThinkMillis, left / CLOCK_SHARE));
+    }
+}
@@ -0,0 +1,270 @@
+package server;
+
+import model.AuthData;
+import websocket.commands.BinaryCommandCodec;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One open websocket and what we know about it: which game it's watching and as who.
+ * <p>
+ * Outgoing messages go on a small queue and are written one at a time without blocking the
+ * caller. A client that reads too slowly can't hold up anyone else: whole boards it hasn't been
+ * sent yet are replaced by newer ones, and if its queue still grows past the limits it's closed.
+ */
+public class Connection {
+    // what a queued message is, so we know which ones a newer board makes pointless
+    enum Kind {
+        MESSAGE,    // notifications and errors, always delivered
+        MOVE,       // a single move, pointless once a newer board is queued
+        STATE       // a whole board, pointless once a newer board is queued
+    }
+
+    private record Frame(String text, Kind kind) {}
+
+    private final Session session;
+    private final OutboundLimits limits;
+    private volatile Integer gameID;
+    private volatile String username;
+    private volatile AuthData auth;
+    private volatile boolean player;
+    private volatile boolean moveUpdates;
+    private volatile BinaryCommandCodec.Decoder decoder;
+
+    // guarded by this
+    private final ArrayDeque<Frame> queue = new ArrayDeque<>();
+    private int queuedChars;
+    private boolean writing;
+    private boolean closed;
+
+    // System.nanoTime() when the write in flight was started, 0 when there isn't one
+    private volatile long writeStarted;
+    // System.nanoTime() when the last ping was sent, until its pong comes back; 0 when none is due
+    private volatile long pingSent;
+
+    public Connection(Session session, OutboundLimits limits) {
+        this.session = session;
+        this.limits = limits;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public Integer getGameID() {
+        return gameID;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public boolean isPlayer() {
+        return player;
+    }
+
+    /**
+     * @return who this connection signed in as on CONNECT, or null if it hasn't (or was logged out)
+     */
+    public AuthData getAuth() {
+        return auth;
+    }
+
+    void bind(AuthData auth) {
+        this.auth = auth;
+    }
+
+    /**
+     * @return true if this client asked for MOVE messages instead of a whole LOAD_GAME after each move
+     */
+    public boolean wantsMoveUpdates() {
+        return moveUpdates;
+    }
+
+    void setMoveUpdates(boolean moveUpdates) {
+        this.moveUpdates = moveUpdates;
+    }
+
+    /**
+     * Lets this client send binary commands, which it asked for when it connected
+     */
+    void acceptBinary() {
+        decoder = new BinaryCommandCodec.Decoder();
+    }
+
+    /**
+     * The token handles this client has set up for binary commands, or null if it never asked to
+     * send them. Jetty hands us one message per session at a time, so only one thread ever uses
+     * it at once
+     */
+    BinaryCommandCodec.Decoder decoder() {
+        return decoder;
+    }
+
+    void joined(int gameID, String username, boolean player) {
+        this.gameID = gameID;
+        this.username = username;
+        this.player = player;
+    }
+
+    void left() {
+        this.gameID = null;
+        this.username = null;
+        this.player = false;
+    }
+
+    /**
+     * @return true if messages are piling up because this client isn't keeping up
+     */
+    public synchronized boolean isLagging() {
+        return queue.size() >= limits.laggingMessages;
+    }
+
+    /**
+     * Queues already serialized text to be sent. Never blocks
+     */
+    public void send(String text) {
+        send(text, Kind.MESSAGE);
+    }
+
+    void send(String text, Kind kind) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (kind == Kind.STATE) {
+                dropSuperseded();
+            }
+            queue.add(new Frame(text, kind));
+            queuedChars += text.length();
+            if (queue.size() > limits.maxQueuedMessages || queuedChars > limits.maxQueuedChars) {
+                tooSlow();
+                return;
+            }
+            if (writing) {
+                return;
+            }
+            writing = true;
+        }
+        writeNext();
+    }
+
+    // a new board makes any boards and moves still waiting to go out pointless
+    private void dropSuperseded() {
+        Iterator<Frame> frames = queue.iterator();
+        while (frames.hasNext()) {
+            Frame frame = frames.next();
+            if (frame.kind() != Kind.MESSAGE) {
+                frames.remove();
+                queuedChars -= frame.text().length();
+                limits.coalesced.increment();
+            }
+        }
+    }
+
+    private void tooSlow() {
+        closed = true;
+        queue.clear();
+        queuedChars = 0;
+        limits.slowDisconnects.increment();
+        session.close(StatusCode.POLICY_VIOLATION, "Too far behind");
+    }
+
+    // sends queued frames one at a time until the queue is empty or a write has to wait
+    private void writeNext() {
+        while (true) {
+            Frame frame;
+            synchronized (this) {
+                frame = queue.poll();
+                if (frame == null || closed || !session.isOpen()) {
+                    writing = false;
+                    writeStarted = 0;
+                    return;
+                }
+                queuedChars -= frame.text().length();
+            }
+            writeStarted = System.nanoTime();
+            var callback = new SendCallback();
+            session.getRemote().sendString(frame.text(), callback);
+            if (callback.returned()) {
+                // still being written; the callback picks up from here when it's done
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sends a ping unless something is already being written (a stuck write gets noticed anyway)
+     * or the last ping hasn't been answered yet
+     */
+    void ping() {
+        if (writeStarted != 0 || pingSent != 0 || !session.isOpen()) {
+            return;
+        }
+        pingSent = System.nanoTime();
+        session.getRemote().sendPing(ByteBuffer.allocate(0), new WriteCallback() {
+            @Override
+            public void writeFailed(Throwable cause) {
+                failed();
+                session.close();
+            }
+        });
+    }
+
+    /**
+     * The client answered our ping
+     */
+    void ponged() {
+        pingSent = 0;
+    }
+
+    /**
+     * @return how long the oldest unfinished write, or unanswered ping, has been waiting, or 0.
+     * Only a pong ends a ping's wait, so the ping itself (unlike for jetty's idle timeout) can't
+     * make a dead client look alive
+     */
+    long stalledNanos(long now) {
+        long write = writeStarted;
+        long ping = pingSent;
+        long oldest = write == 0 ? ping : ping == 0 ? write : Math.min(write, ping);
+        return oldest == 0 ? 0 : now - oldest;
+    }
+
+    private synchronized void failed() {
+        closed = true;
+        writing = false;
+        queue.clear();
+        queuedChars = 0;
+    }
+
+    // jetty may finish a write before sendString even returns. Whichever of the two happens
+    // second carries on with the queue, so we neither stall nor recurse
+    private class SendCallback implements WriteCallback {
+        private static final int PENDING = 0, RETURNED = 1, DONE = 2;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        boolean returned() {
+            return state.compareAndSet(PENDING, RETURNED);
+        }
+
+        @Override
+        public void writeSuccess() {
+            if (!state.compareAndSet(PENDING, DONE)) {
+                writeNext();
+            }
+        }
+
+        @Override
+        public void writeFailed(Throwable cause) {
+            failed();
+            session.close();
+        }
+    }
+}
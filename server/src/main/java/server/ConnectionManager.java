@@ -1,23 +1,400 @@
 package server;
 
+import model.AuthData;
+import serialization.Serializer;
+import websocket.messages.MoveMessage;
 import websocket.messages.ServerMessage;
 
+import org.eclipse.jetty.websocket.api.Session;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Keeps track of every open websocket and which game each one belongs to, so game updates can
+ * be sent to just the people in that game.
+ * <p>
+ * Everything broadcast to a game is numbered, and the last few events are kept so a client that
+ * reconnects can {@link #resume} instead of loading the whole game again. Broadcasts for a game
+ * must come from that game's mailbox so the numbers go out in order.
+ * <p>
+ * Players are always sent to first, right away. Once a game has a lot of observers they're
+ * split across a few writer threads: each writer gets the already serialized message once and
+ * sends it to its share of the observers, so one loop over every observer isn't what holds up
+ * the next move. Everything sent to one observer of such a game goes through its writer, so it
+ * still arrives in order.
+ */
 public class ConnectionManager {
+    private final OutboundLimits limits;
+    private final int resumeEvents;
+    private final ExecutorService[] writers;
+    private final int shardThreshold;
+
+    private final ConcurrentHashMap<Session, Connection> connections = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, GameConnections> games = new ConcurrentHashMap<>();
+
+    // players and observers of one game. Observers are kept in one set per writer
+    private static class GameConnections {
+        final Set<Connection> players = ConcurrentHashMap.newKeySet();
+        final Set<Connection>[] observers;
+        final EventLog events;
+        // once true, observers are only ever sent to from their writer
+        volatile boolean sharded;
+
+        @SuppressWarnings("unchecked")
+        GameConnections(int resumeEvents, int shards) {
+            events = new EventLog(resumeEvents);
+            observers = new Set[shards];
+            for (int i = 0; i < shards; i++) {
+                observers[i] = ConcurrentHashMap.newKeySet();
+            }
+        }
+
+        int observerCount() {
+            int count = 0;
+            for (Set<Connection> shard : observers) {
+                count += shard.size();
+            }
+            return count;
+        }
+
+        boolean isEmpty() {
+            return players.isEmpty() && observerCount() == 0;
+        }
+    }
+
+    /**
+     * Sends to every connection from the calling thread
+     *
+     * @param resumeEvents how many recent events to keep per game for clients that reconnect
+     */
+    public ConnectionManager(OutboundLimits limits, int resumeEvents) {
+        this(limits, resumeEvents, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param resumeEvents   how many recent events to keep per game for clients that reconnect
+     * @param writers        threads that share out sending to the observers of big games (0 for none)
+     * @param shardThreshold how many observers a game needs before its sends are shared out
+     */
+    public ConnectionManager(OutboundLimits limits, int resumeEvents, int writers, int shardThreshold) {
+        this.limits = limits;
+        this.resumeEvents = resumeEvents;
+        this.shardThreshold = shardThreshold;
+        this.writers = new ExecutorService[writers];
+        for (int i = 0; i < writers; i++) {
+            String name = "websocket-writer-" + (i + 1);
+            this.writers[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private int shards() {
+        return Math.max(1, writers.length);
+    }
+
+    private int shardOf(Connection connection) {
+        return Math.floorMod(System.identityHashCode(connection), shards());
+    }
+
+    public Connection open(Session session) {
+        return connections.computeIfAbsent(session, key -> new Connection(key, limits));
+    }
+
+    /**
+     * Registers a new websocket. {@code moveUpdates} says whether the client wants MOVE messages
+     * instead of full LOAD_GAME messages after each move
+     */
+    public Connection open(Session session, boolean moveUpdates) {
+        Connection connection = open(session);
+        connection.setMoveUpdates(moveUpdates);
+        return connection;
+    }
+
+    public Connection get(Session session) {
+        return connections.get(session);
+    }
+
+    public void close(Session session) {
+        Connection connection = connections.remove(session);
+        if (connection != null) {
+            remove(connection);
+        }
+    }
+
+    /**
+     * Forgets a connection that's dead without us having heard it close
+     *
+     * @return false if it was already gone
+     */
+    public boolean reap(Connection connection) {
+        if (!connections.remove(connection.getSession(), connection)) {
+            return false;
+        }
+        remove(connection);
+        return true;
+    }
+
+    public Collection<Connection> all() {
+        return connections.values();
+    }
+
+    /**
+     * Adds the connection to a game, taking it out of any game it was in before
+     */
+    public void add(int gameID, Connection connection, String username, boolean player) {
+        remove(connection);
+        connection.joined(gameID, username, player);
+        GameConnections joined = games.compute(gameID, (id, game) -> {
+            if (game == null) {
+                game = new GameConnections(resumeEvents, shards());
+            }
+            if (player) {
+                game.players.add(connection);
+            } else if (!game.sharded) {
+                game.observers[shardOf(connection)].add(connection);
+            }
+            return game;
+        });
+        if (!player && joined.sharded) {
+            // join on the writer, after anything it's still sending that was from before they joined
+            writers[shardOf(connection)].execute(() -> games.compute(gameID, (id, game) -> {
+                if (!Integer.valueOf(gameID).equals(connection.getGameID())) {
+                    return game;
+                }
+                if (game == null) {
+                    game = new GameConnections(resumeEvents, shards());
+                }
+                game.observers[shardOf(connection)].add(connection);
+                return game;
+            }));
+        }
+    }
+
+    /**
+     * Remembers who the connection signed in as, so later commands don't need to look the token up
+     */
+    public void bind(Connection connection, AuthData auth) {
+        connection.bind(auth);
+    }
+
+    /**
+     * Forgets every connection signed in with this token. Their next command has to present
+     * a token that's still valid
+     */
+    public void unbind(String authToken) {
+        for (Connection connection : connections.values()) {
+            AuthData auth = connection.getAuth();
+            if (auth != null && auth.authToken().equals(authToken)) {
+                connection.bind(null);
+            }
+        }
+    }
 
-    // all will need servermessage
+    public void unbindAll() {
+        for (Connection connection : connections.values()) {
+            connection.bind(null);
+        }
+    }
 
-    public void add() {
+    public void remove(Connection connection) {
+        Integer gameID = connection.getGameID();
+        if (gameID == null) {
+            return;
+        }
+        connection.left();
+        games.computeIfPresent(gameID, (id, game) -> {
+            game.players.remove(connection);
+            game.observers[shardOf(connection)].remove(connection);
+            return game.isEmpty() ? null : game;
+        });
+    }
 
+    /**
+     * Sends the message to everyone in the game except {@code exclude} (which can be null).
+     * The message is turned into JSON once and that same text goes to every connection.
+     */
+    public void broadcast(int gameID, Connection exclude, ServerMessage message) {
+        GameConnections game = games.get(gameID);
+        if (game == null) {
+            return;
+        }
+        long sequence = game.events.nextSequence();
+        message.setSequence(sequence);
+        String json = Serializer.gson().toJson(message);
+        Connection.Kind kind = kindOf(message);
+        game.events.append(sequence, json, kind, exclude == null ? null : exclude.getUsername());
+        Consumer<Connection> send = connection -> {
+            if (connection != exclude) {
+                connection.send(json, kind);
+            }
+        };
+        game.players.forEach(send);
+        sendToObservers(game, send);
     }
-    public void remove() {
 
+    /**
+     * Tells everyone in the game about a move. Clients that asked for move updates get the small
+     * {@code move} message; everyone else gets {@code fullState}, as do move-update clients that
+     * have fallen behind (the board replaces the moves they haven't been sent yet). Each is turned
+     * into JSON at most once.
+     */
+    public void broadcastMove(int gameID, MoveMessage move, ServerMessage fullState) {
+        GameConnections game = games.get(gameID);
+        if (game == null) {
+            return;
+        }
+        long sequence = game.events.nextSequence();
+        move.setSequence(sequence);
+        fullState.setSequence(sequence);
+        var texts = new MoveTexts(move, fullState);
+        game.events.append(sequence, texts.moveJson(), Connection.Kind.MOVE, null);
+        game.players.forEach(texts::sendTo);
+        if (shouldShard(game)) {
+            // the writers share these, so make both now
+            texts.fullJson();
+        }
+        sendToObservers(game, texts::sendTo);
     }
 
-    public void broadcast() {
+    private boolean shouldShard(GameConnections game) {
+        if (!game.sharded && writers.length > 0 && game.observerCount() >= shardThreshold) {
+            game.sharded = true;
+        }
+        return game.sharded;
+    }
 
+    private void sendToObservers(GameConnections game, Consumer<Connection> send) {
+        if (!shouldShard(game)) {
+            for (Set<Connection> shard : game.observers) {
+                shard.forEach(send);
+            }
+            return;
+        }
+        for (int i = 0; i < writers.length; i++) {
+            Set<Connection> shard = game.observers[i];
+            writers[i].execute(() -> shard.forEach(send));
+        }
     }
 
-    public void send() {
+    // sends to an observer of a sharded game go through its writer so they stay in order
+    private void deliver(Connection connection, Runnable send) {
+        Integer gameID = connection.getGameID();
+        GameConnections game = gameID == null ? null : games.get(gameID);
+        if (game != null && game.sharded && !connection.isPlayer()) {
+            writers[shardOf(connection)].execute(send);
+        } else {
+            send.run();
+        }
+    }
+
+    // serializes each version of a move update the first time someone needs it
+    private static class MoveTexts {
+        final MoveMessage move;
+        final ServerMessage fullState;
+        String moveJson;
+        String fullJson;
+
+        MoveTexts(MoveMessage move, ServerMessage fullState) {
+            this.move = move;
+            this.fullState = fullState;
+        }
+
+        String moveJson() {
+            if (moveJson == null) {
+                moveJson = Serializer.gson().toJson(move);
+            }
+            return moveJson;
+        }
+
+        void sendTo(Connection connection) {
+            if (connection.wantsMoveUpdates() && !connection.isLagging()) {
+                connection.send(moveJson(), Connection.Kind.MOVE);
+                return;
+            }
+            connection.send(fullJson(), Connection.Kind.STATE);
+        }
+
+        String fullJson() {
+            if (fullJson == null) {
+                fullJson = Serializer.gson().toJson(fullState);
+            }
+            return fullJson;
+        }
+    }
+
+    /**
+     * @return the number of the last event broadcast to the game, or null if nobody's in it
+     */
+    public Long lastSequence(int gameID) {
+        GameConnections game = games.get(gameID);
+        return game == null ? null : game.events.lastSequence();
+    }
+
+    /**
+     * Sends a reconnecting client the events it missed since {@code lastSequence}. Only works for
+     * clients that take move updates, and only while those events are still kept.
+     *
+     * @return false if the client has to be sent the whole game instead
+     */
+    public boolean resume(int gameID, Connection connection, long lastSequence) {
+        GameConnections game = games.get(gameID);
+        if (game == null || !connection.wantsMoveUpdates()) {
+            return false;
+        }
+        List<EventLog.Event> missed = game.events.since(lastSequence);
+        if (missed == null) {
+            return false;
+        }
+        String username = connection.getUsername();
+        deliver(connection, () -> {
+            for (EventLog.Event event : missed) {
+                // skip what they weren't sent the first time, like the notice about their own move
+                if (event.excludedUser() == null || !event.excludedUser().equals(username)) {
+                    connection.send(event.json(), event.kind());
+                }
+            }
+        });
+        return true;
+    }
+
+    public void send(Connection connection, ServerMessage message) {
+        String json = Serializer.gson().toJson(message);
+        Connection.Kind kind = kindOf(message);
+        deliver(connection, () -> connection.send(json, kind));
+    }
+
+    public OutboundLimits.Stats outboundStats() {
+        return limits.stats();
+    }
+
+    public int connectionCount() {
+        return connections.size();
+    }
+
+    public int gameCount() {
+        return games.size();
+    }
+
+    public void shutdown() {
+        for (ExecutorService writer : writers) {
+            writer.shutdown();
+        }
+    }
 
+    private static Connection.Kind kindOf(ServerMessage message) {
+        return switch (message.getServerMessageType()) {
+            case LOAD_GAME -> Connection.Kind.STATE;
+            case MOVE -> Connection.Kind.MOVE;
+            default -> Connection.Kind.MESSAGE;
+        };
     }
 }
@@ -0,0 +1,54 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The most recent events sent to one game, numbered in order, so a client that reconnects can be
+ * sent just what it missed. Only the last {@code capacity} events are kept.
+ */
+class EventLog {
+    record Event(long sequence, String json, Connection.Kind kind, String excludedUser) {}
+
+    private final Event[] ring;
+    private long lastSequence;
+
+    EventLog(int capacity) {
+        ring = new Event[Math.max(1, capacity)];
+        // a log is dropped when the last person leaves its game, and the server can restart. Start
+        // numbering past anything an earlier log for the game could have reached, so a client
+        // still holding an old number just gets a full reload
+        lastSequence = System.currentTimeMillis() * 1000;
+    }
+
+    synchronized long lastSequence() {
+        return lastSequence;
+    }
+
+    synchronized long nextSequence() {
+        return lastSequence + 1;
+    }
+
+    /**
+     * Keeps an event that was just sent. {@code sequence} must be {@link #nextSequence()}
+     */
+    synchronized void append(long sequence, String json, Connection.Kind kind, String excludedUser) {
+        lastSequence = sequence;
+        ring[(int) (sequence % ring.length)] = new Event(sequence, json, kind, excludedUser);
+    }
+
+    /**
+     * @return every event after {@code sequence}, oldest first, or null if some of them are no
+     * longer kept (or {@code sequence} is from some other run of the game's event stream)
+     */
+    synchronized List<Event> since(long sequence) {
+        if (sequence > lastSequence || sequence < lastSequence - ring.length) {
+            return null;
+        }
+        var events = new ArrayList<Event>((int) (lastSequence - sequence));
+        for (long next = sequence + 1; next <= lastSequence; next++) {
+            events.add(ring[(int) (next % ring.length)]);
+        }
+        return events;
+    }
+}
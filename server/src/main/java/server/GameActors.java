@@ -0,0 +1,85 @@
+package server;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs the work for each game one task at a time, in the order it was submitted, without any
+ * locks shared between games.
+ * <p>
+ * Every game gets a mailbox the first time something is submitted for it. A mailbox is only ever
+ * being drained by one thread at a time, so everything for a game runs in order, while different
+ * games run in parallel on the shared executor. Once a mailbox runs dry it is dropped and a new
+ * one gets made the next time that game has work.
+ */
+public class GameActors {
+    // how many tasks one game runs before giving its thread to another game
+    private static final int BATCH_SIZE = 32;
+
+    private final ExecutorService executor;
+    private final ConcurrentHashMap<Integer, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    public GameActors(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    public void submit(int gameID, Runnable task) {
+        // adding inside compute means a mailbox can't be dropped between finding it and adding to it
+        Mailbox mailbox = mailboxes.compute(gameID, (id, existing) -> {
+            Mailbox box = existing == null ? new Mailbox(id) : existing;
+            box.tasks.add(task);
+            return box;
+        });
+        mailbox.schedule();
+    }
+
+    public int activeGames() {
+        return mailboxes.size();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private class Mailbox implements Runnable {
+        private final int gameID;
+        private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Mailbox(int gameID) {
+            this.gameID = gameID;
+        }
+
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                Runnable task = tasks.poll();
+                if (task == null) {
+                    break;
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException ex) {
+                    // one bad task shouldn't stop the rest of the game's work
+                    System.err.println("Game " + gameID + " task failed: " + ex);
+                }
+            }
+            scheduled.set(false);
+
+            if (!tasks.isEmpty()) {
+                schedule();
+                return;
+            }
+            mailboxes.computeIfPresent(gameID, (id, box) ->
+                    box == this && tasks.isEmpty() && !scheduled.get() ? null : box);
+        }
+    }
+}
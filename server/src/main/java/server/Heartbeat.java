@@ -0,0 +1,86 @@
+package server;
+
+import org.eclipse.jetty.websocket.api.Session;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pings every websocket on one shared timer and drops the ones that are dead, so a vanished
+ * client doesn't sit in {@link ConnectionManager} getting broadcasts forever.
+ * <p>
+ * A connection counts as dead when its session is no longer open, when a write failed, when a
+ * message has been waiting to be written for longer than the timeout (the client stopped
+ * reading), or when a ping has gone that long without a pong (the client or the network is
+ * gone). Jetty's own idle timeout can't tell us that last one, since our pings count as activity.
+ */
+public class Heartbeat {
+    private final ConnectionManager connections;
+    private final long timeoutNanos;
+    private final ScheduledExecutorService timer;
+
+    private final LongAdder pings = new LongAdder();
+    private final LongAdder reaped = new LongAdder();
+
+    public record Stats(long pings, long reaped) {}
+
+    /**
+     * @param intervalMillis how often to ping and look for dead connections
+     * @param timeoutMillis  how long a message can wait to be written, or a ping for its pong,
+     *                       before we give up
+     */
+    public Heartbeat(ConnectionManager connections, long intervalMillis, long timeoutMillis) {
+        this.connections = connections;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "websocket-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(this::beatQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reaps dead connections and pings the rest
+     */
+    public void beat() {
+        long now = System.nanoTime();
+        for (Connection connection : connections.all()) {
+            Session session = connection.getSession();
+            if (!session.isOpen()) {
+                reap(connection);
+            } else if (connection.stalledNanos(now) > timeoutNanos) {
+                // no point in a polite close; nothing is getting through
+                session.disconnect();
+                reap(connection);
+            } else {
+                connection.ping();
+                pings.increment();
+            }
+        }
+    }
+
+    private void beatQuietly() {
+        try {
+            beat();
+        } catch (RuntimeException ex) {
+            System.err.println("Websocket heartbeat failed: " + ex.getMessage());
+        }
+    }
+
+    private void reap(Connection connection) {
+        if (connections.reap(connection)) {
+            reaped.increment();
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(pings.sum(), reaped.sum());
+    }
+
+    public void stop() {
+        timer.shutdown();
+    }
+}
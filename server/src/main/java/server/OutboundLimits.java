@@ -0,0 +1,34 @@
+package server;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * How far behind a websocket is allowed to get before we give up on it, plus counters for what
+ * happened to connections that fell behind. One of these is shared by every connection.
+ */
+public class OutboundLimits {
+    final int maxQueuedMessages;
+    final int maxQueuedChars;
+    final int laggingMessages;
+
+    final LongAdder coalesced = new LongAdder();
+    final LongAdder slowDisconnects = new LongAdder();
+
+    public record Stats(long coalescedMessages, long slowDisconnects) {}
+
+    /**
+     * @param maxQueuedMessages most messages waiting to go out on one connection before it's closed
+     * @param maxQueuedChars    most characters waiting to go out on one connection before it's closed
+     * @param laggingMessages   once this many messages are waiting, observers asking for move
+     *                          updates get a whole board instead so the older moves can be dropped
+     */
+    public OutboundLimits(int maxQueuedMessages, int maxQueuedChars, int laggingMessages) {
+        this.maxQueuedMessages = maxQueuedMessages;
+        this.maxQueuedChars = maxQueuedChars;
+        this.laggingMessages = laggingMessages;
+    }
+
+    public Stats stats() {
+        return new Stats(coalesced.sum(), slowDisconnects.sum());
+    }
+}
@@ -1,47 +1,117 @@
 package server;
 
+import dataaccess.CachingDataAccess;
 import dataaccess.DataAccess;
 import dataaccess.DataAccessException;
+import dataaccess.DatabaseManager;
 import dataaccess.MemoryDataAccess;
 import dataaccess.MySQLDataAccess;
+import dataaccess.PasswordHasher;
+import service.AnalysisService;
+import service.BookService;
+import service.BotService;
 import service.ClearService;
 import service.UserService;
 import service.GameService;
 import service.ServiceException;
-import model.GameData;
+import serialization.GameListWriter;
+import serialization.GsonJsonMapper;
+
+import chess.book.OpeningBook;
 
 import io.javalin.*;
 import io.javalin.http.Context;
-import com.google.gson.Gson;
+import org.eclipse.jetty.websocket.server.config.JettyWebSocketServletContainerInitializer;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Map;
-import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
 
 public class Server {
 
     private final Javalin javalin;
 
+    private final ServerConfig config;
+    private final PasswordHasher hasher;
+    private final CachingDataAccess cache;
     private final DataAccess db;
     private final ClearService clearService;
     private final UserService userService;
     private final GameService gameService;
+    private final AnalysisService analysisService;
+    private final BookService bookService;
+    private final BotService botService;
+    private final BotPlayers botPlayers;
+    private final ConnectionManager connections;
+    private final GameActors actors;
+    private final Heartbeat heartbeat;
+    private final TimerWheel timers;
+    private final WebSocketHandler webSocketHandler;
 
     public Server() {
+        this(new ServerConfig());
+    }
+
+    public Server(ServerConfig config) {
+        this.config = config;
+        hasher = new PasswordHasher(config.hashThreads, config.hashQueueLimit, config.bcryptCost);
+        DatabaseManager.setMaxConnections(config.dbMaxConnections);
         DataAccess dataAccess;
         try {
-            dataAccess = new MySQLDataAccess();
+            dataAccess = new MySQLDataAccess(hasher);
         } catch (DataAccessException ex) {
             throw new RuntimeException("Failed to initialize db: " + ex.getMessage(), ex);
         }
-        db = dataAccess;
+        cache = new CachingDataAccess(dataAccess, config.cacheMaxGames, config.cacheIdleMillis,
+                config.cacheFlushMillis);
+        db = cache;
         clearService = new ClearService(db);
-        userService = new UserService(db);
+        userService = new UserService(db, hasher);
         gameService = new GameService(db, userService);
+        connections = new ConnectionManager(new OutboundLimits(config.wsMaxQueuedMessages,
+                config.wsMaxQueuedChars, config.wsLaggingMessages), config.wsResumeEvents,
+                config.wsWriters, config.wsShardThreshold);
+        userService.addLogoutListener(connections::unbind);
+        heartbeat = new Heartbeat(connections, config.wsPingMillis, config.wsTimeoutMillis);
+        actors = new GameActors(config.virtualThreads
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(config.gameThreads));
+        timers = new TimerWheel(config.clockTickMillis, config.clockWheelSize);
+        analysisService = new AnalysisService(db, userService, actors::submit, config.analysisThreads,
+                config.analysisHelperThreads, config.analysisQueueLimit, config.analysisPerUser, config.analysisTableMb,
+                config.analysisCacheSize, config.analysisMaxDepth, config.analysisMaxMillis);
+        OpeningBook book;
+        try {
+            book = config.openingBook.isBlank() ? OpeningBook.empty() : OpeningBook.open(Path.of(config.openingBook));
+        } catch (IOException ex) {
+            throw new RuntimeException("Failed to open the opening book: " + ex.getMessage(), ex);
+        }
+        bookService = new BookService(db, userService, actors::submit, book);
+        botService = new BotService(db, userService, gameService, actors::submit, BotService.parse(config.bots));
+        try {
+            botService.createUsers();
+        } catch (ServiceException ex) {
+            throw new RuntimeException("Failed to create bot users: " + ex.getMessage(), ex);
+        }
+        botPlayers = new BotPlayers(config.botThreads, config.botThinkMillis, config.botTableMb);
+        webSocketHandler = new WebSocketHandler(db, userService, connections, actors, timers, analysisService,
+                botService, botPlayers);
 
 
 
 
 
-        javalin = Javalin.create(config -> config.staticFiles.add("web"));
+        javalin = Javalin.create(javalinConfig -> {
+            javalinConfig.staticFiles.add("web");
+            javalinConfig.jsonMapper(new GsonJsonMapper());
+            javalinConfig.useVirtualThreads = config.virtualThreads;
+            // /ws goes straight to jetty rather than through javalin.ws(), which doesn't pass on pongs
+            javalinConfig.jetty.modifyServletContextHandler(handler ->
+                    JettyWebSocketServletContainerInitializer.configure(handler, (context, container) ->
+                            container.addMapping("/ws", (request, response) -> new WebSocketEndpoint(webSocketHandler))));
+        });
 
         // Register your endpoints and exception handlers here.
 
@@ -52,6 +122,10 @@ public class Server {
         javalin.get("/game", this::handleListGames);
         javalin.post("/game", this::handleCreateGame);
         javalin.put("/game", this::handleJoinGame);
+        javalin.post("/game/{id}/analysis", this::handleAnalysis);
+        javalin.post("/game/{id}/bot", this::handleAddBot);
+        javalin.get("/game/{id}/book", this::handleBook);
+        javalin.get("/metrics", this::handleMetrics);
 
 
 
@@ -65,28 +139,38 @@ public class Server {
 
     public void stop() {
         javalin.stop();
+        heartbeat.stop();
+        timers.stop();
+        connections.shutdown();
+        actors.shutdown();
+        analysisService.shutdown();
+        botPlayers.shutdown();
+        cache.close();
+        hasher.shutdown();
     }
 
     private void exceptionHandler(ServiceException exception, Context context) {
         context.status(exception.statusCode());
-        context.result(new Gson().toJson(Map.of("message", exception.getMessage())));
+        context.json(Map.of("message", exception.getMessage()));
     }
 
     private void handleClear(Context context) throws ServiceException {
         clearService.clear();
+        connections.unbindAll();
+        botService.createUsers();
         context.result("{}");
     }
 
+    // the password is hashed on the hashing pool; the request thread is let go until it's done
     private void handleRegister(Context context) throws ServiceException {
-        var req = new Gson().fromJson(context.body(), UserService.RegisterRequest.class);
-        var result = userService.register(req);
-        context.result(new Gson().toJson(result));
+        var req = context.bodyAsClass(UserService.RegisterRequest.class);
+        respond(context, userService.registerAsync(req));
     }
 
+    // same as register: the password check doesn't hold a request thread
     private void handleLogin(Context context) throws ServiceException {
-        var req = new Gson().fromJson(context.body(), UserService.LoginRequest.class);
-        var result = userService.login(req);
-        context.result(new Gson().toJson(result));
+        var req = context.bodyAsClass(UserService.LoginRequest.class);
+        respond(context, userService.loginAsync(req));
     }
 
     private void handleLogout(Context context) throws ServiceException {
@@ -97,23 +181,101 @@ public class Server {
 
     private void handleListGames(Context context) throws ServiceException {
         String token = context.header("authorization");
-        Collection<GameData> games = gameService.listGames(token);
-        context.result(new Gson().toJson(Map.of("games", games)));
+        var writer = new GameListWriter(context);
+        try {
+            gameService.streamGames(token, writer);
+            writer.finish();
+        } catch (ServiceException exception) {
+            if (!writer.started()) {
+                throw exception;
+            }
+            writer.fail(exception.getMessage());
+        } catch (IOException exception) {
+            if (!writer.started()) {
+                throw new ServiceException(500, "Error: " + exception.getMessage());
+            }
+            writer.fail("Error: " + exception.getMessage());
+        }
     }
 
     private void handleCreateGame(Context context) throws ServiceException {
         String token = context.header("authorization");
-        var req = new Gson().fromJson(context.body(), GameService.CreateGameRequest.class);
+        var req = context.bodyAsClass(GameService.CreateGameRequest.class);
         var result = gameService.createGame(token, req);
-        context.result(new Gson().toJson(result));
+        context.json(result);
     }
 
     private void handleJoinGame(Context context) throws ServiceException {
         String token = context.header("authorization");
-        var req = new Gson().fromJson(context.body(), GameService.JoinGameRequest.class);
+        var req = context.bodyAsClass(GameService.JoinGameRequest.class);
         gameService.joinGame(token, req);
         context.result("{}");
     }
 
+    // the search runs on the analysis pool; the request thread is let go until it's done
+    private void handleAnalysis(Context context) throws ServiceException {
+        String token = context.header("authorization");
+        int gameID = gameID(context);
+        var req = context.body().isBlank() ? null : context.bodyAsClass(AnalysisService.AnalysisRequest.class);
+        respond(context, analysisService.analyze(token, gameID, req));
+    }
+
+    private void handleBook(Context context) throws ServiceException {
+        String token = context.header("authorization");
+        int gameID = gameID(context);
+        respond(context, bookService.lookup(token, gameID));
+    }
+
+    // answers with whatever the future completes with, once it does
+    private void respond(Context context, CompletableFuture<?> future) {
+        context.future(() -> future.handle((result, error) -> {
+            if (error == null) {
+                context.json(result);
+                return null;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof ServiceException ex) {
+                exceptionHandler(ex, context);
+            } else {
+                exceptionHandler(new ServiceException(500, "Error: " + cause.getMessage()), context);
+            }
+            return null;
+        }));
+    }
+
+    private void handleAddBot(Context context) throws ServiceException {
+        String token = context.header("authorization");
+        int gameID = gameID(context);
+        var req = context.bodyAsClass(BotService.AddBotRequest.class);
+        respond(context, botService.addBot(token, gameID, req).thenApply(joined -> {
+            webSocketHandler.wakeBot(gameID);
+            return Map.of();
+        }));
+    }
+
+    private int gameID(Context context) throws ServiceException {
+        try {
+            return Integer.parseInt(context.pathParam("id"));
+        } catch (NumberFormatException ex) {
+            throw new ServiceException(400, "Error: bad request");
+        }
+    }
+
+    private void handleMetrics(Context context) {
+        context.json(Map.ofEntries(
+                Map.entry("virtualThreads", config.virtualThreads),
+                Map.entry("passwordHashing", hasher.stats()),
+                Map.entry("websocketConnections", connections.connectionCount()),
+                Map.entry("activeGames", connections.gameCount()),
+                Map.entry("websocketOutbound", connections.outboundStats()),
+                Map.entry("websocketHeartbeat", heartbeat.stats()),
+                Map.entry("clockTimers", timers.stats()),
+                Map.entry("busyGameMailboxes", actors.activeGames()),
+                Map.entry("cachedGames", cache.cachedGames()),
+                Map.entry("analysis", analysisService.stats()),
+                Map.entry("openingBookRecords", bookService.size()),
+                Map.entry("bots", botPlayers.stats())));
+    }
+
 
 }
@@ -0,0 +1,68 @@
+package server;
+
+/**
+ * Tuning knobs for the server. Every value can be overridden with a -D system property,
+ * e.g. {@code -Dchess.hash.threads=4}, and falls back to the default shown here.
+ */
+public class ServerConfig {
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+
+    // password hashing
+    public final int hashThreads = Integer.getInteger("chess.hash.threads", Math.max(1, CORES / 2));
+    public final int hashQueueLimit = Integer.getInteger("chess.hash.queue", 64);
+    public final int bcryptCost = Integer.getInteger("chess.bcrypt.cost", 10);
+
+    // threading. virtual threads run every request and websocket message on its own virtual thread;
+    // off uses jetty's normal platform thread pool. The db pool is sized separately either way
+    public final boolean virtualThreads = Boolean.parseBoolean(System.getProperty("chess.virtualThreads", "false"));
+    public final int dbMaxConnections = Integer.getInteger("chess.db.maxConnections", 16);
+
+    // threads shared by all the per game mailboxes when not using virtual threads
+    public final int gameThreads = Integer.getInteger("chess.game.threads", CORES * 2);
+
+    // in memory game cache. Changed boards are saved every flush interval; unused games are dropped
+    public final int cacheMaxGames = Integer.getInteger("chess.cache.maxGames", 10_000);
+    public final long cacheIdleMillis = Long.getLong("chess.cache.idleMillis", 5 * 60 * 1000L);
+    public final long cacheFlushMillis = Long.getLong("chess.cache.flushMillis", 250L);
+
+    // websocket sends. A connection with more than this much waiting to go out is closed
+    public final int wsMaxQueuedMessages = Integer.getInteger("chess.ws.maxQueuedMessages", 256);
+    public final int wsMaxQueuedChars = Integer.getInteger("chess.ws.maxQueuedChars", 1 << 20);
+    public final int wsLaggingMessages = Integer.getInteger("chess.ws.laggingMessages", 8);
+    // recent events kept per game so a client that reconnects only gets what it missed
+    public final int wsResumeEvents = Integer.getInteger("chess.ws.resumeEvents", 64);
+    // games with at least this many observers share out sending to them across the writer threads
+    public final int wsWriters = Integer.getInteger("chess.ws.writers", Math.max(1, CORES / 2));
+    public final int wsShardThreshold = Integer.getInteger("chess.ws.shardThreshold", 1_000);
+    // every connection is pinged this often, and dropped if a ping or message can't be written in the timeout
+    public final long wsPingMillis = Long.getLong("chess.ws.pingMillis", 30_000L);
+    public final long wsTimeoutMillis = Long.getLong("chess.ws.timeoutMillis", 60_000L);
+
+    // game clocks. One timer wheel checks every flag; it moves on every tick and has this many buckets
+    public final long clockTickMillis = Long.getLong("chess.clock.tickMillis", 1L);
+    public final int clockWheelSize = Integer.getInteger("chess.clock.wheelSize", 4096);
+
+    // engine analysis. Searches run on their own threads, which share one transposition table; past
+    // the queue limit new requests are turned away, and each user can only have so many at once.
+    // Searches can also borrow from a shared set of helper threads to search in parallel
+    public final int analysisThreads = Integer.getInteger("chess.analysis.threads", Math.max(1, CORES / 4));
+    public final int analysisHelperThreads = Integer.getInteger("chess.analysis.helperThreads", CORES / 4);
+    public final int analysisQueueLimit = Integer.getInteger("chess.analysis.queue", 32);
+    public final int analysisPerUser = Integer.getInteger("chess.analysis.perUser", 2);
+    public final int analysisTableMb = Integer.getInteger("chess.analysis.tableMb", 64);
+    public final int analysisCacheSize = Integer.getInteger("chess.analysis.cacheSize", 10_000);
+    public final int analysisMaxDepth = Integer.getInteger("chess.analysis.maxDepth", 20);
+    public final long analysisMaxMillis = Long.getLong("chess.analysis.maxMillis", 5_000L);
+
+    // computer players, as name:nodes (how many positions each may search per move), e.g.
+    // easybot:2000,mediumbot:20000,hardbot:200000. None by default, since each one takes a username.
+    // All bot games share this many thinking threads, and no move takes longer than the think limit
+    public final String bots = System.getProperty("chess.bots", "");
+    public final int botThreads = Integer.getInteger("chess.bots.threads", Math.max(1, CORES / 2));
+    public final long botThinkMillis = Long.getLong("chess.bots.thinkMillis", 2_000L);
+    public final int botTableMb = Integer.getInteger("chess.bots.tableMb", 16);
+
+    // opening book file made by chess.book.OpeningBookBuilder; it's memory mapped, not read in.
+    // Leave empty for no book
+    public final String openingBook = System.getProperty("chess.openingBook", "");
+}
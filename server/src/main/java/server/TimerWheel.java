@@ -0,0 +1,145 @@
+package server;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One thread that runs every timed task (clock flag-falls) for the whole server, instead of a
+ * scheduled task per game.
+ * <p>
+ * Time is cut into ticks and the wheel has a ring of buckets, one per tick. A timeout goes in the
+ * bucket for the tick it's due in, along with how many more turns of the wheel to wait, so
+ * scheduling and cancelling are O(1) and each tick only looks at one bucket no matter how many
+ * games are waiting. Tasks run on the wheel's thread, so they should only hand work off (e.g. to a
+ * game's mailbox).
+ */
+public class TimerWheel {
+    private final long tickNanos;
+    private final ArrayDeque<Timeout>[] buckets;
+    private final int mask;
+    private final long startNanos;
+    private final Thread worker;
+    private final ConcurrentLinkedQueue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final LongAdder fired = new LongAdder();
+
+    public record Stats(int pending, long fired) {}
+
+    /**
+     * Something scheduled on the wheel. Cancel it if it's no longer needed
+     */
+    public static class Timeout {
+        final long deadlineNanos;
+        final Runnable task;
+        long rounds;
+        volatile boolean cancelled;
+
+        Timeout(long deadlineNanos, Runnable task) {
+            this.deadlineNanos = deadlineNanos;
+            this.task = task;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    /**
+     * @param tickMillis how often the wheel moves on; timeouts fire up to this late
+     * @param wheelSize  buckets in the wheel, rounded up to a power of two
+     */
+    @SuppressWarnings("unchecked")
+    public TimerWheel(long tickMillis, int wheelSize) {
+        tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        buckets = new ArrayDeque[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+        mask = size - 1;
+        startNanos = System.nanoTime();
+        worker = new Thread(this::run, "timer-wheel");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        var timeout = new Timeout(System.nanoTime() + Math.max(0, unit.toNanos(delay)), task);
+        pending.incrementAndGet();
+        added.add(timeout);
+        return timeout;
+    }
+
+    public Stats stats() {
+        return new Stats(pending.get(), fired.sum());
+    }
+
+    public void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        long tick = 0;
+        while (running) {
+            waitFor(startNanos + (tick + 1) * tickNanos);
+            transferAdded(tick);
+            expire(buckets[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void waitFor(long deadline) {
+        long wait;
+        while (running && (wait = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+
+    private void transferAdded(long tick) {
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            if (timeout.cancelled) {
+                pending.decrementAndGet();
+                continue;
+            }
+            // the bucket for the tick it's due in, or this one if that's already gone by
+            long dueTick = Math.max(tick, (timeout.deadlineNanos - startNanos) / tickNanos);
+            timeout.rounds = (dueTick - tick) / buckets.length;
+            buckets[(int) (dueTick & mask)].add(timeout);
+        }
+    }
+
+    private void expire(ArrayDeque<Timeout> bucket) {
+        Iterator<Timeout> timeouts = bucket.iterator();
+        while (timeouts.hasNext()) {
+            Timeout timeout = timeouts.next();
+            if (timeout.cancelled) {
+                timeouts.remove();
+                pending.decrementAndGet();
+            } else if (timeout.rounds <= 0) {
+                timeouts.remove();
+                pending.decrementAndGet();
+                fired.increment();
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException ex) {
+                    System.err.println("Timer task failed: " + ex.getMessage());
+                }
+            } else {
+                timeout.rounds--;
+            }
+        }
+    }
+}
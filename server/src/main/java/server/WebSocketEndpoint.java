@@ -0,0 +1,59 @@
+package server;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WebSocketListener;
+import org.eclipse.jetty.websocket.api.WebSocketPingPongListener;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One websocket on /ws. Jetty makes one of these per connection, and it passes the events on to
+ * the shared {@link WebSocketHandler}. Javalin's ws() would do the same, but it never tells us
+ * about pongs, which {@link Heartbeat} needs to tell a live client from a dead one.
+ */
+public class WebSocketEndpoint implements WebSocketListener, WebSocketPingPongListener {
+    private final WebSocketHandler handler;
+    private Session session;
+
+    public WebSocketEndpoint(WebSocketHandler handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public void onWebSocketConnect(Session session) {
+        this.session = session;
+        handler.onConnect(session);
+    }
+
+    @Override
+    public void onWebSocketText(String message) {
+        handler.onMessage(session, message);
+    }
+
+    @Override
+    public void onWebSocketBinary(byte[] payload, int offset, int length) {
+        handler.onBinaryMessage(session, payload, offset, length);
+    }
+
+    @Override
+    public void onWebSocketClose(int statusCode, String reason) {
+        handler.onClose(session);
+    }
+
+    @Override
+    public void onWebSocketError(Throwable cause) {
+        // jetty closes the socket after an error, and onWebSocketClose cleans up
+    }
+
+    @Override
+    public void onWebSocketPing(ByteBuffer payload) {
+        // jetty only answers pings itself when nobody is listening for them
+        session.getRemote().sendPong(payload, WriteCallback.NOOP);
+    }
+
+    @Override
+    public void onWebSocketPong(ByteBuffer payload) {
+        handler.onPong(session);
+    }
+}
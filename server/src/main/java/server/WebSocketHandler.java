@@ -1,15 +1,526 @@
 package server;
 
+import chess.ChessClock;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import chess.Zobrist;
 import dataaccess.DataAccess;
+import dataaccess.DataAccessException;
+import model.AuthData;
+import model.GameData;
+import serialization.Serializer;
+import service.AnalysisService;
+import service.BotService;
+import service.ServiceException;
+import service.UserService;
+import websocket.commands.AnalyzeCommand;
+import websocket.commands.BinaryCommandCodec;
+import websocket.commands.ConnectCommand;
+import websocket.commands.MakeMoveCommand;
+import websocket.commands.UserGameCommand;
+import websocket.messages.AnalysisMessage;
+import websocket.messages.ErrorMessage;
+import websocket.messages.LoadGameMessage;
+import websocket.messages.MoveMessage;
+import websocket.messages.NotificationMessage;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.eclipse.jetty.websocket.api.Session;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 public class WebSocketHandler {
-    private DataAccess db;
+    // times a bot's think is asked for again after its search fails, before the players are told
+    private static final int BOT_RETRIES = 2;
+
+    private final DataAccess db;
+    private final UserService userService;
+    private final ConnectionManager connections;
+    private final GameActors actors;
+    private final TimerWheel timers;
+    private final AnalysisService analysisService;
+    private final BotService botService;
+    private final BotPlayers botPlayers;
+    // the pending flag-fall check for each timed game that's being played
+    private final ConcurrentHashMap<Integer, TimerWheel.Timeout> flagTimers = new ConcurrentHashMap<>();
 
-    public WebSocketHandler(DataAccess db) {
+    public WebSocketHandler(DataAccess db, UserService userService, ConnectionManager connections,
+                            GameActors actors, TimerWheel timers, AnalysisService analysisService,
+                            BotService botService, BotPlayers botPlayers) {
         this.db = db;
+        this.userService = userService;
+        this.connections = connections;
+        this.actors = actors;
+        this.timers = timers;
+        this.analysisService = analysisService;
+        this.botService = botService;
+        this.botPlayers = botPlayers;
+    }
+
+    public void onConnect(Session session) {
+        // clients opt in to small MOVE updates with /ws?delta=true; everyone else keeps getting LOAD_GAME
+        Connection root = connections.open(session, Boolean.parseBoolean(queryParam(session, "delta")));
+        // and to binary commands with ?binary=<codec version>
+        if (String.valueOf(BinaryCommandCodec.VERSION).equals(queryParam(session, "binary"))) {
+            root.acceptBinary();
+        }
+    }
+
+    private static String queryParam(Session session, String name) {
+        var values = session.getUpgradeRequest().getParameterMap().get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    public void onClose(Session session) {
+        connections.close(session);
+    }
+
+    public void onPong(Session session) {
+        Connection root = connections.get(session);
+        if (root != null) {
+            root.ponged();
+        }
+    }
+
+    public void onMessage(Session session, String message) {
+        Connection root = connections.open(session);
+        UserGameCommand command;
+        try {
+            command = parse(message);
+        } catch (JsonParseException ex) {
+            connections.send(root, new ErrorMessage("Error: couldn't read command"));
+            return;
+        }
+        dispatch(root, command);
+    }
+
+    // binary frames carry the same commands in the BinaryCommandCodec format
+    public void onBinaryMessage(Session session, byte[] data, int offset, int length) {
+        Connection root = connections.open(session);
+        BinaryCommandCodec.Decoder decoder = root.decoder();
+        if (decoder == null) {
+            connections.send(root, new ErrorMessage("Error: connect with ?binary=" + BinaryCommandCodec.VERSION
+                    + " to send binary commands"));
+            return;
+        }
+        UserGameCommand command;
+        try {
+            command = decoder.decode(ByteBuffer.wrap(data, offset, length));
+        } catch (RuntimeException ex) {
+            // whatever is wrong with the frame, it's the client's problem, not a reason to drop the socket
+            connections.send(root, new ErrorMessage("Error: couldn't read command: " + ex.getMessage()));
+            return;
+        }
+        dispatch(root, command);
+    }
+
+    private void dispatch(Connection root, UserGameCommand command) {
+        if (command == null || command.getCommandType() == null || command.getGameID() == null) {
+            connections.send(root, new ErrorMessage("Error: bad command"));
+            return;
+        }
+        // everything for one game runs in order on that game's mailbox
+        actors.submit(command.getGameID(), () -> handle(root, command));
+    }
+
+    private UserGameCommand parse(String text) {
+        JsonElement tree = JsonParser.parseString(text);
+        UserGameCommand command = Serializer.gson().fromJson(tree, UserGameCommand.class);
+        if (command != null && command.getCommandType() == UserGameCommand.CommandType.MAKE_MOVE) {
+            return Serializer.gson().fromJson(tree, MakeMoveCommand.class);
+        }
+        if (command != null && command.getCommandType() == UserGameCommand.CommandType.CONNECT) {
+            return Serializer.gson().fromJson(tree, ConnectCommand.class);
+        }
+        if (command != null && command.getCommandType() == UserGameCommand.CommandType.ANALYZE) {
+            return Serializer.gson().fromJson(tree, AnalyzeCommand.class);
+        }
+        return command;
+    }
+
+    private void handle(Connection root, UserGameCommand command) {
+        try {
+            switch (command.getCommandType()) {
+                case CONNECT -> connect(root, command);
+                case MAKE_MOVE -> makeMove(root, (MakeMoveCommand) command);
+                case LEAVE -> leave(root, command);
+                case RESIGN -> resign(root, command);
+                case RESYNC -> resync(root, command);
+                case ANALYZE -> analyze(root, command);
+            }
+        } catch (ServiceException ex) {
+            connections.send(root, new ErrorMessage(ex.getMessage()));
+        } catch (DataAccessException ex) {
+            connections.send(root, new ErrorMessage("Error: " + ex.getMessage()));
+        }
+    }
+
+    // CONNECT
+
+    private void connect(Connection root, UserGameCommand command) throws ServiceException, DataAccessException {
+        AuthData auth = userService.validateToken(command.getAuthToken());
+        connections.bind(root, auth);
+        GameData game = loadGame(command.getGameID());
+
+        ChessGame.TeamColor color = colorOf(game, auth.username());
+        connections.add(game.gameID(), root, auth.username(), color != null);
+
+        Long lastSequence = command instanceof ConnectCommand resuming ? resuming.getLastSequence() : null;
+        if (lastSequence == null || !connections.resume(game.gameID(), root, lastSequence)) {
+            // the board comes with the number of the last event it includes
+            LoadGameMessage load = new LoadGameMessage(game);
+            load.setSequence(connections.lastSequence(game.gameID()));
+            connections.send(root, load);
+        }
+        String role = color == null ? "an observer" : color.toString().toLowerCase();
+        connections.broadcast(game.gameID(), root, new NotificationMessage(
+                auth.username() + " joined the game as " + role));
+
+        // e.g. after a restart, a running clock might not have its flag check yet, or a bot might
+        // not have started thinking
+        if (!flagTimers.containsKey(game.gameID())) {
+            scheduleFlag(game);
+        }
+        startBot(game);
+    }
+
+    // MAKE_MOVE
+
+    private void makeMove(Connection root, MakeMoveCommand command) throws ServiceException, DataAccessException {
+        AuthData auth = authenticate(root, command);
+        GameData data = loadGame(command.getGameID());
+        ChessGame game = data.game();
+        ChessMove move = command.getMove();
+
+        if (move == null || move.getStartPosition() == null || move.getEndPosition() == null) {
+            throw new ServiceException(400, "Error: no move given");
+        }
+        if (game.isGameOver()) {
+            throw new ServiceException(400, "Error: the game is over");
+        }
+        ChessGame.TeamColor color = colorOf(data, auth.username());
+        if (color == null) {
+            throw new ServiceException(400, "Error: observers can't make moves");
+        }
+        if (color != game.getTeamTurn()) {
+            throw new ServiceException(400, "Error: it's not your turn");
+        }
+
+        playMove(data, auth.username(), move, root);
+    }
+
+    // makes a move for whoever's turn it is and tells everyone. root is the connection that sent
+    // it, which doesn't need telling who moved; null for a bot's move
+    private void playMove(GameData data, String username, ChessMove move, Connection root)
+            throws ServiceException, DataAccessException {
+        long now = System.currentTimeMillis();
+        if (endIfFlagged(data, now)) {
+            return;
+        }
+        // the move goes on a copy, which only replaces the cached game once it's been saved, so a
+        // failed save doesn't leave a move in memory that nobody was told about
+        ChessGame game = new ChessGame(data.game());
+        data = new GameData(data.gameID(), data.whiteUsername(), data.blackUsername(), data.gameName(), game);
+        try {
+            game.makeMove(move, now);
+        } catch (InvalidMoveException ex) {
+            throw new ServiceException(400, "Error: " + ex.getMessage());
+        }
+
+        ChessGame.TeamColor opponent = game.getTeamTurn();
+        String opponentName = opponent == ChessGame.TeamColor.WHITE ? data.whiteUsername() : data.blackUsername();
+        boolean checkmate = game.isInCheckmate(opponent);
+        boolean stalemate = !checkmate && game.isInStalemate(opponent);
+        boolean check = checkmate || game.isInCheck(opponent);
+        NotificationMessage status = null;
+        if (checkmate) {
+            game.setGameOver(true);
+            status = new NotificationMessage(opponentName + " is in checkmate. " + username + " wins!");
+        } else if (stalemate) {
+            game.setGameOver(true);
+            status = new NotificationMessage("Stalemate. The game is a draw");
+        } else if (check) {
+            status = new NotificationMessage(opponentName + " is in check");
+        }
+
+        ChessClock clock = game.getClock();
+        if (game.isGameOver()) {
+            if (clock != null) {
+                clock.stop(opponent, now);
+            }
+            db.updateGame(data);
+        } else {
+            db.recordMove(data, move);
+        }
+        scheduleFlag(data);
+
+        MoveMessage update = new MoveMessage(data.gameID(), move, game.getPly(), Zobrist.hash(game),
+                opponent, check, checkmate, stalemate);
+        if (clock != null) {
+            update.setClocks(clock.storedMillis(ChessGame.TeamColor.WHITE), clock.storedMillis(ChessGame.TeamColor.BLACK));
+        }
+        connections.broadcastMove(data.gameID(), update, new LoadGameMessage(data));
+        connections.broadcast(data.gameID(), root, new NotificationMessage(
+                username + " moved " + describe(move)));
+        if (status != null) {
+            connections.broadcast(data.gameID(), null, status);
+        }
+        startBot(data);
+    }
+
+    // LEAVE
+
+    private void leave(Connection root, UserGameCommand command) throws ServiceException, DataAccessException {
+        AuthData auth = authenticate(root, command);
+        GameData game = loadGame(command.getGameID());
+
+        ChessGame.TeamColor color = colorOf(game, auth.username());
+        if (color == ChessGame.TeamColor.WHITE) {
+            db.updatePlayers(game.gameID(), null, game.blackUsername());
+        } else if (color == ChessGame.TeamColor.BLACK) {
+            db.updatePlayers(game.gameID(), game.whiteUsername(), null);
+        }
+
+        // broadcast while root is still in the game, so the event is logged as not for them and
+        // isn't replayed to them if they come back
+        connections.broadcast(game.gameID(), root, new NotificationMessage(auth.username() + " left the game"));
+        connections.remove(root);
+    }
+
+    // RESIGN
+
+    private void resign(Connection root, UserGameCommand command) throws ServiceException, DataAccessException {
+        AuthData auth = authenticate(root, command);
+        GameData data = loadGame(command.getGameID());
+
+        if (colorOf(data, auth.username()) == null) {
+            throw new ServiceException(400, "Error: observers can't resign");
+        }
+        if (data.game().isGameOver()) {
+            throw new ServiceException(400, "Error: the game is already over");
+        }
+
+        // ended on a copy, which only replaces the cached game once it's been saved
+        ChessGame game = new ChessGame(data.game());
+        if (game.getClock() != null) {
+            game.getClock().stop(game.getTeamTurn(), System.currentTimeMillis());
+        }
+        game.setGameOver(true);
+        data = new GameData(data.gameID(), data.whiteUsername(), data.blackUsername(), data.gameName(), game);
+        db.updateGame(data);
+        scheduleFlag(data);
+        connections.broadcast(data.gameID(), null, new NotificationMessage(auth.username() + " resigned"));
+    }
+
+    // BOTS
+
+    /**
+     * Gets a bot thinking if it's a bot's turn in this game, e.g. after one's just sat down
+     */
+    public void wakeBot(int gameID) {
+        actors.submit(gameID, () -> {
+            try {
+                GameData data = db.getGame(gameID);
+                if (data != null) {
+                    startBot(data);
+                }
+            } catch (DataAccessException ex) {
+                System.err.println("Unable to wake the bot in game " + gameID + ": " + ex.getMessage());
+            }
+        });
+    }
+
+    private void startBot(GameData data) {
+        startBot(data, 0);
+    }
+
+    private void startBot(GameData data, int retries) {
+        ChessGame game = data.game();
+        String name = nameOf(data, game.getTeamTurn());
+        BotService.Bot bot = botService.bot(name);
+        if (bot == null || game.isGameOver()) {
+            return;
+        }
+        int gameID = data.gameID();
+        int ply = game.getPly();
+        botPlayers.think(gameID, game, bot, move -> actors.submit(gameID, () -> botMove(gameID, name, ply, move)),
+                () -> actors.submit(gameID, () -> botFailed(gameID, name, ply, retries)));
+    }
+
+    // the bot's search threw, back on the game's mailbox. It's asked again a couple of times, then
+    // the players are told, rather than the game sitting there waiting on a move that won't come
+    private void botFailed(int gameID, String name, int ply, int retries) {
+        try {
+            GameData data = db.getGame(gameID);
+            if (data == null || data.game().isGameOver() || data.game().getPly() != ply
+                    || !name.equals(nameOf(data, data.game().getTeamTurn()))) {
+                return;
+            }
+            if (retries < BOT_RETRIES) {
+                startBot(data, retries + 1);
+            } else {
+                connections.broadcast(gameID, null, new NotificationMessage(name + " couldn't find a move"));
+            }
+        } catch (DataAccessException ex) {
+            System.err.println("Unable to restart " + name + " in game " + gameID + ": " + ex.getMessage());
+        }
+    }
+
+    // the bot's move, back on the game's mailbox. The game may have changed while it was thinking
+    // (someone resigned, or the bot was swapped out), in which case the move is dropped
+    private void botMove(int gameID, String name, int ply, ChessMove move) {
+        try {
+            GameData data = db.getGame(gameID);
+            if (data == null || data.game().isGameOver() || data.game().getPly() != ply
+                    || !name.equals(nameOf(data, data.game().getTeamTurn()))) {
+                return;
+            }
+            playMove(data, name, move, null);
+        } catch (ServiceException | DataAccessException ex) {
+            System.err.println("Unable to play " + name + "'s move in game " + gameID + ": " + ex.getMessage());
+        }
+    }
+
+    // CLOCKS
+
+    // (re)schedules the flag-fall check for the side to move, or drops it if the clock isn't running
+    private void scheduleFlag(GameData data) {
+        ChessGame game = data.game();
+        ChessClock clock = game.getClock();
+        int gameID = data.gameID();
+        TimerWheel.Timeout previous;
+        if (clock == null || game.isGameOver() || !clock.isRunning()) {
+            previous = flagTimers.remove(gameID);
+        } else {
+            long delay = clock.flagDeadline(game.getTeamTurn()) - System.currentTimeMillis();
+            previous = flagTimers.put(gameID, timers.schedule(
+                    () -> actors.submit(gameID, () -> checkFlag(gameID)), delay, TimeUnit.MILLISECONDS));
+        }
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    private void checkFlag(int gameID) {
+        try {
+            GameData data = db.getGame(gameID);
+            if (data != null && !endIfFlagged(data, System.currentTimeMillis())) {
+                // they moved in time, or the wheel was early
+                scheduleFlag(data);
+            }
+        } catch (DataAccessException ex) {
+            System.err.println("Unable to check the clock for game " + gameID + ": " + ex.getMessage());
+        }
+    }
+
+    // ends the game if the side to move has run out of time
+    private boolean endIfFlagged(GameData data, long now) throws DataAccessException {
+        ChessGame cached = data.game();
+        ChessClock cachedClock = cached.getClock();
+        if (cachedClock == null || cached.isGameOver() || !cachedClock.isFlagged(cached.getTeamTurn(), now)) {
+            return false;
+        }
+        // ended on a copy, like resign, so a failed save leaves the cached game running
+        ChessGame game = new ChessGame(cached);
+        ChessGame.TeamColor loser = game.getTeamTurn();
+        ChessGame.TeamColor winner = loser == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        game.getClock().stop(loser, now);
+        game.setGameOver(true);
+        data = new GameData(data.gameID(), data.whiteUsername(), data.blackUsername(), data.gameName(), game);
+        db.updateGame(data);
+        scheduleFlag(data);
+        connections.broadcast(data.gameID(), null, new NotificationMessage(
+                nameOf(data, loser) + " ran out of time. " + nameOf(data, winner) + " wins!"));
+        return true;
+    }
+
+    private String nameOf(GameData data, ChessGame.TeamColor color) {
+        String name = color == ChessGame.TeamColor.WHITE ? data.whiteUsername() : data.blackUsername();
+        return name == null ? color.toString().toLowerCase() : name;
+    }
+
+    // RESYNC
+
+    // a client whose board doesn't match the ply/hash of a MOVE message asks for the whole game again
+    private void resync(Connection root, UserGameCommand command) throws ServiceException, DataAccessException {
+        authenticate(root, command);
+        connections.send(root, new LoadGameMessage(loadGame(command.getGameID())));
     }
 
+    // ANALYZE
 
+    // the search runs on the analysis pool; only copying the position happens here on the mailbox
+    private void analyze(Connection root, UserGameCommand command) throws ServiceException, DataAccessException {
+        AuthData auth = authenticate(root, command);
+        GameData data = loadGame(command.getGameID());
+        var request = command instanceof AnalyzeCommand analyze
+                ? new AnalysisService.AnalysisRequest(analyze.getDepth(), analyze.getMillis())
+                : new AnalysisService.AnalysisRequest(null, null);
+        analysisService.analyze(auth.username(), data.game(), request).whenComplete((result, error) -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                connections.send(root, new ErrorMessage("Error: analysis failed: " + cause.getMessage()));
+            } else {
+                connections.send(root, new AnalysisMessage(data.gameID(), result.ply(), result.move(),
+                        result.score(), result.mateIn(), result.depth(), result.nodes()));
+            }
+        });
+    }
+
+    // HELPERS
+
+    // the token was checked on CONNECT, so a command with the same token can skip the lookup.
+    // Any other token (or a connection whose token was logged out) is checked the usual way
+    private AuthData authenticate(Connection root, UserGameCommand command) throws ServiceException {
+        AuthData bound = root.getAuth();
+        if (bound != null && bound.authToken().equals(command.getAuthToken())) {
+            return bound;
+        }
+        AuthData auth = userService.validateToken(command.getAuthToken());
+        // a new token for the same user is fine (they logged in again), but a connection that
+        // joined a game as one user can't send commands as another
+        String username = bound != null ? bound.username() : root.getUsername();
+        if (username != null && !username.equals(auth.username())) {
+            throw new ServiceException(401, "Error: this connection belongs to another user");
+        }
+        connections.bind(root, auth);
+        return auth;
+    }
+
+    private GameData loadGame(int gameID) throws ServiceException, DataAccessException {
+        GameData game = db.getGame(gameID);
+        if (game == null) {
+            throw new ServiceException(400, "Error: game not found");
+        }
+        return game;
+    }
 
+    // which side this user plays, or null if they're just watching
+    private ChessGame.TeamColor colorOf(GameData game, String username) {
+        if (username.equals(game.whiteUsername())) {
+            return ChessGame.TeamColor.WHITE;
+        }
+        if (username.equals(game.blackUsername())) {
+            return ChessGame.TeamColor.BLACK;
+        }
+        return null;
+    }
 
+    private String describe(ChessMove move) {
+        String text = square(move.getStartPosition()) + " to " + square(move.getEndPosition());
+        if (move.getPromotionPiece() != null) {
+            text += " (promoted to " + move.getPromotionPiece().toString().toLowerCase() + ")";
+        }
+        return text;
+    }
+
+    private String square(ChessPosition position) {
+        return "" + (char) ('a' + position.getColumn() - 1) + position.getRow();
+    }
 }
@@ -0,0 +1,279 @@
+package service;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.Zobrist;
+import chess.engine.ParallelSearch;
+import chess.engine.Search;
+import chess.engine.SearchLimits;
+import chess.engine.SearchResult;
+import chess.engine.TranspositionTable;
+
+import dataaccess.DataAccess;
+import dataaccess.DataAccessException;
+
+import model.AuthData;
+import model.GameData;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Finds the best move in a game's current position with the engine ({@link Search}).
+ * <p>
+ * Searches run on their own fixed pool of threads, so analysis never holds up request threads or
+ * game mailboxes. When the pool and its queue are both full new requests are turned away right
+ * away (503), and each user can only have a few searches waiting or running at once (429).
+ * Results are cached by the position's Zobrist key, so the same position asked for again isn't
+ * searched again unless it's asked for deeper, or with more time than a search that ran out of time.
+ * <p>
+ * A search can also borrow helper threads ({@link ParallelSearch}) from a pool shared by every
+ * search, so one analysis can use several cores while the server is quiet without a burst of
+ * them using more cores than the pool has.
+ */
+public class AnalysisService {
+    // how long to search when the request doesn't say
+    private static final long DEFAULT_MILLIS = 1_000;
+
+    private final DataAccess db;
+    private final UserService userService;
+    private final BiConsumer<Integer, Runnable> runOnGame;
+    private final ThreadPoolExecutor executor;
+    private final TranspositionTable table;
+    private final ParallelSearch parallel;
+    // most threads one search may use: its own plus every helper
+    private final int maxThreadsPerSearch;
+    private final int perUserLimit;
+    private final int maxDepth;
+    private final long maxMillis;
+    // searches waiting or running for each user
+    private final ConcurrentHashMap<String, Integer> running = new ConcurrentHashMap<>();
+    private final Map<Long, CachedResult> cache;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+
+    /**
+     * @param depth   deepest to search, in moves; leave out to search as deep as allowed
+     * @param millis  longest to search for; leave out for the default
+     * @param threads most threads to search on, counting the one it runs on; leave out to use
+     *                as many helpers as are free. Never more than the helper pool allows
+     */
+    public record AnalysisRequest(Integer depth, Long millis, Integer threads) {
+        public AnalysisRequest(Integer depth, Long millis) {
+            this(depth, millis, null);
+        }
+    }
+
+    /**
+     * @param move   the best move, or null if the side to move has no moves
+     * @param score  how good the position is for the side to move, in centipawns
+     * @param mateIn moves until mate, negative if the side to move gets mated; 0 if no mate was found
+     * @param ply    which position was searched, as the number of moves made in the game so far
+     * @param cached true if this came from the cache instead of a new search
+     */
+    public record AnalysisResult(ChessMove move, int score, int mateIn, int depth, long nodes, long millis,
+                                 int ply, boolean cached) {}
+
+    // a result and the limits it was searched with, which say whether searching again could do better
+    private record CachedResult(AnalysisResult result, SearchLimits limits) {
+        // the search stopped because its time ran out, rather than by reaching its depth or a mate
+        boolean ranOutOfTime() {
+            return result.depth() < limits.depth() && result.mateIn() == 0 && result.move() != null;
+        }
+    }
+
+    public record Stats(int threads, int queueDepth, int active, long completed, long rejected,
+                        long cacheHits, int cachedPositions, int helperThreads, int busyHelpers) {}
+
+    /**
+     * @param runOnGame    runs a task on a game's mailbox, which is the only place its board can be
+     *                     read safely while it's being played
+     * @param threads      most searches that can run at once
+     * @param helperThreads extra threads searches can borrow between them to search in parallel
+     * @param queueLimit   most searches that can wait for a thread before we start rejecting
+     * @param perUserLimit most searches one user can have waiting or running
+     * @param tableMb      size of the transposition table all the searches share
+     * @param cacheSize    most positions to keep results for
+     */
+    public AnalysisService(DataAccess db, UserService userService, BiConsumer<Integer, Runnable> runOnGame,
+                           int threads, int helperThreads, int queueLimit, int perUserLimit, int tableMb,
+                           int cacheSize, int maxDepth, long maxMillis) {
+        this.db = db;
+        this.userService = userService;
+        this.runOnGame = runOnGame;
+        this.perUserLimit = perUserLimit;
+        this.maxDepth = maxDepth;
+        this.maxMillis = maxMillis;
+        AtomicInteger count = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueLimit), runnable -> {
+                    Thread thread = new Thread(runnable, "analysis-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        table = new TranspositionTable(tableMb);
+        parallel = new ParallelSearch(helperThreads);
+        maxThreadsPerSearch = 1 + Math.max(0, helperThreads);
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedResult> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Analyzes a game's current position. The returned future fails with a ServiceException if
+     * the game doesn't exist or the analysis is turned away.
+     */
+    public CompletableFuture<AnalysisResult> analyze(String authToken, int gameID, AnalysisRequest req)
+            throws ServiceException {
+        AuthData auth = userService.validateToken(authToken);
+        SearchLimits limits = limits(req);
+        int threads = threads(req);
+        var result = new CompletableFuture<AnalysisResult>();
+        runOnGame.accept(gameID, () -> {
+            try {
+                GameData data = db.getGame(gameID);
+                if (data == null) {
+                    throw new ServiceException(400, "Error: game not found");
+                }
+                submit(auth.username(), data.game(), limits, threads).whenComplete((analysis, error) -> {
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                    } else {
+                        result.complete(analysis);
+                    }
+                });
+            } catch (ServiceException ex) {
+                result.completeExceptionally(ex);
+            } catch (DataAccessException ex) {
+                result.completeExceptionally(new ServiceException(500, "Error: " + ex.getMessage()));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Analyzes {@code game} for a user that's already been authenticated. Must be called where the
+     * game can't change underneath it (its mailbox); the position is copied before this returns.
+     */
+    public CompletableFuture<AnalysisResult> analyze(String username, ChessGame game, AnalysisRequest req)
+            throws ServiceException {
+        return submit(username, game, limits(req), threads(req));
+    }
+
+    private CompletableFuture<AnalysisResult> submit(String username, ChessGame game, SearchLimits limits,
+                                                     int threads) throws ServiceException {
+        long key = Zobrist.hash(game);
+        int ply = game.getPly();
+        AnalysisResult cached = cached(key, limits);
+        if (cached != null) {
+            cacheHits.increment();
+            return CompletableFuture.completedFuture(new AnalysisResult(cached.move(), cached.score(),
+                    cached.mateIn(), cached.depth(), cached.nodes(), cached.millis(), ply, true));
+        }
+
+        boolean[] admitted = new boolean[1];
+        running.compute(username, (name, count) -> {
+            int now = count == null ? 0 : count;
+            admitted[0] = now < perUserLimit;
+            return admitted[0] ? now + 1 : count;
+        });
+        if (!admitted[0]) {
+            throw new ServiceException(429, "Error: too many analyses running, wait for one to finish");
+        }
+        var position = new ChessGame(game);
+        try {
+            return CompletableFuture.supplyAsync(() -> search(key, position, ply, limits, threads), executor)
+                    .whenComplete((result, error) -> release(username));
+        } catch (RejectedExecutionException ex) {
+            release(username);
+            rejected.increment();
+            throw new ServiceException(503, "Error: the engine is busy, try again later");
+        }
+    }
+
+    public Stats stats() {
+        int cachedPositions;
+        synchronized (cache) {
+            cachedPositions = cache.size();
+        }
+        ParallelSearch.Stats helpers = parallel.stats();
+        return new Stats(executor.getMaximumPoolSize(), executor.getQueue().size(), executor.getActiveCount(),
+                completed.sum(), rejected.sum(), cacheHits.sum(), cachedPositions, helpers.helperThreads(),
+                helpers.busyHelpers());
+    }
+
+    public void shutdown() {
+        // searches notice the interrupt and stop, and stop their helpers
+        executor.shutdownNow();
+        parallel.shutdown();
+    }
+
+    private AnalysisResult search(long key, ChessGame game, int ply, SearchLimits limits, int threads) {
+        SearchResult found = parallel.search(game, limits, threads, table);
+        completed.increment();
+        var result = new AnalysisResult(found.move(), found.score(), found.mateIn(), found.depth(),
+                found.nodes(), found.millis(), ply, false);
+        synchronized (cache) {
+            CachedResult previous = cache.get(key);
+            if (previous == null || previous.result().depth() <= result.depth()) {
+                cache.put(key, new CachedResult(result, limits));
+            }
+        }
+        return result;
+    }
+
+    // a cached result is good enough if it searched at least as deep, found a mate (or no moves)
+    // that searching deeper won't change, or ran out of time with at least as much time as this
+    // search would get, so searching again would only get about as far
+    private AnalysisResult cached(long key, SearchLimits limits) {
+        CachedResult cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached == null) {
+            return null;
+        }
+        AnalysisResult result = cached.result();
+        if (result.depth() >= limits.depth() || result.mateIn() != 0 || result.move() == null
+                || cached.ranOutOfTime() && cached.limits().millis() >= limits.millis()) {
+            return result;
+        }
+        return null;
+    }
+
+    private void release(String username) {
+        running.computeIfPresent(username, (name, count) -> count == 1 ? null : count - 1);
+    }
+
+    private int threads(AnalysisRequest req) throws ServiceException {
+        Integer threads = req == null ? null : req.threads();
+        if (threads != null && threads < 1) {
+            throw new ServiceException(400, "Error: bad request");
+        }
+        return threads == null ? maxThreadsPerSearch : Math.min(threads, maxThreadsPerSearch);
+    }
+
+    private SearchLimits limits(AnalysisRequest req) throws ServiceException {
+        Integer depth = req == null ? null : req.depth();
+        Long millis = req == null ? null : req.millis();
+        if (depth != null && depth < 1 || millis != null && millis < 1) {
+            throw new ServiceException(400, "Error: bad request");
+        }
+        return new SearchLimits(depth == null ? maxDepth : Math.min(depth, maxDepth),
+                millis == null ? Math.min(DEFAULT_MILLIS, maxMillis) : Math.min(millis, maxMillis), 0);
+    }
+}
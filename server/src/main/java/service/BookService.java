@@ -0,0 +1,83 @@
+package service;
+
+import chess.ChessGame;
+import chess.Zobrist;
+import chess.book.OpeningBook;
+
+import dataaccess.DataAccess;
+import dataaccess.DataAccessException;
+
+import model.GameData;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+/**
+ * Looks games' positions up in the opening book. A lookup is just a binary search of the mapped
+ * book file, so it's answered on the game's mailbox with no searching at all.
+ */
+public class BookService {
+    private final DataAccess db;
+    private final UserService userService;
+    private final BiConsumer<Integer, Runnable> runOnGame;
+    private final OpeningBook book;
+
+    /**
+     * @param ply   which position was looked up, as the number of moves made in the game so far
+     * @param games how many games in the book reached this position
+     * @param moves what was played from it, most played first; empty once the game is out of book
+     */
+    public record BookResult(int ply, int games, List<OpeningBook.Entry> moves) {}
+
+    /**
+     * @param runOnGame runs a task on a game's mailbox, which is the only place its board can be
+     *                  read safely while it's being played
+     */
+    public BookService(DataAccess db, UserService userService, BiConsumer<Integer, Runnable> runOnGame,
+                       OpeningBook book) {
+        this.db = db;
+        this.userService = userService;
+        this.runOnGame = runOnGame;
+        this.book = book;
+    }
+
+    /**
+     * Finds the book moves for a game's current position. The returned future fails with a
+     * ServiceException if the game doesn't exist.
+     */
+    public CompletableFuture<BookResult> lookup(String authToken, int gameID) throws ServiceException {
+        userService.validateToken(authToken);
+        var result = new CompletableFuture<BookResult>();
+        runOnGame.accept(gameID, () -> {
+            try {
+                GameData data = db.getGame(gameID);
+                if (data == null) {
+                    throw new ServiceException(400, "Error: game not found");
+                }
+                result.complete(lookup(data.game()));
+            } catch (ServiceException ex) {
+                result.completeExceptionally(ex);
+            } catch (DataAccessException ex) {
+                result.completeExceptionally(new ServiceException(500, "Error: " + ex.getMessage()));
+            }
+        });
+        return result;
+    }
+
+    private BookResult lookup(ChessGame game) {
+        var moves = book.entries(Zobrist.hash(game));
+        int games = 0;
+        for (var entry : moves) {
+            games += entry.games();
+        }
+        return new BookResult(game.getPly(), games, moves);
+    }
+
+    /**
+     * @return how many (position, move) records the book has
+     */
+    public int size() {
+        return book.size();
+    }
+}
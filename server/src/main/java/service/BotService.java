@@ -0,0 +1,156 @@
+package service;
+
+import chess.ChessGame;
+
+import dataaccess.DataAccess;
+import dataaccess.DataAccessException;
+
+import model.AuthData;
+import model.GameData;
+import model.UserData;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+/**
+ * The computer players. Each bot is an ordinary user, made when the server starts, that takes a
+ * seat through {@link GameService#joinGame} like anyone else. Nobody knows a bot's password; it's
+ * given a token just long enough to join and the token is thrown away after.
+ * <p>
+ * A bot's strength is how many positions it may search for each move.
+ */
+public class BotService {
+    private final DataAccess db;
+    private final UserService userService;
+    private final GameService gameService;
+    private final BiConsumer<Integer, Runnable> runOnGame;
+    private final Map<String, Bot> bots = new LinkedHashMap<>();
+
+    /**
+     * @param nodes most positions the bot searches per move
+     */
+    public record Bot(String username, long nodes) {}
+
+    public record AddBotRequest(String bot, String playerColor) {}
+
+    /**
+     * @param runOnGame runs a task on a game's mailbox, so two bots can't sit down in one game at once
+     */
+    public BotService(DataAccess db, UserService userService, GameService gameService,
+                      BiConsumer<Integer, Runnable> runOnGame, Collection<Bot> bots) {
+        this.db = db;
+        this.userService = userService;
+        this.gameService = gameService;
+        this.runOnGame = runOnGame;
+        for (Bot bot : bots) {
+            this.bots.put(bot.username(), bot);
+        }
+    }
+
+    /**
+     * Reads bots written as {@code name:nodes,name:nodes,...}
+     *
+     * @throws IllegalArgumentException if the list isn't written that way
+     */
+    public static List<Bot> parse(String spec) {
+        var bots = new ArrayList<Bot>();
+        for (String entry : spec.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2 || parts[0].isBlank()) {
+                throw new IllegalArgumentException("bots must be written name:nodes, got " + entry);
+            }
+            bots.add(new Bot(parts[0], Long.parseLong(parts[1])));
+        }
+        return bots;
+    }
+
+    /**
+     * Makes the user for every bot that doesn't have one yet. Called at startup and after the
+     * database is cleared, so the names are taken before anyone else can register them.
+     */
+    public void createUsers() throws ServiceException {
+        try {
+            for (Bot bot : bots.values()) {
+                if (db.getUser(bot.username()) == null) {
+                    db.createUser(new UserData(bot.username(), UUID.randomUUID().toString(), bot.username() + "@bots"));
+                }
+            }
+        } catch (DataAccessException exception) {
+            throw new ServiceException(500, "Error: " + exception.getMessage());
+        }
+    }
+
+    public Collection<Bot> bots() {
+        return bots.values();
+    }
+
+    /**
+     * @return the bot with this username, or null if it's a person
+     */
+    public Bot bot(String username) {
+        return username == null ? null : bots.get(username);
+    }
+
+    /**
+     * Sits a bot down in an open seat. Bots don't play each other, since nothing would ever end
+     * a game between two of them that neither can win. The seat is taken on the game's mailbox,
+     * so the check for a bot in the other seat can't race another bot joining; the returned future
+     * fails with a ServiceException if the bot can't sit down.
+     */
+    public CompletableFuture<Void> addBot(String authToken, int gameID, AddBotRequest req) throws ServiceException {
+        userService.validateToken(authToken);
+        if (req == null || bot(req.bot()) == null) {
+            throw new ServiceException(400, "Error: no such bot");
+        }
+        var result = new CompletableFuture<Void>();
+        runOnGame.accept(gameID, () -> {
+            try {
+                join(gameID, req);
+                result.complete(null);
+            } catch (ServiceException ex) {
+                result.completeExceptionally(ex);
+            }
+        });
+        return result;
+    }
+
+    private void join(int gameID, AddBotRequest req) throws ServiceException {
+        GameData game;
+        try {
+            game = db.getGame(gameID);
+        } catch (DataAccessException exception) {
+            throw new ServiceException(500, "Error: " + exception.getMessage());
+        }
+        if (game != null && req.playerColor() != null) {
+            boolean white = req.playerColor().equalsIgnoreCase(ChessGame.TeamColor.WHITE.name());
+            if (bot(white ? game.blackUsername() : game.whiteUsername()) != null) {
+                throw new ServiceException(400, "Error: bots can't play each other");
+            }
+        }
+
+        String token = UUID.randomUUID().toString();
+        try {
+            db.createAuth(new AuthData(token, req.bot()));
+        } catch (DataAccessException exception) {
+            throw new ServiceException(500, "Error: " + exception.getMessage());
+        }
+        try {
+            gameService.joinGame(token, new GameService.JoinGameRequest(req.playerColor(), gameID));
+        } finally {
+            try {
+                db.deleteAuth(token);
+            } catch (DataAccessException exception) {
+                System.err.println("Unable to drop a bot's token: " + exception.getMessage());
+            }
+        }
+    }
+}
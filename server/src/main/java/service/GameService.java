@@ -1,9 +1,11 @@
 package service;
 
+import chess.ChessClock;
 import chess.ChessGame;
 
 import dataaccess.DataAccess;
 import dataaccess.DataAccessException;
+import dataaccess.GameVisitor;
 
 import model.GameData;
 import model.AuthData;
@@ -19,7 +21,16 @@ public class GameService {
         this.userService = userService;
     }
 
-    public record CreateGameRequest(String gameName) {}
+    /**
+     * @param baseMillis      starting time on each clock; leave out for an untimed game
+     * @param incrementMillis time given back per move (see {@link ChessClock.Mode})
+     */
+    public record CreateGameRequest(String gameName, Long baseMillis, Long incrementMillis,
+                                    ChessClock.Mode clockMode) {
+        public CreateGameRequest(String gameName) {
+            this(gameName, null, null, null);
+        }
+    }
     public record CreateGameResult(int gameID) {}
     public record JoinGameRequest(String playerColor, int gameID) {}
 
@@ -32,16 +43,33 @@ public class GameService {
         }
     }
 
+    // same as listGames but hands each game to the visitor instead of returning a list
+    public void streamGames(String authToken, GameVisitor visitor) throws ServiceException {
+        userService.validateToken(authToken);
+        try {
+            db.forEachGame(visitor);
+        } catch (DataAccessException exception) {
+            throw new ServiceException(500, "Error: " + exception.getMessage());
+        }
+    }
 
     public CreateGameResult createGame(String authToken, CreateGameRequest req) throws ServiceException {
         userService.validateToken(authToken);
         if (req.gameName() == null || req.gameName().isBlank()) {
             throw new ServiceException(400, "Error: bad request");
         }
+        ChessGame game = new ChessGame();
+        if (req.baseMillis() != null) {
+            long increment = req.incrementMillis() == null ? 0 : req.incrementMillis();
+            if (req.baseMillis() <= 0 || increment < 0) {
+                throw new ServiceException(400, "Error: bad time control");
+            }
+            game.setClock(new ChessClock(req.clockMode(), req.baseMillis(), increment));
+        }
 
         try {
             GameData created = db.createGame(new GameData(
-                    0, null, null, req.gameName(), new ChessGame()));
+                    0, null, null, req.gameName(), game));
             return new CreateGameResult(created.gameID());
         } catch (DataAccessException exception) {
             throw new ServiceException(500, "Error: " + exception.getMessage());
@@ -91,7 +119,7 @@ public class GameService {
         }
 
         try {
-            db.updateGame(new GameData(game.gameID(), newWhite, newBlack, game.gameName(), game.game()));
+            db.updatePlayers(game.gameID(), newWhite, newBlack);
         } catch (DataAccessException exception) {
             throw new ServiceException(500, "Error: " + exception.getMessage());
         }
@@ -2,18 +2,30 @@ package service;
 
 import dataaccess.DataAccess;
 import dataaccess.DataAccessException;
+import dataaccess.HasherBusyException;
+import dataaccess.PasswordHasher;
 import model.AuthData;
 import model.UserData;
 
-import org.mindrot.jbcrypt.BCrypt;
-
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 public class UserService {
     private final DataAccess db;
+    private final PasswordHasher hasher;
+    private final List<Consumer<String>> logoutListeners = new CopyOnWriteArrayList<>();
 
     public UserService(DataAccess db) {
+        this(db, PasswordHasher.defaultHasher());
+    }
+
+    public UserService(DataAccess db, PasswordHasher hasher) {
         this.db = db;
+        this.hasher = hasher;
     }
 
     public record RegisterRequest(String username, String password, String email) {}
@@ -21,38 +33,56 @@ public class UserService {
     public record LoginRequest(String username, String password) {}
     public record LoginResult(String username, String authToken) {}
 
+    /**
+     * Called with the token every time someone logs out, so anything holding on to it can let go
+     */
+    public void addLogoutListener(Consumer<String> listener) {
+        logoutListeners.add(listener);
+    }
+
     private static String generateToken() {
         return UUID.randomUUID().toString();
     }
 
     public RegisterResult register(RegisterRequest req) throws ServiceException {
+        return await(registerAsync(req));
+    }
+
+    /**
+     * Registers without holding the caller's thread while the password is hashed. Bad requests
+     * and a full hasher fail right away; anything after that fails the future with a
+     * ServiceException.
+     */
+    public CompletableFuture<RegisterResult> registerAsync(RegisterRequest req) throws ServiceException {
         if (req.username() == null || req.username().isBlank() ||
             req.password() == null || req.password().isBlank() ||
             req.email() == null || req.email().isBlank()) {
                 throw new ServiceException(400, "Error: bad request");
         }
 
-        try {
-            db.createUser(new UserData(req.username(), req.password(), req.email()));
-        } catch (DataAccessException exception) {
-            if (exception.getMessage().contains("already taken")) {
-
-                throw new ServiceException(403, "Error: username already taken");
+        // the database writes after the hash run on the hashing thread; they're quick next to it
+        return hashing(hasher::hashAsync, req.password()).thenApply(hashed -> {
+            try {
+                db.createHashedUser(new UserData(req.username(), hashed, req.email()));
+            } catch (DataAccessException exception) {
+                if (exception.getMessage().contains("already taken")) {
+                    throw new CompletionException(new ServiceException(403, "Error: username already taken"));
+                }
+                throw new CompletionException(new ServiceException(500, "Error: " + exception.getMessage()));
             }
-            throw new ServiceException(500, "Error: " + exception.getMessage());
-        }
-
-        String token = generateToken();
-        try {
-            db.createAuth(new AuthData(token, req.username()));
-        } catch (DataAccessException exception) {
-            throw new ServiceException(500, "Error: " + exception.getMessage());
-        }
-
-        return new RegisterResult(req.username(), token);
+            return new RegisterResult(req.username(), newToken(req.username()));
+        });
     }
 
     public LoginResult login(LoginRequest req) throws ServiceException {
+        return await(loginAsync(req));
+    }
+
+    /**
+     * Logs in without holding the caller's thread while the password is checked. Fails the same
+     * way {@link #registerAsync} does.
+     */
+    public CompletableFuture<LoginResult> loginAsync(LoginRequest req) throws ServiceException {
         if (req.username() == null || req.username().isBlank() ||
             req.password() == null || req.password().isBlank()) {
                 throw new ServiceException(400, "Error: bad request");
@@ -64,20 +94,56 @@ public class UserService {
         } catch (DataAccessException exception) {
             throw new ServiceException(500, "Error: " + exception.getMessage());
         }
-
-//        if (user == null || !user.password().equals(req.password())) {
-        if (user == null || !BCrypt.checkpw(req.password(), user.password())) {
+        if (user == null) {
             throw new ServiceException(401, "Error: unauthorized");
         }
 
+        return hashing(password -> hasher.checkAsync(password, user.password()), req.password()).thenApply(matches -> {
+            if (!matches) {
+                throw new CompletionException(new ServiceException(401, "Error: unauthorized"));
+            }
+            return new LoginResult(req.username(), newToken(req.username()));
+        });
+    }
+
+    private interface HashWork<T> {
+        CompletableFuture<T> start(String password) throws HasherBusyException;
+    }
+
+    // starts the hash, turning a full hasher into a 503 and a failed hash into a 500
+    private static <T> CompletableFuture<T> hashing(HashWork<T> work, String password) throws ServiceException {
+        CompletableFuture<T> future;
+        try {
+            future = work.start(password);
+        } catch (HasherBusyException exception) {
+            throw new ServiceException(503, "Error: " + exception.getMessage());
+        }
+        return future.exceptionallyCompose(error -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            return CompletableFuture.failedFuture(
+                    new ServiceException(500, "Error: Unable to hash password: " + cause.getMessage()));
+        });
+    }
+
+    private String newToken(String username) {
         String token = generateToken();
         try {
-            db.createAuth(new AuthData(token, req.username()));
+            db.createAuth(new AuthData(token, username));
         } catch (DataAccessException exception) {
-            throw new ServiceException(500, "Error: " + exception.getMessage());
+            throw new CompletionException(new ServiceException(500, "Error: " + exception.getMessage()));
         }
+        return token;
+    }
 
-        return new LoginResult(req.username(), token);
+    private static <T> T await(CompletableFuture<T> future) throws ServiceException {
+        try {
+            return future.join();
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof ServiceException serviceException) {
+                throw serviceException;
+            }
+            throw new ServiceException(500, "Error: " + exception.getCause().getMessage());
+        }
     }
 
     public void logout(String authToken) throws ServiceException {
@@ -87,9 +153,12 @@ public class UserService {
         } catch (DataAccessException exception) {
             throw new ServiceException(500, "Error: " + exception.getMessage());
         }
+        for (Consumer<String> listener : logoutListeners) {
+            listener.accept(authToken);
+        }
     }
 
-    protected AuthData validateToken(String authToken) throws ServiceException {
+    public AuthData validateToken(String authToken) throws ServiceException {
         if (authToken == null || authToken.isBlank()) {
             throw new ServiceException(401, "Error: unauthorized");
         }
@@ -0,0 +1,143 @@
+package dataaccess;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import model.GameData;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachingDataAccessTests {
+    private MemoryDataAccess memory;
+    private CachingDataAccess cache;
+    private int gameID;
+
+    @BeforeEach
+    void setUp() throws DataAccessException {
+        memory = new MemoryDataAccess();
+        // flush interval long enough that tests decide when flushing happens
+        cache = new CachingDataAccess(memory, 100, 60_000, 60_000);
+        gameID = cache.createGame(new GameData(0, "white", "black", "game", new ChessGame())).gameID();
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.close();
+    }
+
+    private ChessMove move(int fromRow, int fromCol, int toRow, int toCol) {
+        return new ChessMove(new ChessPosition(fromRow, fromCol), new ChessPosition(toRow, toCol), null);
+    }
+
+    private void play(ChessMove move) throws DataAccessException, InvalidMoveException {
+        GameData game = cache.getGame(gameID);
+        game.game().makeMove(move);
+        cache.recordMove(game, move);
+    }
+
+    @Test
+    void moveIsJournaledNotSaved() throws Exception {
+        play(move(2, 5, 4, 5));
+
+        assertEquals(1, memory.journaledMoves(gameID).size());
+        assertNull(memory.getGame(gameID).game().getBoard().getPiece(new ChessPosition(4, 5)),
+                "board shouldn't be saved until a flush");
+        assertNotNull(cache.getGame(gameID).game().getBoard().getPiece(new ChessPosition(4, 5)));
+    }
+
+    @Test
+    void flushSavesBoardAndTrimsJournal() throws Exception {
+        play(move(2, 5, 4, 5));
+        play(move(7, 5, 5, 5));
+        cache.flush();
+
+        assertTrue(memory.journaledMoves(gameID).isEmpty());
+        assertEquals(cache.getGame(gameID).game(), memory.getGame(gameID).game());
+    }
+
+    @Test
+    void journalReplaysAfterRestart() throws Exception {
+        play(move(2, 5, 4, 5));
+        play(move(7, 5, 5, 5));
+        ChessGame expected = new ChessGame(cache.getGame(gameID).game());
+
+        // a new cache over the same storage, as if the server stopped before flushing
+        var restarted = new CachingDataAccess(memory, 100, 60_000, 60_000);
+        assertEquals(expected, restarted.getGame(gameID).game());
+        restarted.close();
+    }
+
+    @Test
+    void updatePlayersKeepsBoard() throws Exception {
+        play(move(2, 5, 4, 5));
+        cache.updatePlayers(gameID, "white", null);
+
+        GameData game = cache.getGame(gameID);
+        assertNull(game.blackUsername());
+        assertNotNull(game.game().getBoard().getPiece(new ChessPosition(4, 5)));
+    }
+
+    @Test
+    void failedAppendKeepsCachedGame() throws Exception {
+        var failing = new MemoryDataAccess() {
+            @Override
+            public long appendMove(int gameID, ChessMove move) {
+                throw new IllegalStateException("journal unavailable");
+            }
+        };
+        var failingCache = new CachingDataAccess(failing, 100, 60_000, 60_000);
+        int id = failingCache.createGame(new GameData(0, "white", "black", "game", new ChessGame())).gameID();
+
+        // moves are made on a copy, the way the websocket handler makes them
+        GameData cached = failingCache.getGame(id);
+        ChessGame copy = new ChessGame(cached.game());
+        copy.makeMove(move(2, 5, 4, 5));
+        GameData moved = new GameData(id, cached.whiteUsername(), cached.blackUsername(), cached.gameName(), copy);
+        assertThrows(IllegalStateException.class, () -> failingCache.recordMove(moved, move(2, 5, 4, 5)));
+
+        assertEquals(new ChessGame(), failingCache.getGame(id).game());
+        failingCache.close();
+    }
+
+    @Test
+    void failedSaveKeepsCachedGame() throws Exception {
+        var failing = new MemoryDataAccess() {
+            @Override
+            public void saveSnapshots(Collection<GameSnapshot> snapshots) {
+                throw new IllegalStateException("database unavailable");
+            }
+        };
+        var failingCache = new CachingDataAccess(failing, 100, 60_000, 60_000);
+        int id = failingCache.createGame(new GameData(0, "white", "black", "game", new ChessGame())).gameID();
+
+        // a resignation, made on a copy the way the websocket handler makes it
+        GameData cached = failingCache.getGame(id);
+        ChessGame copy = new ChessGame(cached.game());
+        copy.setGameOver(true);
+        GameData resigned = new GameData(id, cached.whiteUsername(), cached.blackUsername(), cached.gameName(), copy);
+        assertThrows(IllegalStateException.class, () -> failingCache.updateGame(resigned));
+
+        assertFalse(failingCache.getGame(id).game().isGameOver());
+        failingCache.close();
+    }
+
+    @Test
+    void updateGameKeepsPlayers() throws Exception {
+        GameData stale = cache.getGame(gameID);
+        cache.updatePlayers(gameID, "white", "joined");
+        ChessGame copy = new ChessGame(stale.game());
+        copy.setGameOver(true);
+        cache.updateGame(new GameData(gameID, stale.whiteUsername(), stale.blackUsername(), stale.gameName(), copy));
+
+        assertEquals("joined", cache.getGame(gameID).blackUsername());
+        assertEquals("joined", memory.getGame(gameID).blackUsername());
+        assertTrue(cache.getGame(gameID).game().isGameOver());
+    }
+}
@@ -0,0 +1,68 @@
+package dataaccess;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PasswordHasherTests {
+
+    @Test
+    void hashThenCheck() throws DataAccessException {
+        var hasher = new PasswordHasher(1, 4, 4);
+        String hashed = hasher.hash("password");
+
+        assertNotEquals("password", hashed);
+        assertTrue(hasher.check("password", hashed));
+        assertFalse(hasher.check("wrong", hashed));
+        assertEquals(3, hasher.stats().completed());
+        hasher.shutdown();
+    }
+
+    @Test
+    void rejectsWhenFull() throws InterruptedException {
+        // one thread and a one slot queue, so of three slow hashes at once at least one is turned away
+        var hasher = new PasswordHasher(1, 1, 12);
+        var start = new CountDownLatch(1);
+        var busy = new AtomicInteger();
+        var threads = new ArrayList<Thread>();
+        for (int i = 0; i < 3; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    hasher.hash("password");
+                } catch (HasherBusyException ex) {
+                    busy.incrementAndGet();
+                } catch (Exception ignored) {
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(busy.get() >= 1);
+        assertEquals(busy.get(), hasher.stats().rejected());
+        hasher.shutdown();
+    }
+
+    @Test
+    void asyncHashesDontHoldTheCaller() throws Exception {
+        var hasher = new PasswordHasher(1, 1, 12);
+        // one running and one waiting, all from this thread without waiting on either
+        var first = hasher.hashAsync("password");
+        var second = hasher.hashAsync("password");
+        assertThrows(HasherBusyException.class, () -> hasher.hashAsync("password"));
+        assertFalse(first.isDone());
+
+        assertTrue(hasher.checkAsync("password", second.get()).get());
+        assertEquals(1, hasher.stats().rejected());
+        hasher.shutdown();
+    }
+}
@@ -1,6 +1,8 @@
 package dataaccess;
 
 import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
 import model.GameData;
 import model.AuthData;
 import model.UserData;
@@ -10,7 +12,9 @@ import org.mindrot.jbcrypt.BCrypt;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 public class SQLDataAccessTests {
     private static MySQLDataAccess tests;
@@ -182,6 +186,20 @@ public class SQLDataAccessTests {
         assertEquals(3, games.size(), "should list all 3 games");
     }
 
+    @Test
+    void forEachGameReadsEveryPage() throws DataAccessException {
+        // more than one page's worth, so the list has to carry on from where each page ended
+        for (int i = 0; i < 250; i++) {
+            tests.createGame(new GameData(0, null, null, "Game" + i, new ChessGame()));
+        }
+
+        var names = new ArrayList<String>();
+        tests.forEachGame(game -> names.add(game.gameName()));
+        assertEquals(250, names.size());
+        assertEquals("Game0", names.get(0));
+        assertEquals("Game249", names.get(249));
+    }
+
     @Test
     void listGamesNegative() throws DataAccessException {
         Collection<GameData> games = tests.listGames();
@@ -189,5 +207,60 @@ public class SQLDataAccessTests {
         assertTrue(games.isEmpty(), "should return an empty list because no games");
     }
 
+
+    @Test
+    void updatePlayersPositive() throws DataAccessException {
+        GameData created = tests.createGame(new GameData(0, null, null, "Test", new ChessGame()));
+        tests.updatePlayers(created.gameID(), "whitePlayer", "blackPlayer");
+
+        GameData fetched = tests.getGame(created.gameID());
+        assertEquals("whitePlayer", fetched.whiteUsername());
+        assertEquals("blackPlayer", fetched.blackUsername());
+        assertEquals(created.game(), fetched.game());
+    }
+
+    @Test
+    void updatePlayersNegative() {
+        assertDoesNotThrow(() -> tests.updatePlayers(99999, "ghost", null), "Updating no game should not throw an ex");
+    }
+
+    @Test
+    void journalMovesPositive() throws DataAccessException {
+        GameData created = tests.createGame(new GameData(0, null, null, "Test", new ChessGame()));
+        var move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+
+        long first = tests.appendMove(created.gameID(), move);
+        long second = tests.appendMove(created.gameID(), move);
+
+        assertTrue(second > first);
+        var moves = tests.journaledMoves(created.gameID());
+        assertEquals(2, moves.size());
+        assertEquals(move, moves.get(0).move());
+    }
+
+    @Test
+    void journalMovesNegative() throws DataAccessException {
+        assertTrue(tests.journaledMoves(99999).isEmpty(), "no game means no journaled moves");
+    }
+
+    @Test
+    void saveSnapshotsPositive() throws Exception {
+        GameData created = tests.createGame(new GameData(0, null, null, "Test", new ChessGame()));
+        var move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        long id = tests.appendMove(created.gameID(), move);
+        ChessGame moved = new ChessGame();
+        moved.makeMove(move);
+
+        tests.saveSnapshots(List.of(new GameSnapshot(created.gameID(), moved, id)));
+
+        assertEquals(moved, tests.getGame(created.gameID()).game());
+        assertTrue(tests.journaledMoves(created.gameID()).isEmpty(), "saved moves should be dropped from the journal");
+    }
+
+    @Test
+    void saveSnapshotsNegative() {
+        assertDoesNotThrow(() -> tests.saveSnapshots(List.of()), "Saving nothing should not throw an ex");
+    }
+
 }
 
@@ -0,0 +1,110 @@
+package serialization;
+
+import chess.ChessClock;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import com.google.gson.Gson;
+import model.GameData;
+import org.junit.jupiter.api.Test;
+import service.GameService;
+import service.UserService;
+import websocket.messages.ErrorMessage;
+import websocket.messages.LoadGameMessage;
+import websocket.messages.MoveMessage;
+import websocket.messages.NotificationMessage;
+import websocket.messages.ServerMessage;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// the hand written adapters have to write exactly what plain reflection Gson writes, and read it back
+public class SerializerTests {
+    private static final Gson PLAIN = new Gson();
+    private static final Gson OURS = Serializer.gson();
+
+    private static ChessMove move(int fromRow, int fromCol, int toRow, int toCol) {
+        return new ChessMove(new ChessPosition(fromRow, fromCol), new ChessPosition(toRow, toCol), null);
+    }
+
+    private static ChessGame playedGame() throws Exception {
+        var game = new ChessGame();
+        game.setClock(new ChessClock(ChessClock.Mode.BRONSTEIN, 60_000, 2_000));
+        game.makeMove(move(2, 5, 4, 5), 1_000);
+        game.makeMove(move(7, 4, 5, 4), 2_500);
+        game.makeMove(move(4, 5, 5, 4), 4_000);
+        return game;
+    }
+
+    private static void assertSameAsPlainGson(Object value, Class<?> type) {
+        String json = OURS.toJson(value);
+        assertEquals(PLAIN.toJson(value), json);
+        // and each can read what the other wrote
+        assertEquals(json, OURS.toJson(PLAIN.fromJson(json, type)));
+        assertEquals(json, PLAIN.toJson(OURS.fromJson(json, type)));
+    }
+
+    @Test
+    void gamesMatchPlainGson() throws Exception {
+        assertSameAsPlainGson(new ChessGame(), ChessGame.class);
+        assertSameAsPlainGson(playedGame(), ChessGame.class);
+
+        var data = new GameData(7, "white", null, "Game", playedGame());
+        assertSameAsPlainGson(data, GameData.class);
+        assertSameAsPlainGson(new GameData(8, null, null, null, null), GameData.class);
+        assertEquals(data, OURS.fromJson(OURS.toJson(data), GameData.class));
+    }
+
+    @Test
+    void movesAndPiecesMatchPlainGson() {
+        assertSameAsPlainGson(move(2, 5, 4, 5), ChessMove.class);
+        assertSameAsPlainGson(new ChessMove(new ChessPosition(7, 1), new ChessPosition(8, 1),
+                ChessPiece.PieceType.KNIGHT), ChessMove.class);
+        assertSameAsPlainGson(new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.QUEEN), ChessPiece.class);
+    }
+
+    @Test
+    void messagesMatchPlainGson() throws Exception {
+        var moveMessage = new MoveMessage(7, move(2, 5, 4, 5), 1, 0x1234_5678_9ABCL, ChessGame.TeamColor.BLACK,
+                true, false, false);
+        moveMessage.setClocks(59_000, 60_000);
+        moveMessage.setSequence(42L);
+        var messages = List.of(new LoadGameMessage(new GameData(7, "white", "black", "Game", playedGame())),
+                moveMessage, new NotificationMessage("white moved"), new ErrorMessage("Error: nope"));
+
+        for (ServerMessage message : messages) {
+            String json = OURS.toJson(message);
+            assertEquals(PLAIN.toJson(message), json);
+            assertEquals(json, OURS.toJson(OURS.fromJson(json, message.getClass())));
+        }
+    }
+
+    @Test
+    void requestsAndResultsMatchPlainGson() {
+        assertSameAsPlainGson(new UserService.RegisterRequest("foo", "password", null), UserService.RegisterRequest.class);
+        assertSameAsPlainGson(new UserService.LoginResult("foo", "token"), UserService.LoginResult.class);
+        assertSameAsPlainGson(new GameService.CreateGameRequest("Game", 60_000L, null, ChessClock.Mode.FISCHER),
+                GameService.CreateGameRequest.class);
+        assertSameAsPlainGson(new GameService.CreateGameResult(3), GameService.CreateGameResult.class);
+        assertSameAsPlainGson(new GameService.JoinGameRequest("WHITE", 3), GameService.JoinGameRequest.class);
+    }
+
+    @Test
+    void missingAndNullFields() {
+        // no board means the starting board, the same as the no-argument constructor gives
+        var game = OURS.fromJson("{\"turn\":\"BLACK\",\"ply\":3}", ChessGame.class);
+        assertEquals(new ChessGame().getBoard(), game.getBoard());
+        assertEquals(ChessGame.TeamColor.BLACK, game.getTeamTurn());
+        assertEquals(3, game.getPly());
+
+        var noTurn = new ChessGame();
+        noTurn.setTeamTurn(null);
+        String json = OURS.toJson(noTurn);
+        assertEquals(PLAIN.toJson(noTurn), json);
+        assertEquals(PLAIN.fromJson(json, ChessGame.class).getTeamTurn(),
+                OURS.fromJson(json, ChessGame.class).getTeamTurn());
+        assertNull(OURS.fromJson("{\"turn\":null}", ChessGame.class).getTeamTurn());
+    }
+}
@@ -0,0 +1,87 @@
+package server;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.engine.Search;
+import chess.engine.SearchLimits;
+import chess.engine.SearchResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.BotService;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BotPlayersTests {
+    private BotPlayers bots;
+
+    @BeforeEach
+    void setUp() {
+        bots = new BotPlayers(1, 5_000, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bots.shutdown();
+    }
+
+    @Test
+    void botFindsALegalMove() throws InterruptedException {
+        var game = new ChessGame();
+        var found = new AtomicReference<ChessMove>();
+        var done = new CountDownLatch(1);
+        bots.think(1, game, new BotService.Bot("easy", 1_000), move -> {
+            found.set(move);
+            done.countDown();
+        }, () -> fail("search failed"));
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(game.validMoves(found.get().getStartPosition()).contains(found.get()));
+        assertEquals(1, bots.stats().moves());
+    }
+
+    @Test
+    void oneThinkPerGame() throws InterruptedException {
+        var game = new ChessGame();
+        var calls = new AtomicInteger();
+        var done = new CountDownLatch(2);
+        var bot = new BotService.Bot("easy", 1_000);
+        bots.think(1, game, bot, move -> { calls.incrementAndGet(); done.countDown(); }, () -> {});
+        bots.think(1, game, bot, move -> { calls.incrementAndGet(); done.countDown(); }, () -> {});
+        bots.think(2, game, bot, move -> { calls.incrementAndGet(); done.countDown(); }, () -> {});
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        // give a wrongly queued second think for game 1 the chance to show up
+        Thread.sleep(200);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void failedSearchLetsTheGameAskAgain() throws InterruptedException {
+        bots.shutdown();
+        bots = new BotPlayers(1, 5_000, () -> new Search() {
+            @Override
+            public SearchResult search(ChessGame game, SearchLimits limits) {
+                throw new IllegalStateException("broken search");
+            }
+        });
+        var game = new ChessGame();
+        var bot = new BotService.Bot("easy", 1_000);
+        var failed = new CountDownLatch(1);
+        bots.think(1, game, bot, move -> fail("no move should be found"), failed::countDown);
+
+        assertTrue(failed.await(10, TimeUnit.SECONDS));
+        assertEquals(0, bots.stats().moves());
+        assertEquals(1, bots.stats().failures());
+
+        // the failed think no longer counts as the game's one think
+        var again = new CountDownLatch(1);
+        bots.think(1, game, bot, move -> fail("no move should be found"), again::countDown);
+        assertTrue(again.await(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,203 @@
+package server;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import model.AuthData;
+import model.GameData;
+import serialization.Serializer;
+import websocket.messages.LoadGameMessage;
+import websocket.messages.MoveMessage;
+import websocket.messages.NotificationMessage;
+import websocket.messages.ServerMessage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionManagerTests {
+    private static final int GAME = 7;
+
+    private ConnectionManager connections;
+    private FakeSession watcher;
+    private Connection watching;
+
+    @BeforeEach
+    void setUp() {
+        connections = new ConnectionManager(new OutboundLimits(256, 1 << 20, 8), 4);
+        watcher = new FakeSession();
+        watching = connections.open(watcher.session, true);
+        connections.add(GAME, watching, "watcher", false);
+    }
+
+    private void move() {
+        var move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        var game = new GameData(GAME, "white", "black", "game", new ChessGame());
+        connections.broadcastMove(GAME, new MoveMessage(GAME, move, 1, 0, ChessGame.TeamColor.BLACK,
+                false, false, false), new LoadGameMessage(game));
+    }
+
+    private static long sequenceOf(String json) {
+        return Serializer.gson().fromJson(json, ServerMessage.class).getSequence();
+    }
+
+    @Test
+    void eventsAreNumberedInOrder() {
+        connections.broadcast(GAME, null, new NotificationMessage("one"));
+        move();
+        connections.broadcast(GAME, null, new NotificationMessage("two"));
+
+        assertEquals(3, watcher.sent.size());
+        long first = sequenceOf(watcher.sent.get(0));
+        assertEquals(first + 1, sequenceOf(watcher.sent.get(1)));
+        assertEquals(first + 2, sequenceOf(watcher.sent.get(2)));
+        assertEquals(first + 2, connections.lastSequence(GAME));
+    }
+
+    @Test
+    void reconnectGetsJustWhatItMissed() {
+        var player = connections.open(new FakeSession().session, false);
+        connections.add(GAME, player, "white", true);
+
+        connections.broadcast(GAME, null, new NotificationMessage("seen"));
+        long lastSeen = sequenceOf(watcher.sent.get(0));
+        connections.close(watcher.session);
+
+        move();
+        connections.broadcast(GAME, player, new NotificationMessage("not for white"));
+        connections.broadcast(GAME, null, new NotificationMessage("for everyone"));
+
+        var again = new FakeSession();
+        var back = connections.open(again.session, true);
+        connections.add(GAME, back, "watcher", false);
+        assertTrue(connections.resume(GAME, back, lastSeen));
+
+        assertEquals(3, again.sent.size());
+        assertEquals(ServerMessage.ServerMessageType.MOVE,
+                Serializer.gson().fromJson(again.sent.get(0), ServerMessage.class).getServerMessageType());
+        assertEquals(lastSeen + 3, sequenceOf(again.sent.get(2)));
+
+        // the player doesn't get the notice that skipped them the first time
+        var playerAgain = new FakeSession();
+        var rejoined = connections.open(playerAgain.session, true);
+        connections.add(GAME, rejoined, "white", true);
+        assertTrue(connections.resume(GAME, rejoined, lastSeen));
+        assertEquals(List.of(lastSeen + 1, lastSeen + 3), playerAgain.sent.stream()
+                .map(ConnectionManagerTests::sequenceOf).toList());
+    }
+
+    @Test
+    void leaverIsntToldTheyLeftWhenTheyComeBack() {
+        var player = connections.open(new FakeSession().session, false);
+        connections.add(GAME, player, "white", true);
+        long lastSeen = connections.lastSequence(GAME);
+
+        // the order leave uses: tell the others while the leaver is still in the game, then drop them
+        connections.broadcast(GAME, player, new NotificationMessage("white left the game"));
+        connections.remove(player);
+
+        var again = new FakeSession();
+        var back = connections.open(again.session, true);
+        connections.add(GAME, back, "white", true);
+        assertTrue(connections.resume(GAME, back, lastSeen));
+        assertTrue(again.sent.isEmpty());
+    }
+
+    @Test
+    void fallsBackWhenTooMuchWasMissed() {
+        connections.broadcast(GAME, null, new NotificationMessage("seen"));
+        long lastSeen = sequenceOf(watcher.sent.get(0));
+        for (int i = 0; i < 5; i++) {
+            move();
+        }
+        assertFalse(connections.resume(GAME, watching, lastSeen));
+        // and numbers it never handed out
+        assertFalse(connections.resume(GAME, watching, lastSeen + 100));
+
+        var plain = connections.open(new FakeSession().session, false);
+        connections.add(GAME, plain, "someone", false);
+        assertFalse(connections.resume(GAME, plain, connections.lastSequence(GAME)));
+    }
+
+    private static ServerMessage.ServerMessageType typeOf(String json) {
+        return Serializer.gson().fromJson(json, ServerMessage.class).getServerMessageType();
+    }
+
+    @Test
+    void joinAndLeave() {
+        var session = new FakeSession();
+        var player = connections.open(session.session, false);
+        assertSame(player, connections.get(session.session));
+        connections.add(GAME, player, "white", true);
+        assertEquals(2, connections.connectionCount());
+        assertEquals(1, connections.gameCount());
+        assertEquals(GAME, player.getGameID());
+        assertTrue(player.isPlayer());
+
+        connections.remove(player);
+        assertNull(player.getGameID());
+        connections.broadcast(GAME, null, new NotificationMessage("after leaving"));
+        assertTrue(session.sent.isEmpty());
+
+        // the last one out takes the game with them
+        connections.close(watcher.session);
+        assertEquals(0, connections.gameCount());
+        assertNull(connections.get(watcher.session));
+        assertEquals(1, connections.connectionCount());
+    }
+
+    @Test
+    void broadcastSkipsTheSenderAndOtherGames() {
+        var white = new FakeSession();
+        var player = connections.open(white.session, false);
+        connections.add(GAME, player, "white", true);
+        var elsewhere = new FakeSession();
+        connections.add(GAME + 1, connections.open(elsewhere.session, false), "other", false);
+
+        connections.broadcast(GAME, player, new NotificationMessage("white moved"));
+
+        assertTrue(white.sent.isEmpty());
+        assertEquals(1, watcher.sent.size());
+        assertTrue(elsewhere.sent.isEmpty());
+    }
+
+    @Test
+    void observersGetTheUpdateTheyAskedFor() {
+        var plain = new FakeSession();
+        connections.add(GAME, connections.open(plain.session, false), "plain", false);
+        var player = new FakeSession();
+        connections.add(GAME, connections.open(player.session, true), "white", true);
+
+        move();
+
+        assertEquals(ServerMessage.ServerMessageType.MOVE, typeOf(watcher.sent.get(0)));
+        assertEquals(ServerMessage.ServerMessageType.MOVE, typeOf(player.sent.get(0)));
+        assertEquals(ServerMessage.ServerMessageType.LOAD_GAME, typeOf(plain.sent.get(0)));
+    }
+
+    @Test
+    void joiningAnotherGameLeavesTheFirst() {
+        connections.add(GAME + 1, watching, "watcher", false);
+        assertEquals(GAME + 1, watching.getGameID());
+
+        connections.broadcast(GAME, null, new NotificationMessage("old game"));
+        assertTrue(watcher.sent.isEmpty());
+        connections.broadcast(GAME + 1, null, new NotificationMessage("new game"));
+        assertEquals(1, watcher.sent.size());
+        assertNull(connections.lastSequence(GAME));
+    }
+
+    @Test
+    void logoutUnbindsEveryConnectionWithTheToken() {
+        var other = connections.open(new FakeSession().session, false);
+        connections.bind(watching, new AuthData("token", "watcher"));
+        connections.bind(other, new AuthData("other", "someone"));
+
+        connections.unbind("token");
+        assertNull(watching.getAuth());
+        assertEquals("someone", other.getAuth().username());
+    }
+}
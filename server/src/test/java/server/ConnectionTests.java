@@ -0,0 +1,72 @@
+package server;
+
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionTests {
+    private OutboundLimits limits;
+    private FakeSession client;
+    private Connection connection;
+
+    @BeforeEach
+    void setUp() {
+        limits = new OutboundLimits(4, 1000, 2);
+        client = new FakeSession();
+        connection = new Connection(client.session, limits);
+    }
+
+    @Test
+    void sendsInOrder() {
+        connection.send("a");
+        connection.send("b");
+        connection.send("c");
+        assertEquals(List.of("a", "b", "c"), client.sent);
+    }
+
+    @Test
+    void onlyOneWriteAtATime() {
+        client.stalled = true;
+        connection.send("a");
+        connection.send("b");
+        assertEquals(List.of("a"), client.sent);
+
+        client.completeWrites();
+        assertEquals(List.of("a", "b"), client.sent);
+    }
+
+    @Test
+    void newerBoardReplacesQueuedBoardsAndMoves() {
+        client.stalled = true;
+        connection.send("first", Connection.Kind.MESSAGE);
+        connection.send("board 1", Connection.Kind.STATE);
+        connection.send("move 2", Connection.Kind.MOVE);
+        connection.send("note", Connection.Kind.MESSAGE);
+        connection.send("board 3", Connection.Kind.STATE);
+        assertTrue(connection.isLagging());
+
+        client.completeWrites();
+        assertEquals(List.of("first", "note", "board 3"), client.sent);
+        assertEquals(2, limits.stats().coalescedMessages());
+        assertFalse(connection.isLagging());
+    }
+
+    @Test
+    void closesClientThatFallsTooFarBehind() {
+        client.stalled = true;
+        for (int i = 0; i < 6; i++) {
+            connection.send("note " + i);
+        }
+        assertFalse(client.open);
+        assertEquals(StatusCode.POLICY_VIOLATION, client.closeStatus);
+        assertEquals(1, limits.stats().slowDisconnects());
+
+        // nothing more goes out once it's been dropped
+        client.completeWrites();
+        assertEquals(List.of("note 0"), client.sent);
+    }
+}
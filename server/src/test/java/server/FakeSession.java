@@ -0,0 +1,91 @@
+package server;
+
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A jetty Session that records what is sent to it instead of writing to a socket. Writes finish
+ * right away unless {@code stalled}, in which case they wait for {@link #completeWrites}.
+ */
+class FakeSession {
+    final List<String> sent = new CopyOnWriteArrayList<>();
+    final ArrayDeque<WriteCallback> pending = new ArrayDeque<>();
+    volatile boolean stalled;
+    volatile boolean open = true;
+    volatile int closeStatus;
+    volatile int pings;
+    volatile Runnable onSend = () -> {};
+    // what the client does when a ping reaches it; a real one answers with a pong
+    volatile Runnable onPing = () -> {};
+
+    final Session session;
+
+    FakeSession() {
+        RemoteEndpoint remote = (RemoteEndpoint) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RemoteEndpoint.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("sendString") && args.length == 2) {
+                        sent.add((String) args[0]);
+                        onSend.run();
+                        write((WriteCallback) args[1]);
+                    } else if (method.getName().equals("sendPing") && args.length == 2) {
+                        pings++;
+                        write((WriteCallback) args[1]);
+                        if (!stalled) {
+                            onPing.run();
+                        }
+                    }
+                    return null;
+                });
+        session = (Session) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Session.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getRemote" -> remote;
+                    case "isOpen" -> open;
+                    case "close" -> {
+                        open = false;
+                        closeStatus = args != null && args.length > 0 && args[0] instanceof Integer code ? code : 1000;
+                        yield null;
+                    }
+                    case "disconnect" -> {
+                        open = false;
+                        yield null;
+                    }
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "FakeSession";
+                    default -> null;
+                });
+    }
+
+    private void write(WriteCallback callback) {
+        if (stalled) {
+            synchronized (pending) {
+                pending.add(callback);
+            }
+        } else {
+            callback.writeSuccess();
+        }
+    }
+
+    /**
+     * Lets the client catch up: finishes writes until none are waiting
+     */
+    void completeWrites() {
+        stalled = false;
+        while (true) {
+            WriteCallback callback;
+            synchronized (pending) {
+                callback = pending.poll();
+            }
+            if (callback == null) {
+                return;
+            }
+            callback.writeSuccess();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package server;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import model.GameData;
+import websocket.messages.LoadGameMessage;
+import websocket.messages.MoveMessage;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Times how long one move takes to reach every observer of a very popular game, sending from a
+ * single loop and sharing the observers out over writer threads. Sessions are fakes that finish
+ * every write right away, so this measures our own fan-out work, not the network.
+ * <p>
+ * Tagged "load" and left out of the normal build; run it with {@code mvn test -Pload}.
+ */
+@Tag("load")
+public class FanOutLoadTests {
+    private static final int GAME = 1;
+    private static final int WARMUP_MOVES = 5;
+    private static final int MOVES = 20;
+    // slowest 90th percentile we accept, per observer; about ten times what a laptop manages
+    private static final long BUDGET_NANOS_PER_OBSERVER = 20_000;
+
+    @ParameterizedTest(name = "{0} observers, {1} writers")
+    @CsvSource({"10000, 0", "10000, 4", "50000, 0", "50000, 4"})
+    void moveReachesEveryObserver(int observerCount, int writers) throws InterruptedException {
+        // big enough limits that nobody gets coalesced or dropped
+        var connections = new ConnectionManager(new OutboundLimits(1024, 1 << 24, 1024), 16, writers, 1000);
+        var latch = new AtomicReference<CountDownLatch>(new CountDownLatch(0));
+        try {
+            var white = new FakeSession();
+            var black = new FakeSession();
+            connections.add(GAME, connections.open(white.session, true), "white", true);
+            connections.add(GAME, connections.open(black.session, false), "black", true);
+
+            var observers = new ArrayList<FakeSession>(observerCount);
+            for (int i = 0; i < observerCount; i++) {
+                var observer = new FakeSession();
+                observer.onSend = () -> latch.get().countDown();
+                // half take move updates, half whole boards
+                connections.add(GAME, connections.open(observer.session, i % 2 == 0), "observer" + i, false);
+                observers.add(observer);
+            }
+
+            long[] nanos = new long[MOVES];
+            for (int move = 0; move < WARMUP_MOVES + MOVES; move++) {
+                latch.set(new CountDownLatch(observerCount));
+                int playerMessages = white.sent.size();
+
+                long start = System.nanoTime();
+                broadcastMove(connections, move);
+                // players are sent to before broadcastMove returns, whatever the observers are doing
+                assertEquals(playerMessages + 1, white.sent.size());
+                assertTrue(latch.get().await(30, TimeUnit.SECONDS), "not every observer got the move");
+                long elapsed = System.nanoTime() - start;
+
+                if (move >= WARMUP_MOVES) {
+                    nanos[move - WARMUP_MOVES] = elapsed;
+                }
+            }
+
+            for (FakeSession observer : observers) {
+                assertEquals(WARMUP_MOVES + MOVES, observer.sent.size());
+            }
+            long p90 = percentile(nanos, 90);
+            assertTrue(p90 <= observerCount * BUDGET_NANOS_PER_OBSERVER, String.format(
+                    "p90 of %.2fms to reach %d observers with %d writers is over budget",
+                    p90 / 1_000_000.0, observerCount, writers));
+        } finally {
+            connections.shutdown();
+        }
+    }
+
+    private void broadcastMove(ConnectionManager connections, int ply) {
+        var move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        var game = new GameData(GAME, "white", "black", "featured", new ChessGame());
+        connections.broadcastMove(GAME, new MoveMessage(GAME, move, ply + 1, ply, ChessGame.TeamColor.BLACK,
+                false, false, false), new LoadGameMessage(game));
+    }
+
+    private long percentile(long[] nanos, int percent) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length * percent / 100];
+    }
+}
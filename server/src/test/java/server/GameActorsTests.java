@@ -0,0 +1,70 @@
+package server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameActorsTests {
+    private GameActors actors;
+
+    @BeforeEach
+    void setUp() {
+        actors = new GameActors(Executors.newFixedThreadPool(4));
+    }
+
+    @AfterEach
+    void tearDown() {
+        actors.shutdown();
+    }
+
+    @Test
+    void tasksForOneGameRunInOrder() throws InterruptedException {
+        int count = 10_000;
+        List<Integer> first = new ArrayList<>();
+        List<Integer> second = new ArrayList<>();
+        var done = new CountDownLatch(2 * count);
+
+        for (int i = 0; i < count; i++) {
+            int value = i;
+            // plain lists on purpose: only one task per game may touch its list at a time
+            actors.submit(1, () -> { first.add(value); done.countDown(); });
+            actors.submit(2, () -> { second.add(value); done.countDown(); });
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, first.get(i));
+            assertEquals(i, second.get(i));
+        }
+    }
+
+    @Test
+    void idleMailboxesAreRetired() throws InterruptedException {
+        var done = new CountDownLatch(1);
+        actors.submit(7, done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (actors.activeGames() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, actors.activeGames());
+    }
+
+    @Test
+    void failingTaskDoesNotStopTheGame() throws InterruptedException {
+        var done = new CountDownLatch(1);
+        actors.submit(3, () -> { throw new IllegalStateException("boom"); });
+        actors.submit(3, done::countDown);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+}
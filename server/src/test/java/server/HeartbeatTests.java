@@ -0,0 +1,106 @@
+package server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HeartbeatTests {
+    private ConnectionManager connections;
+    private Heartbeat heartbeat;
+
+    @BeforeEach
+    void setUp() {
+        connections = new ConnectionManager(new OutboundLimits(256, 1 << 20, 8), 16);
+        // long interval so only the test calls beat()
+        heartbeat = new Heartbeat(connections, 3_600_000, 50);
+    }
+
+    @AfterEach
+    void tearDown() {
+        heartbeat.stop();
+    }
+
+    @Test
+    void pingsLiveConnections() {
+        var client = new FakeSession();
+        var connection = connections.open(client.session);
+        connections.add(1, connection, "someone", false);
+        client.onPing = connection::ponged;
+
+        heartbeat.beat();
+        heartbeat.beat();
+        assertEquals(2, client.pings);
+        assertEquals(1, connections.connectionCount());
+        assertEquals(0, heartbeat.stats().reaped());
+    }
+
+    @Test
+    void reapsClosedSessions() {
+        var client = new FakeSession();
+        connections.add(1, connections.open(client.session), "someone", false);
+        client.open = false;
+
+        heartbeat.beat();
+        assertEquals(0, connections.connectionCount());
+        assertEquals(0, connections.gameCount());
+        assertEquals(1, heartbeat.stats().reaped());
+    }
+
+    @Test
+    void reapsClientsThatStopReading() throws InterruptedException {
+        var stuck = new FakeSession();
+        var fine = new FakeSession();
+        connections.add(1, connections.open(stuck.session), "stuck", false);
+        var fineConnection = connections.open(fine.session);
+        connections.add(1, fineConnection, "fine", false);
+        fine.onPing = fineConnection::ponged;
+        stuck.stalled = true;
+
+        heartbeat.beat();
+        Thread.sleep(100);
+        heartbeat.beat();
+
+        assertFalse(stuck.open);
+        assertTrue(fine.open);
+        assertEquals(1, connections.connectionCount());
+        assertEquals(1, heartbeat.stats().reaped());
+        // a ping that hasn't gone out isn't followed by another
+        assertEquals(1, stuck.pings);
+    }
+
+    @Test
+    void reapsClientsThatStopAnsweringPings() throws InterruptedException {
+        // the pings get written fine, but no pong ever comes back
+        var silent = new FakeSession();
+        var connection = connections.open(silent.session);
+        connections.add(1, connection, "silent", false);
+
+        heartbeat.beat();
+        heartbeat.beat();
+        // no second ping while the first is unanswered
+        assertEquals(1, silent.pings);
+        assertTrue(silent.open);
+
+        Thread.sleep(100);
+        heartbeat.beat();
+        assertFalse(silent.open);
+        assertEquals(0, connections.connectionCount());
+        assertEquals(1, heartbeat.stats().reaped());
+    }
+
+    @Test
+    void pongAllowsTheNextPing() {
+        var client = new FakeSession();
+        var connection = connections.open(client.session);
+        connections.add(1, connection, "someone", false);
+
+        heartbeat.beat();
+        assertTrue(connection.stalledNanos(System.nanoTime()) > 0);
+        connection.ponged();
+        assertEquals(0, connection.stalledNanos(System.nanoTime()));
+        heartbeat.beat();
+        assertEquals(2, client.pings);
+    }
+}
@@ -0,0 +1,67 @@
+package server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimerWheelTests {
+    private TimerWheel wheel;
+
+    @BeforeEach
+    void setUp() {
+        // a small wheel so longer timeouts have to go round more than once
+        wheel = new TimerWheel(1, 16);
+    }
+
+    @AfterEach
+    void tearDown() {
+        wheel.stop();
+    }
+
+    @Test
+    void firesNoEarlierThanAsked() throws InterruptedException {
+        var done = new CountDownLatch(1);
+        long[] firedAt = new long[1];
+        long start = System.nanoTime();
+        wheel.schedule(() -> {
+            firedAt[0] = System.nanoTime();
+            done.countDown();
+        }, 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        long waited = TimeUnit.NANOSECONDS.toMillis(firedAt[0] - start);
+        assertTrue(waited >= 50, "fired after " + waited + "ms");
+        assertEquals(new TimerWheel.Stats(0, 1), wheel.stats());
+    }
+
+    @Test
+    void firesInDeadlineOrder() throws InterruptedException {
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        var done = new CountDownLatch(3);
+        wheel.schedule(() -> { order.add(3); done.countDown(); }, 70, TimeUnit.MILLISECONDS);
+        wheel.schedule(() -> { order.add(1); done.countDown(); }, 5, TimeUnit.MILLISECONDS);
+        wheel.schedule(() -> { order.add(2); done.countDown(); }, 35, TimeUnit.MILLISECONDS);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(1, 2, 3), order);
+    }
+
+    @Test
+    void cancelledTimeoutsDontFire() throws InterruptedException {
+        var done = new CountDownLatch(1);
+        List<String> fired = new CopyOnWriteArrayList<>();
+        var cancelled = wheel.schedule(() -> fired.add("cancelled"), 20, TimeUnit.MILLISECONDS);
+        wheel.schedule(() -> { fired.add("kept"); done.countDown(); }, 40, TimeUnit.MILLISECONDS);
+        cancelled.cancel();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("kept"), fired);
+    }
+}
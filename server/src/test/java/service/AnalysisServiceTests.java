@@ -0,0 +1,176 @@
+package service;
+
+import dataaccess.MemoryDataAccess;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AnalysisServiceTests {
+    private MemoryDataAccess db;
+    private UserService userService;
+    private String token;
+    private int gameID;
+    private AnalysisService analysis;
+
+    @BeforeEach
+    void setUp() throws ServiceException {
+        db = new MemoryDataAccess();
+        userService = new UserService(db);
+        var gameService = new GameService(db, userService);
+        token = userService.register(new UserService.RegisterRequest("foo", "password", "foo@example.com")).authToken();
+        gameID = gameService.createGame(token, new GameService.CreateGameRequest("Game")).gameID();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (analysis != null) {
+            analysis.shutdown();
+        }
+    }
+
+    // runs the "mailbox" work right away, on the calling thread
+    private AnalysisService service(int threads, int queueLimit, int perUserLimit) {
+        return service(threads, 0, queueLimit, perUserLimit);
+    }
+
+    private AnalysisService service(int threads, int helperThreads, int queueLimit, int perUserLimit) {
+        analysis = new AnalysisService(db, userService, (id, task) -> task.run(), threads, helperThreads,
+                queueLimit, perUserLimit, 1, 100, 20, 10_000);
+        return analysis;
+    }
+
+    private static void waitForBusyHelpers(AnalysisService service, int busy) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (service.stats().busyHelpers() != busy && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(busy, service.stats().busyHelpers());
+    }
+
+    // long enough that it's still running when the test is done with it
+    private static AnalysisService.AnalysisRequest slow() {
+        return new AnalysisService.AnalysisRequest(20, 10_000L);
+    }
+
+    @Test
+    void analyzesTheCurrentPosition() throws Exception {
+        var result = service(1, 4, 2).analyze(token, gameID, new AnalysisService.AnalysisRequest(3, null))
+                .get(10, TimeUnit.SECONDS);
+        assertNotNull(result.move());
+        assertEquals(3, result.depth());
+        assertEquals(0, result.ply());
+        assertFalse(result.cached());
+    }
+
+    @Test
+    void samePositionComesFromTheCache() throws Exception {
+        var service = service(1, 4, 2);
+        var first = service.analyze(token, gameID, new AnalysisService.AnalysisRequest(3, null)).get(10, TimeUnit.SECONDS);
+        var again = service.analyze(token, gameID, new AnalysisService.AnalysisRequest(2, null)).get(10, TimeUnit.SECONDS);
+
+        assertTrue(again.cached());
+        assertEquals(first.move(), again.move());
+        assertEquals(first.depth(), again.depth());
+        assertEquals(1, service.stats().cacheHits());
+        assertEquals(1, service.stats().completed());
+    }
+
+    @Test
+    void timedOutResultIsOnlyReusedWithNoMoreTime() throws Exception {
+        var service = service(1, 4, 2);
+        var first = service.analyze(token, gameID, new AnalysisService.AnalysisRequest(20, 50L))
+                .get(10, TimeUnit.SECONDS);
+        // 50ms is nowhere near enough for depth 20, so this stopped on the clock
+        assertTrue(first.depth() < 20);
+
+        var same = service.analyze(token, gameID, new AnalysisService.AnalysisRequest(20, 50L))
+                .get(10, TimeUnit.SECONDS);
+        assertTrue(same.cached());
+        var lessTime = service.analyze(token, gameID, new AnalysisService.AnalysisRequest(20, 20L))
+                .get(10, TimeUnit.SECONDS);
+        assertTrue(lessTime.cached());
+
+        var moreTime = service.analyze(token, gameID, new AnalysisService.AnalysisRequest(20, 500L))
+                .get(10, TimeUnit.SECONDS);
+        assertFalse(moreTime.cached());
+        assertEquals(2, service.stats().completed());
+    }
+
+    @Test
+    void limitsSearchesPerUser() throws ServiceException {
+        var service = service(2, 4, 1);
+        service.analyze(token, gameID, slow());
+
+        ServiceException ex = assertThrows(ServiceException.class, () -> service.analyze(
+                "foo", db.getGame(gameID).game(), slow()));
+        assertEquals(429, ex.statusCode());
+    }
+
+    @Test
+    void turnsAwaySearchesWhenTheQueueIsFull() throws Exception {
+        var service = service(1, 1, 10);
+        var game = db.getGame(gameID).game();
+        service.analyze("a", game, slow());
+        service.analyze("b", game, slow());
+
+        ServiceException ex = assertThrows(ServiceException.class, () -> service.analyze("c", game, slow()));
+        assertEquals(503, ex.statusCode());
+        assertEquals(1, service.stats().rejected());
+    }
+
+    @Test
+    void badRequests() {
+        var service = service(1, 4, 2);
+        ServiceException badToken = assertThrows(ServiceException.class, () -> service.analyze(
+                "badToken", gameID, null));
+        assertEquals(401, badToken.statusCode());
+
+        ServiceException badDepth = assertThrows(ServiceException.class, () -> service.analyze(
+                token, gameID, new AnalysisService.AnalysisRequest(0, null)));
+        assertEquals(400, badDepth.statusCode());
+    }
+
+    @Test
+    void missingGameFailsTheFuture() throws ServiceException {
+        var future = service(1, 4, 2).analyze(token, 9999, null);
+        var ex = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(ServiceException.class, ex.getCause());
+        assertEquals(400, ((ServiceException) ex.getCause()).statusCode());
+    }
+
+    @Test
+    void searchesBorrowHelpers() throws Exception {
+        var service = service(1, 2, 4, 2);
+        service.analyze(token, gameID, slow());
+        waitForBusyHelpers(service, 2);
+        assertEquals(2, service.stats().helperThreads());
+    }
+
+    @Test
+    void requestCanAskForFewerThreads() throws Exception {
+        var service = service(1, 2, 4, 2);
+        service.analyze(token, gameID, new AnalysisService.AnalysisRequest(20, 10_000L, 2));
+        waitForBusyHelpers(service, 1);
+        Thread.sleep(100);
+        assertEquals(1, service.stats().busyHelpers());
+    }
+
+    @Test
+    void threadsAreClamped() throws Exception {
+        var service = service(1, 2, 4, 2);
+        var result = service.analyze(token, gameID, new AnalysisService.AnalysisRequest(3, null, 64))
+                .get(10, TimeUnit.SECONDS);
+        assertNotNull(result.move());
+        assertEquals(3, result.depth());
+        assertEquals(0, service.stats().busyHelpers());
+
+        ServiceException none = assertThrows(ServiceException.class, () -> service.analyze(
+                token, gameID, new AnalysisService.AnalysisRequest(3, null, 0)));
+        assertEquals(400, none.statusCode());
+    }
+}
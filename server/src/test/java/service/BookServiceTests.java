@@ -0,0 +1,87 @@
+package service;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.book.OpeningBook;
+import chess.book.OpeningBookBuilder;
+import dataaccess.MemoryDataAccess;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BookServiceTests {
+    private static final String PGN = """
+            [Result "1-0"]
+            1. e4 e5 2. Nf3 Nc6 1-0
+            [Result "1/2-1/2"]
+            1. e4 c5 2. Nf3 d6 1/2-1/2
+            """;
+
+    @TempDir
+    Path dir;
+
+    private MemoryDataAccess db;
+    private String token;
+    private int gameID;
+    private BookService bookService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        db = new MemoryDataAccess();
+        var userService = new UserService(db);
+        var gameService = new GameService(db, userService);
+        token = userService.register(new UserService.RegisterRequest("foo", "password", "foo@example.com")).authToken();
+        gameID = gameService.createGame(token, new GameService.CreateGameRequest("Game")).gameID();
+
+        var builder = new OpeningBookBuilder(10, 1);
+        builder.addPgn(new StringReader(PGN));
+        Path path = dir.resolve("test.book");
+        builder.write(path);
+        // runs the "mailbox" work right away, on the calling thread
+        bookService = new BookService(db, userService, (id, task) -> task.run(), OpeningBook.open(path));
+    }
+
+    private static ChessMove move(int fromRow, int fromCol, int toRow, int toCol) {
+        return new ChessMove(new ChessPosition(fromRow, fromCol), new ChessPosition(toRow, toCol), null);
+    }
+
+    @Test
+    void looksUpTheCurrentPosition() throws Exception {
+        var start = bookService.lookup(token, gameID).get(10, TimeUnit.SECONDS);
+        assertEquals(0, start.ply());
+        assertEquals(2, start.games());
+        assertEquals(List.of(new OpeningBook.Entry(move(2, 5, 4, 5), 2, 1, 0)), start.moves());
+
+        var data = db.getGame(gameID);
+        data.game().makeMove(move(2, 5, 4, 5));
+        db.updateGame(data);
+        var afterE4 = bookService.lookup(token, gameID).get(10, TimeUnit.SECONDS);
+        assertEquals(1, afterE4.ply());
+        assertEquals(2, afterE4.moves().size());
+
+        data.game().makeMove(move(7, 1, 6, 1));
+        db.updateGame(data);
+        var outOfBook = bookService.lookup(token, gameID).get(10, TimeUnit.SECONDS);
+        assertEquals(0, outOfBook.games());
+        assertTrue(outOfBook.moves().isEmpty());
+    }
+
+    @Test
+    void badLookups() throws ServiceException {
+        ServiceException badToken = assertThrows(ServiceException.class, () -> bookService.lookup("badToken", gameID));
+        assertEquals(401, badToken.statusCode());
+
+        var future = bookService.lookup(token, 9999);
+        var ex = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        assertEquals(400, ((ServiceException) ex.getCause()).statusCode());
+    }
+}
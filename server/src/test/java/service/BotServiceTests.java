@@ -0,0 +1,135 @@
+package service;
+
+import dataaccess.DataAccessException;
+import dataaccess.MemoryDataAccess;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BotServiceTests {
+    private MemoryDataAccess db;
+    private final ExecutorService mailbox = Executors.newSingleThreadExecutor();
+    private BotService botService;
+    private String token;
+    private int gameID;
+
+    @BeforeEach
+    void setUp() throws ServiceException {
+        db = new MemoryDataAccess();
+        var userService = new UserService(db);
+        var gameService = new GameService(db, userService);
+        // one thread stands in for the game's mailbox
+        botService = new BotService(db, userService, gameService, (id, task) -> mailbox.execute(task),
+                BotService.parse("easy:100, hard:10000"));
+        botService.createUsers();
+        token = userService.register(new UserService.RegisterRequest("foo", "password", "foo@example.com")).authToken();
+        gameID = gameService.createGame(token, new GameService.CreateGameRequest("Game")).gameID();
+    }
+
+    @AfterEach
+    void tearDown() {
+        mailbox.shutdownNow();
+    }
+
+    // adds a bot and waits for it to sit down, failing the way a synchronous call would
+    private void addBot(String authToken, String bot, String color) throws ServiceException {
+        try {
+            botService.addBot(authToken, gameID, new BotService.AddBotRequest(bot, color)).get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException ex) {
+            throw (ServiceException) ex.getCause();
+        } catch (InterruptedException | TimeoutException ex) {
+            throw new AssertionError(ex);
+        }
+    }
+
+    @Test
+    void parsesBots() {
+        assertEquals(List.of(new BotService.Bot("easy", 100), new BotService.Bot("hard", 10000)),
+                BotService.parse("easy:100, hard:10000"));
+        assertThrows(IllegalArgumentException.class, () -> BotService.parse("easy"));
+        assertThrows(IllegalArgumentException.class, () -> BotService.parse(":100"));
+    }
+
+    @Test
+    void botsAreUsers() throws ServiceException, DataAccessException {
+        assertNotNull(db.getUser("easy"));
+        assertNotNull(db.getUser("hard"));
+        // making them again leaves them be
+        botService.createUsers();
+        assertNotNull(db.getUser("easy"));
+        assertNull(botService.bot("foo"));
+    }
+
+    @Test
+    void addBotTakesTheSeat() throws ServiceException, DataAccessException {
+        addBot(token, "easy", "BLACK");
+        assertEquals("easy", db.getGame(gameID).blackUsername());
+    }
+
+    @Test
+    void badBotRequests() {
+        ServiceException badToken = assertThrows(ServiceException.class, () -> addBot("badToken", "easy", "BLACK"));
+        assertEquals(401, badToken.statusCode());
+
+        ServiceException noBot = assertThrows(ServiceException.class, () -> addBot(token, "foo", "BLACK"));
+        assertEquals(400, noBot.statusCode());
+    }
+
+    @Test
+    void botsDontPlayEachOther() throws ServiceException {
+        addBot(token, "easy", "WHITE");
+        ServiceException ex = assertThrows(ServiceException.class, () -> addBot(token, "hard", "BLACK"));
+        assertEquals(400, ex.statusCode());
+    }
+
+    @Test
+    void takenSeatIsRefused() throws ServiceException {
+        addBot(token, "easy", "WHITE");
+        ServiceException ex = assertThrows(ServiceException.class, () -> addBot(token, "easy", "WHITE"));
+        assertEquals(403, ex.statusCode());
+    }
+
+    @Test
+    void racingBotsDontEndUpPlayingEachOther() throws Exception {
+        var start = new CountDownLatch(1);
+        var racers = Executors.newFixedThreadPool(2);
+        try {
+            Future<CompletableFuture<Void>> white = racers.submit(() -> {
+                start.await();
+                return botService.addBot(token, gameID, new BotService.AddBotRequest("easy", "WHITE"));
+            });
+            Future<CompletableFuture<Void>> black = racers.submit(() -> {
+                start.await();
+                return botService.addBot(token, gameID, new BotService.AddBotRequest("hard", "BLACK"));
+            });
+            start.countDown();
+
+            int failed = 0;
+            for (Future<CompletableFuture<Void>> racer : List.of(white, black)) {
+                try {
+                    racer.get(10, TimeUnit.SECONDS).get(10, TimeUnit.SECONDS);
+                } catch (ExecutionException ex) {
+                    assertEquals(400, ((ServiceException) ex.getCause()).statusCode());
+                    failed++;
+                }
+            }
+            assertEquals(1, failed);
+            var game = db.getGame(gameID);
+            assertTrue(game.whiteUsername() == null || game.blackUsername() == null);
+        } finally {
+            racers.shutdownNow();
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package service;
 
+import chess.ChessClock;
+import chess.ChessGame;
 import dataaccess.MemoryDataAccess;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class GameServiceTests {
@@ -46,6 +51,25 @@ public class GameServiceTests {
         assertEquals(400, ex.statusCode());
     }
 
+    @Test
+    void createTimedGame() throws ServiceException {
+        var result = gameService.createGame(validToken, new GameService.CreateGameRequest(
+                "Blitz", 180_000L, 2_000L, ChessClock.Mode.FISCHER));
+
+        var game = gameService.listGames(validToken).iterator().next();
+        assertEquals(result.gameID(), game.gameID());
+        assertNotNull(game.game().getClock());
+        assertEquals(180_000L, game.game().getClock().storedMillis(ChessGame.TeamColor.WHITE));
+    }
+
+    @Test
+    void createGameBadTimeControl() {
+        ServiceException ex = assertThrows(ServiceException.class, () -> gameService.createGame(
+                validToken, new GameService.CreateGameRequest("Blitz", 0L, 2_000L, null)));
+
+        assertEquals(400, ex.statusCode());
+    }
+
 
 
 
@@ -65,6 +89,24 @@ public class GameServiceTests {
         assertEquals(401, ex.statusCode());
     }
 
+    @Test
+    void streamGamesSuccess() throws ServiceException {
+        gameService.createGame(validToken, new GameService.CreateGameRequest("Game1"));
+        gameService.createGame(validToken, new GameService.CreateGameRequest("Game2"));
+
+        var names = new ArrayList<String>();
+        gameService.streamGames(validToken, game -> names.add(game.gameName()));
+
+        assertEquals(List.of("Game1", "Game2"), names);
+    }
+    @Test
+    void streamGamesUnauthorizedThrows() {
+        ServiceException ex = assertThrows(ServiceException.class, () -> gameService.streamGames(
+                "invalidToken", game -> fail("no games should be visited")));
+
+        assertEquals(401, ex.statusCode());
+    }
+
 
     @Test
     void joinGameSuccess() throws ServiceException {
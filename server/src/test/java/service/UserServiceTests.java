@@ -6,6 +6,11 @@ import dataaccess.DataAccessException;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class UserServiceTests {
@@ -71,6 +76,43 @@ public class UserServiceTests {
 
 
 
+    @Test
+    void asyncRegisterAndLogin() throws Exception {
+        var registered = userService.registerAsync(new UserService.RegisterRequest("foo", "password", "foo@example.com"));
+        assertEquals("foo", registered.get(10, TimeUnit.SECONDS).username());
+
+        var duplicate = userService.registerAsync(new UserService.RegisterRequest("foo", "password", "foo@example.com"));
+        var ex = assertThrows(ExecutionException.class, () -> duplicate.get(10, TimeUnit.SECONDS));
+        assertEquals(403, ((ServiceException) ex.getCause()).statusCode());
+
+        assertNotNull(userService.loginAsync(new UserService.LoginRequest("foo", "password"))
+                .get(10, TimeUnit.SECONDS).authToken());
+        var wrong = userService.loginAsync(new UserService.LoginRequest("foo", "wrong"));
+        ex = assertThrows(ExecutionException.class, () -> wrong.get(10, TimeUnit.SECONDS));
+        assertEquals(401, ((ServiceException) ex.getCause()).statusCode());
+    }
+
+    @Test
+    void concurrentRegistrationsTakeEachNameOnce() throws Exception {
+        // the users are saved on the hasher's threads, several at a time
+        var futures = new ArrayList<CompletableFuture<UserService.RegisterResult>>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(userService.registerAsync(new UserService.RegisterRequest("same", "password", "same@example.com")));
+            futures.add(userService.registerAsync(new UserService.RegisterRequest("user" + i, "password", "u@example.com")));
+        }
+
+        int registered = 0;
+        for (var future : futures) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+                registered++;
+            } catch (ExecutionException ex) {
+                assertEquals(403, ((ServiceException) ex.getCause()).statusCode());
+            }
+        }
+        assertEquals(5, registered);
+    }
+
     @Test
     void logoutSuccess() throws ServiceException {
         var reg = userService.register(new UserService.RegisterRequest("foo", "password", "foo@example.com"));
@@ -84,4 +126,17 @@ public class UserServiceTests {
         assertEquals(401, ex.statusCode());
     }
 
+    @Test
+    void logoutTellsListeners() throws ServiceException {
+        var loggedOut = new ArrayList<String>();
+        userService.addLogoutListener(loggedOut::add);
+        var reg = userService.register(new UserService.RegisterRequest("foo", "password", "foo@example.com"));
+
+        userService.logout(reg.authToken());
+        assertThrows(ServiceException.class, () -> userService.logout("fakeToken"));
+
+        assertEquals(1, loggedOut.size());
+        assertEquals(reg.authToken(), loggedOut.get(0));
+    }
+
 }
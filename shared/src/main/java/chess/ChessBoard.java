@@ -15,6 +15,17 @@ public class ChessBoard {
         // starts empty
     }
 
+    /**
+     * Copies another board. Pieces never change once made, so they can be shared
+     *
+     * @param other the board to copy
+     */
+    public ChessBoard(ChessBoard other) {
+        for (int row = 0; row < 8; row++) {
+            squares[row] = other.squares[row].clone();
+        }
+    }
+
     /**
      * Adds a chess piece to the chessboard
      *
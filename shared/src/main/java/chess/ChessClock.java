@@ -0,0 +1,135 @@
+package chess;
+
+/**
+ * The two players' clocks for a timed game. Each side starts with {@code baseMillis}; after each
+ * move the mover gets time back depending on the mode:
+ * <ul>
+ *     <li>FISCHER: {@code incrementMillis} is added after every move</li>
+ *     <li>BRONSTEIN: the time the move took is given back, up to {@code incrementMillis}</li>
+ * </ul>
+ * White's clock doesn't run before the first move, so the first move costs nothing; after that
+ * the clock of whoever is to move is running.
+ * <p>
+ * Times are passed in (milliseconds since the epoch) rather than read here so callers decide
+ * what "now" is.
+ */
+public class ChessClock {
+    public enum Mode {
+        FISCHER,
+        BRONSTEIN
+    }
+
+    private final Mode mode;
+    private final long baseMillis;
+    private final long incrementMillis;
+
+    private long whiteMillis;
+    private long blackMillis;
+    // when the side to move started thinking (ms since the epoch), 0 while the clock isn't running
+    private long turnStarted;
+
+    public ChessClock(Mode mode, long baseMillis, long incrementMillis) {
+        this(mode, baseMillis, incrementMillis, baseMillis, baseMillis, 0);
+    }
+
+    /**
+     * Rebuilds a clock with the given state, for games loaded from storage
+     */
+    public ChessClock(Mode mode, long baseMillis, long incrementMillis,
+                      long whiteMillis, long blackMillis, long turnStarted) {
+        this.mode = mode == null ? Mode.FISCHER : mode;
+        this.baseMillis = baseMillis;
+        this.incrementMillis = incrementMillis;
+        this.whiteMillis = whiteMillis;
+        this.blackMillis = blackMillis;
+        this.turnStarted = turnStarted;
+    }
+
+    public ChessClock(ChessClock other) {
+        this(other.mode, other.baseMillis, other.incrementMillis,
+                other.whiteMillis, other.blackMillis, other.turnStarted);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public long getBaseMillis() {
+        return baseMillis;
+    }
+
+    public long getIncrementMillis() {
+        return incrementMillis;
+    }
+
+    /**
+     * @return when the side to move started thinking, or 0 if the clock isn't running yet
+     */
+    public long getTurnStarted() {
+        return turnStarted;
+    }
+
+    public boolean isRunning() {
+        return turnStarted != 0;
+    }
+
+    /**
+     * @return time the side has left as of the last move, not counting the move they're thinking about
+     */
+    public long storedMillis(ChessGame.TeamColor side) {
+        return side == ChessGame.TeamColor.WHITE ? whiteMillis : blackMillis;
+    }
+
+    /**
+     * @return time the side has left at {@code now}, which is below zero once their flag has fallen
+     */
+    public long remainingMillis(ChessGame.TeamColor side, ChessGame.TeamColor toMove, long now) {
+        long stored = storedMillis(side);
+        return side == toMove && isRunning() ? stored - (now - turnStarted) : stored;
+    }
+
+    /**
+     * @return true if {@code toMove} has run out of time at {@code now}
+     */
+    public boolean isFlagged(ChessGame.TeamColor toMove, long now) {
+        return remainingMillis(toMove, toMove, now) <= 0;
+    }
+
+    /**
+     * @return when {@code toMove}'s flag falls if they don't move first, or Long.MAX_VALUE if the
+     * clock isn't running
+     */
+    public long flagDeadline(ChessGame.TeamColor toMove) {
+        return isRunning() ? turnStarted + storedMillis(toMove) : Long.MAX_VALUE;
+    }
+
+    /**
+     * Stops the mover's clock at {@code now} and starts the other side's
+     */
+    public void punch(ChessGame.TeamColor mover, long now) {
+        if (isRunning()) {
+            long used = Math.max(0, now - turnStarted);
+            long bonus = mode == Mode.FISCHER ? incrementMillis : Math.min(used, incrementMillis);
+            setStored(mover, storedMillis(mover) - used + bonus);
+        }
+        turnStarted = now;
+    }
+
+    /**
+     * Freezes both clocks at {@code now}, e.g. when the game ends
+     */
+    public void stop(ChessGame.TeamColor toMove, long now) {
+        if (isRunning()) {
+            setStored(toMove, Math.max(0, remainingMillis(toMove, toMove, now)));
+            turnStarted = 0;
+        }
+    }
+
+    private void setStored(ChessGame.TeamColor side, long millis) {
+        if (side == ChessGame.TeamColor.WHITE) {
+            whiteMillis = millis;
+        } else {
+            blackMillis = millis;
+        }
+    }
+}
@@ -13,6 +13,9 @@ import java.util.Objects;
 public class ChessGame {
     private ChessBoard board;
     private TeamColor turn;
+    private boolean gameOver;
+    private int ply;
+    private ChessClock clock;
 
     public ChessGame() {
         board = new ChessBoard();
@@ -20,6 +23,31 @@ public class ChessGame {
         turn = TeamColor.WHITE;
     }
 
+    /**
+     * Makes a game from a board that's already set up, for games read back from storage
+     *
+     * @param board the board to play on, used as is
+     * @param turn  the team whose turn it is
+     */
+    public ChessGame(ChessBoard board, TeamColor turn) {
+        this.board = board;
+        this.turn = turn;
+    }
+
+    /**
+     * Makes an independent copy of another game, so the copy can be kept or read on another
+     * thread while the original keeps changing
+     *
+     * @param other the game to copy
+     */
+    public ChessGame(ChessGame other) {
+        board = new ChessBoard(other.board);
+        turn = other.turn;
+        gameOver = other.gameOver;
+        ply = other.ply;
+        clock = other.clock == null ? null : new ChessClock(other.clock);
+    }
+
     /**
      * @return Which team's turn it is
      */
@@ -36,6 +64,50 @@ public class ChessGame {
         this.turn = team;
     }
 
+    /**
+     * @return true once the game has ended (checkmate, stalemate or a resignation) and no
+     * more moves should be accepted
+     */
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    /**
+     * Marks the game as over, or not
+     *
+     * @param gameOver whether the game has ended
+     */
+    public void setGameOver(boolean gameOver) {
+        this.gameOver = gameOver;
+    }
+
+    /**
+     * @return how many moves (by either side) have been made in this game
+     */
+    public int getPly() {
+        return ply;
+    }
+
+    /**
+     * Sets the move count, for games loaded from storage
+     *
+     * @param ply how many moves have been made
+     */
+    public void setPly(int ply) {
+        this.ply = ply;
+    }
+
+    /**
+     * @return the clocks for a timed game, or null if the game isn't timed
+     */
+    public ChessClock getClock() {
+        return clock;
+    }
+
+    public void setClock(ChessClock clock) {
+        this.clock = clock;
+    }
+
     /**
      * Enum identifying the 2 possible teams in a chess game
      */
@@ -96,6 +168,20 @@ public class ChessGame {
      * @throws InvalidMoveException if move is invalid
      */
     public void makeMove(ChessMove move) throws InvalidMoveException {
+        makeMove(move, System.currentTimeMillis());
+    }
+
+    /**
+     * Makes a move at the given time, which is what the clock (if there is one) is charged with
+     *
+     * @param move chess move to perform
+     * @param now  milliseconds since the epoch
+     * @throws InvalidMoveException if move is invalid or the mover has run out of time
+     */
+    public void makeMove(ChessMove move, long now) throws InvalidMoveException {
+        if (clock != null && clock.isFlagged(turn, now)) {
+            throw new InvalidMoveException("Out of time");
+        }
         ChessPiece piece = board.getPiece(move.getStartPosition());
 
         if (piece == null) {
@@ -116,7 +202,11 @@ public class ChessGame {
             board.addPiece(move.getEndPosition(), new ChessPiece(piece.getTeamColor(), move.getPromotionPiece()));
         }
 
+        if (clock != null) {
+            clock.punch(turn, now);
+        }
         turn = (turn == TeamColor.WHITE) ? TeamColor.BLACK : TeamColor.WHITE;
+        ply++;
     }
 
 
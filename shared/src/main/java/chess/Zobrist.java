@@ -0,0 +1,56 @@
+package chess;
+
+import java.util.Random;
+
+/**
+ * Zobrist hashing: a 64 bit key for a position, made by xor-ing together one random number per
+ * (piece, square) plus one for the side to move. Two positions with the same pieces in the same
+ * places and the same side to move always get the same key.
+ */
+public final class Zobrist {
+    // [color * 6 + piece type][square], square = (row - 1) * 8 + (col - 1)
+    private static final long[][] PIECE_KEYS = new long[12][64];
+    private static final long BLACK_TO_MOVE;
+
+    static {
+        // fixed seed so keys are the same on every run and every machine
+        Random random = new Random(0x240C4E55L);
+        for (long[] keys : PIECE_KEYS) {
+            for (int square = 0; square < 64; square++) {
+                keys[square] = random.nextLong();
+            }
+        }
+        BLACK_TO_MOVE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * @return the key for one piece standing on one square (square 0 is a1, 63 is h8)
+     */
+    public static long pieceKey(ChessGame.TeamColor color, ChessPiece.PieceType type, int square) {
+        return PIECE_KEYS[color.ordinal() * 6 + type.ordinal()][square];
+    }
+
+    public static long blackToMoveKey() {
+        return BLACK_TO_MOVE;
+    }
+
+    /**
+     * Computes the key for a game from scratch
+     */
+    public static long hash(ChessGame game) {
+        long key = game.getTeamTurn() == ChessGame.TeamColor.BLACK ? BLACK_TO_MOVE : 0;
+        ChessBoard board = game.getBoard();
+        for (int row = 1; row <= 8; row++) {
+            for (int col = 1; col <= 8; col++) {
+                ChessPiece piece = board.getPiece(new ChessPosition(row, col));
+                if (piece != null) {
+                    key ^= pieceKey(piece.getTeamColor(), piece.getPieceType(), (row - 1) * 8 + (col - 1));
+                }
+            }
+        }
+        return key;
+    }
+}
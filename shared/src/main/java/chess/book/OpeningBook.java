@@ -0,0 +1,183 @@
+package chess.book;
+
+import chess.ChessMove;
+import chess.engine.Moves;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The moves played from positions in a collection of games, read straight out of a file made by
+ * {@link OpeningBookBuilder}.
+ * <p>
+ * The file is a header and then fixed size records, sorted by position key, each saying how often
+ * one move was played from one position and how those games ended:
+ * <pre>
+ *   header   int magic, int version, long record count
+ *   record   long Zobrist key, int move (see {@link Moves}), int games, int white wins, int black wins
+ * </pre>
+ * Records for the same position are next to each other, most played first. The file is memory
+ * mapped rather than read, so the book takes no heap however big it is, the operating system
+ * pages in just the parts that get looked at, and every thread can look things up at once with no
+ * locking. Looking up a position is a binary search over the records and allocates nothing; only
+ * {@link #entries} builds objects, for callers that want them.
+ */
+public final class OpeningBook {
+    static final int MAGIC = 0x43424B31; // "CBK1"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int RECORD_BYTES = 24;
+
+    // a mapping can be at most 2GB, so a big book is mapped in pieces of this many records
+    private static final int SEGMENT_SHIFT = 26;
+    private static final int SEGMENT_RECORDS = 1 << SEGMENT_SHIFT;
+
+    private static final int MOVE = 8;
+    private static final int GAMES = 12;
+    private static final int WHITE_WINS = 16;
+    private static final int BLACK_WINS = 20;
+
+    private final ByteBuffer[] segments;
+    private final int size;
+
+    /**
+     * @param move       the move played
+     * @param games      how many games it was played in
+     * @param whiteWins  how many of those white won
+     * @param blackWins  how many of those black won; the rest were drawn or unfinished
+     */
+    public record Entry(ChessMove move, int games, int whiteWins, int blackWins) {}
+
+    private OpeningBook(ByteBuffer[] segments, int size) {
+        this.segments = segments;
+        this.size = size;
+    }
+
+    /**
+     * @return a book with nothing in it
+     */
+    public static OpeningBook empty() {
+        return new OpeningBook(new ByteBuffer[0], 0);
+    }
+
+    /**
+     * Maps a book file. The file is only read, and it mustn't change while the book is in use.
+     *
+     * @throws IOException if the file can't be read or isn't a book
+     */
+    public static OpeningBook open(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_BYTES) {
+                throw new IOException("not an opening book: " + path);
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            long count = header.getLong(8);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                    || count < 0 || count > Integer.MAX_VALUE || HEADER_BYTES + count * RECORD_BYTES != length) {
+                throw new IOException("not an opening book, or not this version of one: " + path);
+            }
+
+            int size = (int) count;
+            var segments = new ByteBuffer[(size + SEGMENT_RECORDS - 1) >>> SEGMENT_SHIFT];
+            for (int i = 0; i < segments.length; i++) {
+                long records = Math.min(SEGMENT_RECORDS, size - ((long) i << SEGMENT_SHIFT));
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_BYTES + ((long) i << SEGMENT_SHIFT) * RECORD_BYTES, records * RECORD_BYTES);
+            }
+            // the mappings stay valid after the channel is closed
+            return new OpeningBook(segments, size);
+        }
+    }
+
+    /**
+     * @return how many (position, move) records the book has
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the index of the first (most played) record for a position, or -1 if the book doesn't
+     * have it. The position's other records follow it, for as long as {@link #key} is the same.
+     */
+    public int first(long key) {
+        int low = 0;
+        int high = size;
+        // the first record whose key isn't less than the one we want; keys compare signed, the
+        // same way the builder sorts them
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (key(middle) < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low < size && key(low) == key ? low : -1;
+    }
+
+    /**
+     * @return how many different moves the book has for a position
+     */
+    public int count(long key) {
+        int first = first(key);
+        if (first < 0) {
+            return 0;
+        }
+        int end = first + 1;
+        while (end < size && key(end) == key) {
+            end++;
+        }
+        return end - first;
+    }
+
+    public long key(int index) {
+        return segment(index).getLong(offset(index));
+    }
+
+    /**
+     * @return the move, packed as in {@link Moves}
+     */
+    public int move(int index) {
+        return segment(index).getInt(offset(index) + MOVE);
+    }
+
+    public int games(int index) {
+        return segment(index).getInt(offset(index) + GAMES);
+    }
+
+    public int whiteWins(int index) {
+        return segment(index).getInt(offset(index) + WHITE_WINS);
+    }
+
+    public int blackWins(int index) {
+        return segment(index).getInt(offset(index) + BLACK_WINS);
+    }
+
+    /**
+     * @return the moves the book has for a position, most played first
+     */
+    public List<Entry> entries(long key) {
+        var entries = new ArrayList<Entry>();
+        int first = first(key);
+        for (int i = first; i >= 0 && i < size && key(i) == key; i++) {
+            entries.add(new Entry(Moves.toChessMove(move(i)), games(i), whiteWins(i), blackWins(i)));
+        }
+        return entries;
+    }
+
+    private ByteBuffer segment(int index) {
+        return segments[index >>> SEGMENT_SHIFT];
+    }
+
+    private static int offset(int index) {
+        return (index & (SEGMENT_RECORDS - 1)) * RECORD_BYTES;
+    }
+}
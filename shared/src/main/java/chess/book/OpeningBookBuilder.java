@@ -0,0 +1,279 @@
+package chess.book;
+
+import chess.ChessGame;
+import chess.engine.Moves;
+import chess.engine.Position;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Makes an {@link OpeningBook} file out of games in PGN.
+ * <p>
+ * Only the first few moves of each game go in the book. A game is also only read up to its first
+ * move this game can't make (castling or en passant), since nothing after that could come up
+ * here. Games that don't start from the usual position (they have a FEN tag) are skipped, and so
+ * are variations, comments and annotations.
+ */
+public class OpeningBookBuilder {
+    private static final int WHITE_WON = 1;
+    private static final int BLACK_WON = 2;
+
+    private final int maxPly;
+    private final int minGames;
+    // counts for each (position, move): games, white wins, black wins
+    private final Map<Line, int[]> lines = new HashMap<>();
+    private int games;
+
+    private record Line(long key, int move) {}
+
+    /**
+     * @param maxPly   how many moves (counting each side's separately) of each game to use
+     * @param minGames how many games a move has to be played in to make it into the book
+     */
+    public OpeningBookBuilder(int maxPly, int minGames) {
+        this.maxPly = Math.min(maxPly, Position.MAX_PLY);
+        this.minGames = minGames;
+    }
+
+    /**
+     * @return how many games have been added
+     */
+    public int games() {
+        return games;
+    }
+
+    /**
+     * Adds every game in a PGN file
+     *
+     * @return how many of them were used
+     */
+    public int addPgn(Reader reader) throws IOException {
+        var in = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+        var game = new GameReader();
+        int before = games;
+        var token = new StringBuilder();
+        int depth = 0;
+        int c;
+        while ((c = in.read()) != -1) {
+            if (Character.isWhitespace(c) || "{;()[".indexOf(c) >= 0) {
+                if (depth == 0) {
+                    game.token(token);
+                }
+                token.setLength(0);
+            }
+            if (c == '{') {
+                skipTo(in, '}');
+            } else if (c == ';') {
+                skipTo(in, '\n');
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth = Math.max(0, depth - 1);
+            } else if (c == '[' && depth == 0) {
+                if (game.started()) {
+                    // the last game had no result at the end
+                    game.finish(0);
+                }
+                var tag = new StringBuilder();
+                while ((c = in.read()) != -1 && c != ']') {
+                    tag.append((char) c);
+                }
+                game.tag(tag.toString());
+            } else if (!Character.isWhitespace(c)) {
+                token.append((char) c);
+            }
+        }
+        if (depth == 0) {
+            game.token(token);
+        }
+        if (game.started()) {
+            game.finish(0);
+        }
+        return games - before;
+    }
+
+    /**
+     * Writes the book: every (position, move) played in at least {@code minGames} games, sorted
+     * the way {@link OpeningBook} expects
+     */
+    public void write(Path path) throws IOException {
+        var kept = new ArrayList<Map.Entry<Line, int[]>>();
+        for (var entry : lines.entrySet()) {
+            if (entry.getValue()[0] >= minGames) {
+                kept.add(entry);
+            }
+        }
+        // keys compare signed, the same way OpeningBook searches them
+        kept.sort(Comparator.<Map.Entry<Line, int[]>>comparingLong(entry -> entry.getKey().key())
+                .thenComparingInt(entry -> -entry.getValue()[0])
+                .thenComparingInt(entry -> entry.getKey().move()));
+
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(OpeningBook.MAGIC);
+            out.writeInt(OpeningBook.VERSION);
+            out.writeLong(kept.size());
+            for (var entry : kept) {
+                int[] counts = entry.getValue();
+                out.writeLong(entry.getKey().key());
+                out.writeInt(entry.getKey().move());
+                out.writeInt(counts[0]);
+                out.writeInt(counts[1]);
+                out.writeInt(counts[2]);
+            }
+        }
+    }
+
+    private static void skipTo(Reader in, char end) throws IOException {
+        int c;
+        do {
+            c = in.read();
+        } while (c != -1 && c != end);
+    }
+
+    private void add(long key, int move, int result) {
+        int[] counts = lines.computeIfAbsent(new Line(key, move), line -> new int[3]);
+        counts[0]++;
+        if (result == WHITE_WON) {
+            counts[1]++;
+        } else if (result == BLACK_WON) {
+            counts[2]++;
+        }
+    }
+
+    // one game at a time: plays its moves on a board as they're read, and adds them once the
+    // result is known
+    private class GameReader {
+        private final Position position = Position.from(new ChessGame());
+        private final long[] keys = new long[maxPly];
+        private final int[] moves = new int[maxPly];
+        private int ply;
+        private boolean started;
+        // the game can't be read any further: it went past maxPly or made a move we can't
+        private boolean stopped;
+        private boolean skipped;
+        private int tagResult;
+
+        boolean started() {
+            return started;
+        }
+
+        void tag(String tag) {
+            started = true;
+            String name = tag.strip().split("\\s+", 2)[0];
+            if (name.equals("FEN") || name.equals("SetUp")) {
+                skipped = true;
+            } else if (name.equals("Result")) {
+                int open = tag.indexOf('"');
+                int close = tag.lastIndexOf('"');
+                tagResult = open >= 0 && close > open ? result(tag.substring(open + 1, close)) : 0;
+            }
+        }
+
+        void token(CharSequence token) {
+            String text = token.toString();
+            // move numbers: "12." and "12..." before a move, or run into it ("12.e4")
+            int start = 0;
+            while (start < text.length() && Character.isDigit(text.charAt(start))) {
+                start++;
+            }
+            if (start < text.length() && text.charAt(start) == '.') {
+                while (start < text.length() && text.charAt(start) == '.') {
+                    start++;
+                }
+                text = text.substring(start);
+            }
+            if (text.isEmpty() || text.charAt(0) == '$') {
+                return;
+            }
+            if (text.equals("1-0") || text.equals("0-1") || text.equals("1/2-1/2") || text.equals("*")) {
+                finish(result(text));
+                return;
+            }
+            started = true;
+            if (skipped || stopped) {
+                return;
+            }
+            if (ply == maxPly) {
+                stopped = true;
+                return;
+            }
+            int move = San.parse(position, text);
+            if (move == Moves.NONE) {
+                stopped = true;
+                return;
+            }
+            keys[ply] = position.key();
+            moves[ply] = move;
+            position.make(move);
+            ply++;
+        }
+
+        void finish(int result) {
+            if (result == 0) {
+                result = tagResult;
+            }
+            if (!skipped && ply > 0) {
+                for (int i = 0; i < ply; i++) {
+                    add(keys[i], moves[i], result);
+                }
+                games++;
+            }
+            // back to the starting position for the next game
+            while (ply > 0) {
+                position.unmake(moves[--ply]);
+            }
+            started = false;
+            stopped = false;
+            skipped = false;
+            tagResult = 0;
+        }
+
+        private static int result(String text) {
+            return switch (text) {
+                case "1-0" -> WHITE_WON;
+                case "0-1" -> BLACK_WON;
+                default -> 0;
+            };
+        }
+    }
+
+    /**
+     * Builds a book file from PGN files:
+     * {@code OpeningBookBuilder [--plies N] [--min-games N] book-file pgn-file...}
+     */
+    public static void main(String[] args) throws IOException {
+        int plies = 20;
+        int minGames = 1;
+        var files = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--plies" -> plies = Integer.parseInt(args[++i]);
+                case "--min-games" -> minGames = Integer.parseInt(args[++i]);
+                default -> files.add(args[i]);
+            }
+        }
+        if (files.size() < 2) {
+            System.err.println("Usage: OpeningBookBuilder [--plies N] [--min-games N] book-file pgn-file...");
+            System.exit(1);
+        }
+
+        var builder = new OpeningBookBuilder(plies, minGames);
+        for (String file : files.subList(1, files.size())) {
+            try (var reader = Files.newBufferedReader(Path.of(file))) {
+                System.out.println(file + ": " + builder.addPgn(reader) + " games");
+            }
+        }
+        builder.write(Path.of(files.get(0)));
+        System.out.println("Wrote " + files.get(0) + " from " + builder.games() + " games");
+    }
+}
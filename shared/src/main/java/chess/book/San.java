@@ -0,0 +1,106 @@
+package chess.book;
+
+import chess.engine.Moves;
+import chess.engine.Position;
+
+/**
+ * Reads moves in standard algebraic notation ("e4", "Nbd7", "exd5", "e8=Q+"), the way PGN
+ * files write them.
+ */
+public final class San {
+    private San() {
+    }
+
+    /**
+     * @return the legal move {@code san} names in {@code position}, or {@link Moves#NONE} if it
+     * doesn't name exactly one. Castling is never found, since the game has no castling.
+     */
+    public static int parse(Position position, String san) {
+        String text = stripSuffix(san);
+        if (text.length() < 2 || text.startsWith("O-O") || text.startsWith("0-0")) {
+            return Moves.NONE;
+        }
+
+        int promotion = -1;
+        int equals = text.indexOf('=');
+        if (equals >= 0) {
+            promotion = pieceType(equals + 1 < text.length() ? text.charAt(equals + 1) : ' ');
+            if (promotion < 0) {
+                return Moves.NONE;
+            }
+            text = text.substring(0, equals);
+        } else if (pieceType(text.charAt(text.length() - 1)) >= 0) {
+            // "e8Q", written without the '='
+            promotion = pieceType(text.charAt(text.length() - 1));
+            text = text.substring(0, text.length() - 1);
+        }
+
+        int type = pieceType(text.charAt(0));
+        if (type >= 0) {
+            text = text.substring(1);
+        } else {
+            type = Position.PAWN;
+        }
+        if (text.length() < 2) {
+            return Moves.NONE;
+        }
+        int to = square(text.charAt(text.length() - 2), text.charAt(text.length() - 1));
+        if (to < 0) {
+            return Moves.NONE;
+        }
+        // what's left says which file and/or rank the piece comes from
+        int fromFile = -1;
+        int fromRank = -1;
+        for (char c : text.substring(0, text.length() - 2).toCharArray()) {
+            if (c >= 'a' && c <= 'h') {
+                fromFile = c - 'a';
+            } else if (c >= '1' && c <= '8') {
+                fromRank = c - '1';
+            } else if (c != 'x' && c != ':' && c != '-') {
+                return Moves.NONE;
+            }
+        }
+
+        int found = Moves.NONE;
+        for (int move : position.legalMoves()) {
+            int from = Moves.from(move);
+            if (Moves.to(move) != to || Position.type(position.pieceAt(from)) != type
+                    || Moves.promotionType(move) != promotion
+                    || fromFile >= 0 && from % 8 != fromFile || fromRank >= 0 && from / 8 != fromRank) {
+                continue;
+            }
+            if (found != Moves.NONE) {
+                return Moves.NONE;
+            }
+            found = move;
+        }
+        return found;
+    }
+
+    // drops check marks and annotations: "Nf3+!?" -> "Nf3"
+    private static String stripSuffix(String san) {
+        int end = san.length();
+        while (end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        return san.substring(0, end);
+    }
+
+    private static int pieceType(char c) {
+        return switch (c) {
+            case 'K' -> Position.KING;
+            case 'Q' -> Position.QUEEN;
+            case 'B' -> Position.BISHOP;
+            case 'N' -> Position.KNIGHT;
+            case 'R' -> Position.ROOK;
+            default -> -1;
+        };
+    }
+
+    private static int square(char file, char rank) {
+        if (file < 'a' || file > 'h' || rank < '1' || rank > '8') {
+            return -1;
+        }
+        return (rank - '1') * 8 + file - 'a';
+    }
+}
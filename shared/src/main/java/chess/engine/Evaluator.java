@@ -0,0 +1,217 @@
+package chess.engine;
+
+/**
+ * Scores a position from the side to move's point of view, in centipawns.
+ * <p>
+ * Every term has a middlegame and an endgame value, and the two are blended by how much material
+ * is left (the game phase): 24 with every piece on the board, 0 with only kings and pawns.
+ * Material and piece-square values change with every move, so {@link Position} keeps their sums
+ * up to date as moves are made and taken back; only pawn structure, king safety and mobility are
+ * worked out when a position is scored, and pawn structure can come from a {@link PawnHashTable}.
+ */
+public final class Evaluator {
+    // by piece type ordinal: king, queen, bishop, knight, rook, pawn
+    public static final int[] PIECE_VALUES = {0, 900, 330, 320, 500, 100};
+    public static final int MAX_PHASE = 24;
+
+    private static final int[] MG_VALUES = {0, 1025, 365, 337, 477, 82};
+    private static final int[] EG_VALUES = {0, 936, 297, 281, 512, 94};
+    private static final int[] PHASE_WEIGHTS = {0, 4, 1, 1, 2, 0};
+
+    // piece-square tables from white's side, a8 first and h1 last, the way a board is drawn
+    private static final int[] PAWN_MG = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            10, 10, 20, 30, 30, 20, 10, 10,
+            5, 5, 10, 25, 25, 10, 5, 5,
+            0, 0, 0, 20, 20, 0, 0, 0,
+            5, -5, -10, 0, 0, -10, -5, 5,
+            5, 10, 10, -20, -20, 10, 10, 5,
+            0, 0, 0, 0, 0, 0, 0, 0
+    };
+    private static final int[] PAWN_EG = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            80, 80, 80, 80, 80, 80, 80, 80,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            30, 30, 30, 30, 30, 30, 30, 30,
+            15, 15, 15, 15, 15, 15, 15, 15,
+            5, 5, 5, 5, 5, 5, 5, 5,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0
+    };
+    private static final int[] KNIGHT = {
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20, 0, 0, 0, 0, -20, -40,
+            -30, 0, 10, 15, 15, 10, 0, -30,
+            -30, 5, 15, 20, 20, 15, 5, -30,
+            -30, 0, 15, 20, 20, 15, 0, -30,
+            -30, 5, 10, 15, 15, 10, 5, -30,
+            -40, -20, 0, 5, 5, 0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50
+    };
+    private static final int[] BISHOP = {
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 10, 10, 5, 0, -10,
+            -10, 5, 5, 10, 10, 5, 5, -10,
+            -10, 0, 10, 10, 10, 10, 0, -10,
+            -10, 10, 10, 10, 10, 10, 10, -10,
+            -10, 5, 0, 0, 0, 0, 5, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20
+    };
+    private static final int[] ROOK = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            5, 10, 10, 10, 10, 10, 10, 5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            0, 0, 0, 5, 5, 0, 0, 0
+    };
+    private static final int[] QUEEN = {
+            -20, -10, -10, -5, -5, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 5, 5, 5, 0, -10,
+            -5, 0, 5, 5, 5, 5, 0, -5,
+            0, 0, 5, 5, 5, 5, 0, -5,
+            -10, 5, 5, 5, 5, 5, 0, -10,
+            -10, 0, 5, 0, 0, 0, 0, -10,
+            -20, -10, -10, -5, -5, -10, -10, -20
+    };
+    private static final int[] KING_MG = {
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+            20, 20, 0, 0, 0, 0, 20, 20,
+            20, 30, 10, 0, 0, 10, 30, 20
+    };
+    private static final int[] KING_EG = {
+            -50, -40, -30, -20, -20, -30, -40, -50,
+            -30, -20, -10, 0, 0, -10, -20, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -30, 0, 0, 0, 0, -30, -30,
+            -50, -30, -30, -30, -30, -30, -30, -50
+    };
+    // by piece type ordinal
+    private static final int[][] TABLES_MG = {KING_MG, QUEEN, BISHOP, KNIGHT, ROOK, PAWN_MG};
+    private static final int[][] TABLES_EG = {KING_EG, QUEEN, BISHOP, KNIGHT, ROOK, PAWN_EG};
+
+    // [piece][square] -> material plus piece-square value, positive for white and negative for black
+    static final int[][] MG = new int[13][64];
+    static final int[][] EG = new int[13][64];
+    // [piece] -> how much the piece counts toward the game phase
+    static final int[] PHASE = new int[13];
+
+    static {
+        for (int color = 0; color < 2; color++) {
+            for (int type = 0; type < 6; type++) {
+                int piece = Position.piece(color, type);
+                int sign = color == Position.WHITE ? 1 : -1;
+                for (int square = 0; square < 64; square++) {
+                    // tables are drawn from white's side; black reads them upside down
+                    int row = color == Position.WHITE ? 7 - square / 8 : square / 8;
+                    int index = row * 8 + square % 8;
+                    MG[piece][square] = sign * (MG_VALUES[type] + TABLES_MG[type][index]);
+                    EG[piece][square] = sign * (EG_VALUES[type] + TABLES_EG[type][index]);
+                }
+                PHASE[piece] = PHASE_WEIGHTS[type];
+            }
+        }
+    }
+
+    // KING SAFETY (middlegame only)
+    private static final int NO_SHIELD = -20;
+    private static final int OPEN_FILE = -15;
+
+    // MOBILITY: per square a piece can move to, by piece type ordinal
+    private static final int[] MOBILITY_MG = {0, 1, 5, 4, 2, 0};
+    private static final int[] MOBILITY_EG = {0, 2, 5, 4, 4, 0};
+
+    private Evaluator() {
+    }
+
+    public static int evaluate(Position position) {
+        return evaluate(position, PawnStructure.score(position.pawns(Position.WHITE), position.pawns(Position.BLACK)));
+    }
+
+    /**
+     * Scores a position, looking up its pawn structure in {@code pawnTable}
+     */
+    public static int evaluate(Position position, PawnHashTable pawnTable) {
+        return evaluate(position, pawnTable.score(position));
+    }
+
+    private static int evaluate(Position position, int pawnStructure) {
+        int mg = position.middlegameScore();
+        int eg = position.endgameScore();
+
+        // mobility of everything but pawns and kings
+        for (int square = 0; square < 64; square++) {
+            int piece = position.pieceAt(square);
+            int type = Position.type(piece);
+            if (piece != 0 && type != Position.PAWN && type != Position.KING) {
+                int moves = position.mobility(square);
+                int sign = Position.color(piece) == Position.WHITE ? 1 : -1;
+                mg += sign * moves * MOBILITY_MG[type];
+                eg += sign * moves * MOBILITY_EG[type];
+            }
+        }
+
+        long whitePawns = position.pawns(Position.WHITE);
+        long blackPawns = position.pawns(Position.BLACK);
+        long allPawns = whitePawns | blackPawns;
+        mg += middlegame(pawnStructure)
+                + kingSafety(position.kingSquare(Position.WHITE), whitePawns, allPawns, Position.WHITE)
+                - kingSafety(position.kingSquare(Position.BLACK), blackPawns, allPawns, Position.BLACK);
+        eg += endgame(pawnStructure);
+
+        int phase = Math.min(position.phase(), MAX_PHASE);
+        int score = (mg * phase + eg * (MAX_PHASE - phase)) / MAX_PHASE;
+        return position.sideToMove() == Position.WHITE ? score : -score;
+    }
+
+    // penalties for missing pawns in front of the king and open files next to it
+    private static int kingSafety(int king, long own, long allPawns, int color) {
+        if (king < 0) {
+            return 0;
+        }
+        // the two rows in front of the king
+        long shieldRows = 0;
+        for (int step = 1; step <= 2; step++) {
+            int row = color == Position.WHITE ? king / 8 + step : king / 8 - step;
+            if (row >= 0 && row < 8) {
+                shieldRows |= 0xFFL << row * 8;
+            }
+        }
+        int penalty = 0;
+        for (int file = Math.max(0, king % 8 - 1); file <= Math.min(7, king % 8 + 1); file++) {
+            if ((own & PawnStructure.fileMask(file) & shieldRows) == 0) {
+                penalty += NO_SHIELD;
+            }
+            if ((allPawns & PawnStructure.fileMask(file)) == 0) {
+                penalty += OPEN_FILE;
+            }
+        }
+        return penalty;
+    }
+
+    // a middlegame and endgame value in one int: the endgame value in the high 16 bits
+    static int pack(int mg, int eg) {
+        return (eg << 16) + mg;
+    }
+
+    static int middlegame(int packed) {
+        return (short) packed;
+    }
+
+    static int endgame(int packed) {
+        return (packed + 0x8000) >> 16;
+    }
+}
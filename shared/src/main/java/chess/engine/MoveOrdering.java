@@ -0,0 +1,80 @@
+package chess.engine;
+
+/**
+ * What a search has learned about which quiet moves tend to be good, for trying them early:
+ * <ul>
+ *     <li>killers: the last two quiet moves that caused a cutoff at each ply</li>
+ *     <li>counter-moves: the quiet move that last refuted each (piece, square) the opponent just
+ *     moved to</li>
+ *     <li>history: a score for each (side, from, to) that goes up each time the move causes a
+ *     cutoff and down each time another move does instead</li>
+ * </ul>
+ * All kept in plain int arrays. One per search thread; it isn't thread safe.
+ */
+public final class MoveOrdering {
+    // history scores stay within plus or minus this
+    static final int MAX_HISTORY = 16_384;
+
+    private final int[][] killers = new int[Position.MAX_PLY][2];
+    // [piece * 64 + square the opponent moved to]
+    private final int[] counterMoves = new int[13 * 64];
+    // [side * 4096 + from * 64 + to]
+    private final int[] history = new int[2 * 64 * 64];
+
+    /**
+     * Starts a new search: killers are for positions that won't come up again, and history is
+     * halved so what was learned last time counts for less
+     */
+    public void newSearch() {
+        for (int[] plyKillers : killers) {
+            plyKillers[0] = Moves.NONE;
+            plyKillers[1] = Moves.NONE;
+        }
+        for (int i = 0; i < history.length; i++) {
+            history[i] /= 2;
+        }
+    }
+
+    public int killer(int ply, int slot) {
+        return killers[ply][slot];
+    }
+
+    /**
+     * @param previousPiece the piece the opponent just moved, now on {@code previousTo}
+     */
+    public int counterMove(int previousPiece, int previousTo) {
+        return counterMoves[previousPiece * 64 + previousTo];
+    }
+
+    public int history(int side, int move) {
+        return history[side * 4096 + (move & 0xFFF)];
+    }
+
+    /**
+     * Records that a quiet move caused a cutoff
+     *
+     * @param tried         the quiet moves tried before it at this node, which didn't
+     * @param previousPiece the piece moved by the move before this one, or 0 at the root
+     */
+    public void cutoff(int side, int move, int depth, int ply, int[] tried, int triedCount,
+                       int previousPiece, int previousTo) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        if (previousPiece != 0) {
+            counterMoves[previousPiece * 64 + previousTo] = move;
+        }
+        int bonus = Math.min(depth * depth, 400);
+        addHistory(side, move, bonus);
+        for (int i = 0; i < triedCount; i++) {
+            addHistory(side, tried[i], -bonus);
+        }
+    }
+
+    // moves the score toward the limit, by less the closer it already is
+    private void addHistory(int side, int move, int bonus) {
+        int index = side * 4096 + (move & 0xFFF);
+        history[index] += bonus - history[index] * Math.abs(bonus) / MAX_HISTORY;
+    }
+}
@@ -0,0 +1,208 @@
+package chess.engine;
+
+/**
+ * Hands out one node's moves best-first, a stage at a time, so a node that's cut off early
+ * doesn't pay for generating or sorting moves it never tries:
+ * <ol>
+ *     <li>the transposition table's move</li>
+ *     <li>captures and promotions that don't lose material ({@link Position#see}), most valuable
+ *     victim first, then least valuable attacker</li>
+ *     <li>the two killer moves and the counter-move (see {@link MoveOrdering})</li>
+ *     <li>the other quiet moves, by history score</li>
+ *     <li>captures that lose material</li>
+ * </ol>
+ * Within a stage the best remaining move is picked on each call (a selection sort that stops
+ * wherever the node does). Moves are pseudo-legal, like {@link Position#generate}'s.
+ * <p>
+ * The search keeps one per ply and {@link #reset resets} it at each node, so it doesn't allocate.
+ */
+final class MovePicker {
+    private static final int HASH = 0;
+    private static final int GENERATE_CAPTURES = 1;
+    private static final int GOOD_CAPTURES = 2;
+    private static final int GENERATE_QUIETS = 3;
+    private static final int KILLERS = 4;
+    private static final int QUIETS = 5;
+    private static final int BAD_CAPTURES = 6;
+    private static final int DONE = 7;
+
+    // by piece type ordinal, for sorting captures
+    private static final int[] VICTIM_VALUES = {0, 9, 3, 3, 5, 1};
+
+    private final int[] moves = new int[Position.MAX_MOVES];
+    private final int[] scores = new int[Position.MAX_MOVES];
+    private final int[] badCaptures = new int[Position.MAX_MOVES];
+    // killer 1, killer 2 and the counter-move, when they can be made here
+    private final int[] special = new int[3];
+    private Position position;
+    private MoveOrdering ordering;
+    private int hashMove;
+    private int ply;
+    private int previousPiece;
+    private int previousTo;
+    private int stage;
+    private int count;
+    private int index;
+    private int badCount;
+    private int specialCount;
+    private boolean capturesOnly;
+
+    /**
+     * Starts on a new node
+     *
+     * @param previousPiece the piece the move before this one moved, or 0 at the root
+     * @param previousTo    where that piece went
+     */
+    void reset(Position position, MoveOrdering ordering, int hashMove, int ply, int previousPiece, int previousTo) {
+        this.position = position;
+        this.ordering = ordering;
+        this.hashMove = position.isPseudoLegal(hashMove) ? hashMove : Moves.NONE;
+        this.ply = ply;
+        this.previousPiece = previousPiece;
+        this.previousTo = previousTo;
+        stage = HASH;
+        badCount = 0;
+        specialCount = 0;
+        capturesOnly = false;
+    }
+
+    /**
+     * Starts on a quiescence node, which only wants the captures and promotions that don't lose
+     * material
+     */
+    void resetCaptures(Position position) {
+        this.position = position;
+        hashMove = Moves.NONE;
+        stage = GENERATE_CAPTURES;
+        badCount = 0;
+        specialCount = 0;
+        capturesOnly = true;
+    }
+
+    /**
+     * @return the next move to try, or {@link Moves#NONE} when there are no more
+     */
+    int next() {
+        while (true) {
+            switch (stage) {
+                case HASH -> {
+                    stage = GENERATE_CAPTURES;
+                    if (hashMove != Moves.NONE) {
+                        return hashMove;
+                    }
+                }
+                case GENERATE_CAPTURES -> {
+                    count = position.generate(moves, Position.NOISY);
+                    for (int i = 0; i < count; i++) {
+                        scores[i] = captureScore(moves[i]);
+                    }
+                    index = 0;
+                    stage = GOOD_CAPTURES;
+                }
+                case GOOD_CAPTURES -> {
+                    while (index < count) {
+                        int move = pickBest();
+                        if (move == hashMove) {
+                            continue;
+                        }
+                        if (position.see(move) < 0) {
+                            badCaptures[badCount++] = move;
+                            continue;
+                        }
+                        return move;
+                    }
+                    stage = capturesOnly ? DONE : GENERATE_QUIETS;
+                }
+                case GENERATE_QUIETS -> {
+                    count = position.generate(moves, Position.QUIET);
+                    findSpecial(ordering.killer(ply, 0));
+                    findSpecial(ordering.killer(ply, 1));
+                    if (previousPiece != 0) {
+                        findSpecial(ordering.counterMove(previousPiece, previousTo));
+                    }
+                    index = 0;
+                    stage = KILLERS;
+                }
+                case KILLERS -> {
+                    if (index < specialCount) {
+                        return special[index++];
+                    }
+                    int side = position.sideToMove();
+                    for (int i = 0; i < count; i++) {
+                        scores[i] = ordering.history(side, moves[i]);
+                    }
+                    index = 0;
+                    stage = QUIETS;
+                }
+                case QUIETS -> {
+                    while (index < count) {
+                        int move = pickBest();
+                        if (move != hashMove && !isSpecial(move)) {
+                            return move;
+                        }
+                    }
+                    index = 0;
+                    stage = BAD_CAPTURES;
+                }
+                case BAD_CAPTURES -> {
+                    if (index < badCount) {
+                        return badCaptures[index++];
+                    }
+                    stage = DONE;
+                }
+                default -> {
+                    return Moves.NONE;
+                }
+            }
+        }
+    }
+
+    // most valuable victim first, then least valuable attacker; promotions count as winning the
+    // difference between the new piece and the pawn
+    private int captureScore(int move) {
+        int victim = position.pieceAt(Moves.to(move));
+        int score = victim == 0 ? 0 : VICTIM_VALUES[Position.type(victim)] * 16;
+        if (Moves.promotion(move) != 0) {
+            score += (VICTIM_VALUES[Moves.promotionType(move)] - 1) * 16;
+        }
+        return score - VICTIM_VALUES[Position.type(position.pieceAt(Moves.from(move)))];
+    }
+
+    // swaps the best scoring move left into place and hands it out
+    private int pickBest() {
+        int best = index;
+        for (int i = index + 1; i < count; i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        int move = moves[best];
+        moves[best] = moves[index];
+        scores[best] = scores[index];
+        moves[index] = move;
+        index++;
+        return move;
+    }
+
+    // keeps a killer or counter-move if it's one of this node's quiet moves and not a repeat
+    private void findSpecial(int move) {
+        if (move == Moves.NONE || move == hashMove || isSpecial(move)) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            if (moves[i] == move) {
+                special[specialCount++] = move;
+                return;
+            }
+        }
+    }
+
+    private boolean isSpecial(int move) {
+        for (int i = 0; i < specialCount; i++) {
+            if (special[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,82 @@
+package chess.engine;
+
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+
+/**
+ * Moves packed into an int, so the search can keep them in arrays:
+ * <pre>
+ *   bits 0-5    start square (0 is a1, 63 is h8)
+ *   bits 6-11   end square
+ *   bits 12-14  promotion piece type ordinal + 1, or 0 if not a promotion
+ * </pre>
+ * 0 is never a real move (a1 to a1), so it's used for "no move".
+ */
+public final class Moves {
+    public static final int NONE = 0;
+
+    private Moves() {
+    }
+
+    public static int of(int from, int to) {
+        return from | to << 6;
+    }
+
+    public static int of(int from, int to, int promotionType) {
+        return from | to << 6 | (promotionType + 1) << 12;
+    }
+
+    public static int of(ChessMove move) {
+        int from = square(move.getStartPosition());
+        int to = square(move.getEndPosition());
+        return move.getPromotionPiece() == null ? of(from, to) : of(from, to, move.getPromotionPiece().ordinal());
+    }
+
+    public static int from(int move) {
+        return move & 0x3F;
+    }
+
+    public static int to(int move) {
+        return move >>> 6 & 0x3F;
+    }
+
+    /**
+     * @return promotion type ordinal + 1, or 0 if the move isn't a promotion
+     */
+    public static int promotion(int move) {
+        return move >>> 12 & 0x7;
+    }
+
+    public static int promotionType(int move) {
+        return promotion(move) - 1;
+    }
+
+    public static ChessMove toChessMove(int move) {
+        ChessPiece.PieceType promotion = promotion(move) == 0 ? null : ChessPiece.PieceType.values()[promotionType(move)];
+        return new ChessMove(position(from(move)), position(to(move)), promotion);
+    }
+
+    public static int square(ChessPosition position) {
+        return (position.getRow() - 1) * 8 + position.getColumn() - 1;
+    }
+
+    public static ChessPosition position(int square) {
+        return new ChessPosition(square / 8 + 1, square % 8 + 1);
+    }
+
+    /**
+     * @return the move in coordinate form, e.g. "e2e4" or "a7a8q"
+     */
+    public static String toString(int move) {
+        String text = name(from(move)) + name(to(move));
+        if (promotion(move) != 0) {
+            text += "kqbnrp".charAt(promotionType(move));
+        }
+        return text;
+    }
+
+    private static String name(int square) {
+        return "" + (char) ('a' + square % 8) + (char) ('1' + square / 8);
+    }
+}
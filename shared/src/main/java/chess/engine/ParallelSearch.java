@@ -0,0 +1,130 @@
+package chess.engine;
+
+import chess.ChessGame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Searches one position on several threads at once ("lazy SMP"). The calling thread runs the
+ * search as usual, and helper threads run the same search alongside it on their own copies of the
+ * position, all sharing one {@link TranspositionTable}. The helpers' results mostly matter for
+ * what they leave in the table, which the calling thread finds and skips over; every other helper
+ * starts a depth further on so they don't all search the same thing in step. When the calling
+ * thread's search is done the helpers are stopped, and the result comes from whichever thread
+ * finished the deepest iteration.
+ * <p>
+ * Helpers come from a fixed set of threads shared by every search made through this object, so
+ * concurrent searches can't use more than that many cores between them. A search that asks for
+ * more helpers than are free runs with what it gets, and while several searches are running each
+ * gets at most an even share.
+ */
+public class ParallelSearch {
+    private final int helperThreads;
+    private final ExecutorService helpers;
+    private final Semaphore idleHelpers;
+    private final AtomicInteger running = new AtomicInteger();
+    private final LongAdder searches = new LongAdder();
+    // Search keeps its move lists between searches, so keep one per thread. They're always given
+    // the caller's table, so they don't get one of their own
+    private final ThreadLocal<Search> searchers = ThreadLocal.withInitial(Search::withoutTable);
+
+    public record Stats(int helperThreads, int busyHelpers, int running, long searches) {}
+
+    /**
+     * @param helperThreads most helper threads all searches can use between them
+     */
+    public ParallelSearch(int helperThreads) {
+        this.helperThreads = Math.max(0, helperThreads);
+        idleHelpers = new Semaphore(this.helperThreads);
+        var count = new AtomicInteger();
+        helpers = Executors.newFixedThreadPool(Math.max(1, this.helperThreads), runnable -> {
+            Thread thread = new Thread(runnable, "search-helper-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Searches on the calling thread plus up to {@code threads - 1} helpers. Interrupting the
+     * calling thread stops the search, helpers and all.
+     *
+     * @param table shared by all the threads; it can be shared with other searches too
+     */
+    public SearchResult search(ChessGame game, SearchLimits limits, int threads, TranspositionTable table) {
+        running.incrementAndGet();
+        searches.increment();
+        int granted = reserveHelpers(threads - 1);
+        try {
+            table.newSearch();
+            var stop = new AtomicBoolean();
+            // helpers aren't limited except by depth; they stop when the calling thread's search does
+            var helperLimits = SearchLimits.depth(limits.depth());
+            List<Future<SearchResult>> started = new ArrayList<>();
+            for (int i = 1; i <= granted; i++) {
+                int firstDepth = 1 + i % 2;
+                var position = Position.from(game);
+                started.add(helpers.submit(() ->
+                        searchers.get().run(position, helperLimits, table, stop, firstDepth, true)));
+            }
+
+            SearchResult best;
+            try {
+                best = searchers.get().run(Position.from(game), limits, table, stop, 1, false);
+            } finally {
+                stop.set(true);
+            }
+            long nodes = best.nodes();
+            for (Future<SearchResult> helper : started) {
+                SearchResult result = join(helper);
+                if (result != null) {
+                    nodes += result.nodes();
+                    if (result.depth() > best.depth() && result.move() != null) {
+                        best = result;
+                    }
+                }
+            }
+            return new SearchResult(best.move(), best.score(), best.depth(), nodes, best.millis());
+        } finally {
+            idleHelpers.release(granted);
+            running.decrementAndGet();
+        }
+    }
+
+    // as many helpers as are free, up to what was asked for and this search's share
+    private int reserveHelpers(int wanted) {
+        int share = helperThreads / Math.max(1, running.get());
+        int granted = 0;
+        while (granted < Math.min(wanted, share) && idleHelpers.tryAcquire()) {
+            granted++;
+        }
+        return granted;
+    }
+
+    private static SearchResult join(Future<SearchResult> helper) {
+        try {
+            return helper.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException ex) {
+            return null;
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(helperThreads, helperThreads - idleHelpers.availablePermits(), running.get(), searches.sum());
+    }
+
+    public void shutdown() {
+        helpers.shutdownNow();
+    }
+}
@@ -0,0 +1,55 @@
+package chess.engine;
+
+/**
+ * Remembers pawn structure scores by the pawns' own Zobrist key ({@link Position#pawnKey()}).
+ * Pawns move far less often than other pieces, so most positions a search scores have a pawn
+ * structure it has already seen.
+ * <p>
+ * One per search thread; it isn't thread safe.
+ */
+public final class PawnHashTable {
+    // a key and a score per entry
+    private static final int ENTRY_BYTES = Long.BYTES + Integer.BYTES;
+
+    private final long[] keys;
+    private final int[] scores;
+    private final int mask;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param kilobytes most memory to use; rounded down to a power of two entries
+     */
+    public PawnHashTable(int kilobytes) {
+        int entries = Integer.highestOneBit(Math.max(1, Math.max(1, kilobytes) * 1024 / ENTRY_BYTES));
+        keys = new long[entries];
+        scores = new int[entries];
+        mask = entries - 1;
+    }
+
+    /**
+     * @return the packed pawn structure score (see {@link PawnStructure#score})
+     */
+    public int score(Position position) {
+        long key = position.pawnKey();
+        int index = (int) key & mask;
+        // an empty entry looks like the entry for no pawns at all, which scores 0 anyway
+        if (keys[index] == key) {
+            hits++;
+            return scores[index];
+        }
+        misses++;
+        int score = PawnStructure.score(position.pawns(Position.WHITE), position.pawns(Position.BLACK));
+        keys[index] = key;
+        scores[index] = score;
+        return score;
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+}
@@ -0,0 +1,245 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.ChessPosition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What's good and bad about each side's pawns:
+ * <ul>
+ *     <li>doubled: another pawn of the same color is in front of it on its file</li>
+ *     <li>isolated: no pawns of the same color on either file next to it</li>
+ *     <li>passed: no enemy pawn can stop or take it on its way to promoting</li>
+ *     <li>backward: every friendly pawn next to it is further on, and an enemy pawn guards the
+ *     square in front of it, so it can't safely move up to them</li>
+ *     <li>islands: groups of files next to each other that have pawns</li>
+ * </ul>
+ * Pawns are passed around as 64-bit masks, bit n for a pawn on square n (0 is a1). The static
+ * methods don't allocate, so the evaluation can use them; {@link #of(ChessBoard)} is for showing
+ * the results, e.g. in game annotations.
+ */
+public final class PawnStructure {
+    private static final long FILE_A = 0x0101010101010101L;
+    // [color][square] -> squares in front of a pawn there, on its file and the files either side
+    private static final long[][] PASSED_SPANS = new long[2][64];
+    // [color][square] -> squares in front of a pawn there, on its own file
+    private static final long[][] FRONT_SPANS = new long[2][64];
+    // [color][square] -> squares on the files either side, level with or behind a pawn there
+    private static final long[][] SUPPORT_SPANS = new long[2][64];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            int row = square / 8;
+            long file = fileMask(square % 8);
+            long neighbours = neighbourFiles(square % 8);
+            long above = row == 7 ? 0 : -1L << (row + 1) * 8;
+            long below = (1L << row * 8) - 1;
+            PASSED_SPANS[Position.WHITE][square] = (file | neighbours) & above;
+            PASSED_SPANS[Position.BLACK][square] = (file | neighbours) & below;
+            FRONT_SPANS[Position.WHITE][square] = file & above;
+            FRONT_SPANS[Position.BLACK][square] = file & below;
+            SUPPORT_SPANS[Position.WHITE][square] = neighbours & ~above;
+            SUPPORT_SPANS[Position.BLACK][square] = neighbours & ~below;
+        }
+    }
+
+    // SCORES: passed pawns by how far they've come (0 is their own back row)
+    private static final int[] PASSED_MG = {0, 5, 10, 15, 25, 40, 60, 0};
+    private static final int[] PASSED_EG = {0, 10, 20, 35, 60, 100, 150, 0};
+    private static final int DOUBLED_MG = -10;
+    private static final int DOUBLED_EG = -20;
+    private static final int ISOLATED_MG = -10;
+    private static final int ISOLATED_EG = -15;
+    private static final int BACKWARD_MG = -8;
+    private static final int BACKWARD_EG = -10;
+    // for each island past the first
+    private static final int ISLAND_MG = -5;
+    private static final int ISLAND_EG = -10;
+
+    private final long[] pawns = new long[2];
+
+    private PawnStructure(long whitePawns, long blackPawns) {
+        pawns[Position.WHITE] = whitePawns;
+        pawns[Position.BLACK] = blackPawns;
+    }
+
+    public static PawnStructure of(ChessBoard board) {
+        long white = 0;
+        long black = 0;
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = board.getPiece(Moves.position(square));
+            if (piece != null && piece.getPieceType() == ChessPiece.PieceType.PAWN) {
+                if (piece.getTeamColor() == ChessGame.TeamColor.WHITE) {
+                    white |= 1L << square;
+                } else {
+                    black |= 1L << square;
+                }
+            }
+        }
+        return new PawnStructure(white, black);
+    }
+
+    public List<ChessPosition> doubled(ChessGame.TeamColor color) {
+        return positions(doubled(own(color), color.ordinal()));
+    }
+
+    public List<ChessPosition> isolated(ChessGame.TeamColor color) {
+        return positions(isolated(own(color)));
+    }
+
+    public List<ChessPosition> passed(ChessGame.TeamColor color) {
+        return positions(passed(own(color), enemy(color), color.ordinal()));
+    }
+
+    public List<ChessPosition> backward(ChessGame.TeamColor color) {
+        return positions(backward(own(color), enemy(color), color.ordinal()));
+    }
+
+    public int islands(ChessGame.TeamColor color) {
+        return islands(own(color));
+    }
+
+    /**
+     * @return the structure's score from white's point of view, for the middlegame
+     */
+    public int middlegameScore() {
+        return Evaluator.middlegame(score(pawns[Position.WHITE], pawns[Position.BLACK]));
+    }
+
+    public int endgameScore() {
+        return Evaluator.endgame(score(pawns[Position.WHITE], pawns[Position.BLACK]));
+    }
+
+    private long own(ChessGame.TeamColor color) {
+        return pawns[color.ordinal()];
+    }
+
+    private long enemy(ChessGame.TeamColor color) {
+        return pawns[color.ordinal() ^ 1];
+    }
+
+    private static List<ChessPosition> positions(long squares) {
+        var positions = new ArrayList<ChessPosition>();
+        for (long left = squares; left != 0; left &= left - 1) {
+            positions.add(Moves.position(Long.numberOfTrailingZeros(left)));
+        }
+        return positions;
+    }
+
+    // MASKS
+
+    /**
+     * @return the pawns with another of their own in front of them on the same file
+     */
+    public static long doubled(long own, int color) {
+        long doubled = 0;
+        for (long left = own; left != 0; left &= left - 1) {
+            int square = Long.numberOfTrailingZeros(left);
+            if ((own & FRONT_SPANS[color][square]) != 0) {
+                doubled |= 1L << square;
+            }
+        }
+        return doubled;
+    }
+
+    public static long isolated(long own) {
+        long isolated = 0;
+        for (int file = 0; file < 8; file++) {
+            if ((own & neighbourFiles(file)) == 0) {
+                isolated |= own & fileMask(file);
+            }
+        }
+        return isolated;
+    }
+
+    /**
+     * @return the pawns no enemy pawn is in front of, on their file or either side. Only the front
+     * pawn of a doubled pair counts as passed.
+     */
+    public static long passed(long own, long enemy, int color) {
+        long passed = 0;
+        for (long left = own; left != 0; left &= left - 1) {
+            int square = Long.numberOfTrailingZeros(left);
+            if ((enemy & PASSED_SPANS[color][square]) == 0 && (own & FRONT_SPANS[color][square]) == 0) {
+                passed |= 1L << square;
+            }
+        }
+        return passed;
+    }
+
+    public static long backward(long own, long enemy, int color) {
+        long backward = 0;
+        for (long left = own; left != 0; left &= left - 1) {
+            int square = Long.numberOfTrailingZeros(left);
+            int file = square % 8;
+            boolean hasNeighbours = (own & neighbourFiles(file)) != 0;
+            boolean unsupported = (own & SUPPORT_SPANS[color][square]) == 0;
+            if (hasNeighbours && unsupported && stopSquareGuarded(square, enemy, color)) {
+                backward |= 1L << square;
+            }
+        }
+        return backward;
+    }
+
+    // is the square in front of the pawn attacked by an enemy pawn?
+    private static boolean stopSquareGuarded(int square, long enemy, int color) {
+        int stop = color == Position.WHITE ? square + 8 : square - 8;
+        int attackerRow = stop / 8 + (color == Position.WHITE ? 1 : -1);
+        if (stop < 0 || stop > 63 || attackerRow < 0 || attackerRow > 7) {
+            return false;
+        }
+        long attackers = neighbourFiles(square % 8) & 0xFFL << attackerRow * 8;
+        return (enemy & attackers) != 0;
+    }
+
+    public static int islands(long own) {
+        int islands = 0;
+        boolean inIsland = false;
+        for (int file = 0; file < 8; file++) {
+            boolean hasPawns = (own & fileMask(file)) != 0;
+            if (hasPawns && !inIsland) {
+                islands++;
+            }
+            inIsland = hasPawns;
+        }
+        return islands;
+    }
+
+    // SCORING
+
+    /**
+     * @return the structure's middlegame and endgame scores from white's point of view, packed
+     * into one int (see {@link Evaluator#pack})
+     */
+    public static int score(long whitePawns, long blackPawns) {
+        return score(whitePawns, blackPawns, Position.WHITE) - score(blackPawns, whitePawns, Position.BLACK);
+    }
+
+    private static int score(long own, long enemy, int color) {
+        int doubled = Long.bitCount(doubled(own, color));
+        int isolated = Long.bitCount(isolated(own));
+        int backward = Long.bitCount(backward(own, enemy, color));
+        int extraIslands = Math.max(0, islands(own) - 1);
+        int mg = doubled * DOUBLED_MG + isolated * ISOLATED_MG + backward * BACKWARD_MG + extraIslands * ISLAND_MG;
+        int eg = doubled * DOUBLED_EG + isolated * ISOLATED_EG + backward * BACKWARD_EG + extraIslands * ISLAND_EG;
+        for (long left = passed(own, enemy, color); left != 0; left &= left - 1) {
+            int row = Long.numberOfTrailingZeros(left) / 8;
+            int advanced = color == Position.WHITE ? row : 7 - row;
+            mg += PASSED_MG[advanced];
+            eg += PASSED_EG[advanced];
+        }
+        return Evaluator.pack(mg, eg);
+    }
+
+    static long fileMask(int file) {
+        return FILE_A << file;
+    }
+
+    private static long neighbourFiles(int file) {
+        return (file > 0 ? fileMask(file - 1) : 0) | (file < 7 ? fileMask(file + 1) : 0);
+    }
+}
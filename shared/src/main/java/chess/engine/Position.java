@@ -0,0 +1,700 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.Zobrist;
+
+import java.util.Arrays;
+
+/**
+ * A board made for searching: pieces are ints in a 64 square array, moves are ints (see
+ * {@link Moves}) and a move is made and taken back in place, so searching doesn't allocate.
+ * The rules are the same as {@link ChessGame}'s (no castling or en passant).
+ * <p>
+ * Squares are numbered 0 (a1) to 63 (h8), the same as {@link Zobrist}. A piece is
+ * {@code 1 + color * 6 + type}, where color is 0 for white and 1 for black and type is the
+ * {@link ChessPiece.PieceType} ordinal; 0 is an empty square.
+ * <p>
+ * Not thread safe; each search thread has its own.
+ */
+public final class Position {
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    public static final int KING = ChessPiece.PieceType.KING.ordinal();
+    public static final int QUEEN = ChessPiece.PieceType.QUEEN.ordinal();
+    public static final int BISHOP = ChessPiece.PieceType.BISHOP.ordinal();
+    public static final int KNIGHT = ChessPiece.PieceType.KNIGHT.ordinal();
+    public static final int ROOK = ChessPiece.PieceType.ROOK.ordinal();
+    public static final int PAWN = ChessPiece.PieceType.PAWN.ordinal();
+
+    // deepest a line of play can go from the position we started from
+    public static final int MAX_PLY = 256;
+    // more than the most moves any position has
+    public static final int MAX_MOVES = 256;
+
+    private static final long[][] KEYS = new long[13][64];
+    private static final int[][] KNIGHT_TARGETS = new int[64][];
+    private static final int[][] KING_TARGETS = new int[64][];
+    // [direction][square] -> squares from there to the edge of the board; 0-3 straight, 4-7 diagonal
+    private static final int[][][] RAYS = new int[8][64][];
+    private static final int[][] DIRECTIONS = {
+            {1, 0}, {-1, 0}, {0, 1}, {0, -1},
+            {1, 1}, {1, -1}, {-1, 1}, {-1, -1}
+    };
+    private static final int[] PROMOTIONS = {QUEEN, BISHOP, KNIGHT, ROOK};
+
+    static {
+        for (int color = 0; color < 2; color++) {
+            for (ChessPiece.PieceType type : ChessPiece.PieceType.values()) {
+                for (int square = 0; square < 64; square++) {
+                    KEYS[piece(color, type.ordinal())][square] =
+                            Zobrist.pieceKey(ChessGame.TeamColor.values()[color], type, square);
+                }
+            }
+        }
+        int[][] knightSteps = {{2, 1}, {2, -1}, {-2, 1}, {-2, -1}, {1, 2}, {1, -2}, {-1, 2}, {-1, -2}};
+        for (int square = 0; square < 64; square++) {
+            KNIGHT_TARGETS[square] = steps(square, knightSteps);
+            KING_TARGETS[square] = steps(square, DIRECTIONS);
+            for (int direction = 0; direction < 8; direction++) {
+                RAYS[direction][square] = ray(square, DIRECTIONS[direction]);
+            }
+        }
+    }
+
+    private static int[] steps(int square, int[][] steps) {
+        int[] targets = new int[steps.length];
+        int count = 0;
+        for (int[] step : steps) {
+            int row = square / 8 + step[0];
+            int col = square % 8 + step[1];
+            if (row >= 0 && row < 8 && col >= 0 && col < 8) {
+                targets[count++] = row * 8 + col;
+            }
+        }
+        return Arrays.copyOf(targets, count);
+    }
+
+    private static int[] ray(int square, int[] step) {
+        int[] squares = new int[7];
+        int count = 0;
+        int row = square / 8 + step[0];
+        int col = square % 8 + step[1];
+        while (row >= 0 && row < 8 && col >= 0 && col < 8) {
+            squares[count++] = row * 8 + col;
+            row += step[0];
+            col += step[1];
+        }
+        return Arrays.copyOf(squares, count);
+    }
+
+    private final int[] board = new int[64];
+    private final int[] kingSquare = {-1, -1};
+    private int side;
+    private long key;
+    // the key of just the pawns, and where each side's pawns are (bit n for square n)
+    private long pawnKey;
+    private final long[] pawns = new long[2];
+    // material plus piece-square values from white's point of view (see Evaluator), and the phase
+    private int middlegame;
+    private int endgame;
+    private int phase;
+
+    // what each move made so far took, so it can be undone
+    private final int[] capturedStack = new int[MAX_PLY];
+    private final long[] keyStack = new long[MAX_PLY];
+    private final long[] pawnKeyStack = new long[MAX_PLY];
+    private final long[] whitePawnStack = new long[MAX_PLY];
+    private final long[] blackPawnStack = new long[MAX_PLY];
+    private final int[] middlegameStack = new int[MAX_PLY];
+    private final int[] endgameStack = new int[MAX_PLY];
+    private final int[] phaseStack = new int[MAX_PLY];
+    private int ply;
+
+    private Position() {
+    }
+
+    /**
+     * Copies a game's board and side to move
+     */
+    public static Position from(ChessGame game) {
+        var position = new Position();
+        ChessBoard board = game.getBoard();
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = board.getPiece(new ChessPosition(square / 8 + 1, square % 8 + 1));
+            if (piece != null) {
+                position.put(square, piece(piece.getTeamColor().ordinal(), piece.getPieceType().ordinal()));
+            }
+        }
+        position.side = game.getTeamTurn().ordinal();
+        position.key = Zobrist.hash(game);
+        return position;
+    }
+
+    private void put(int square, int piece) {
+        board[square] = piece;
+        middlegame += Evaluator.MG[piece][square];
+        endgame += Evaluator.EG[piece][square];
+        phase += Evaluator.PHASE[piece];
+        if (type(piece) == PAWN) {
+            pawnKey ^= KEYS[piece][square];
+            pawns[color(piece)] |= 1L << square;
+        }
+        if (type(piece) == KING) {
+            kingSquare[color(piece)] = square;
+        }
+    }
+
+    // PIECES
+
+    public static int piece(int color, int type) {
+        return 1 + color * 6 + type;
+    }
+
+    public static int color(int piece) {
+        return (piece - 1) / 6;
+    }
+
+    public static int type(int piece) {
+        return (piece - 1) % 6;
+    }
+
+    public int pieceAt(int square) {
+        return board[square];
+    }
+
+    public int sideToMove() {
+        return side;
+    }
+
+    /**
+     * @return the position's Zobrist key, the same as {@link Zobrist#hash} gives for the game
+     */
+    public long key() {
+        return key;
+    }
+
+    /**
+     * @return a Zobrist key of just the pawns, for caching pawn structure
+     */
+    public long pawnKey() {
+        return pawnKey;
+    }
+
+    /**
+     * @return where {@code color}'s pawns are: bit n is set for a pawn on square n
+     */
+    public long pawns(int color) {
+        return pawns[color];
+    }
+
+    /**
+     * @return how many moves have been made since this position was created
+     */
+    public int ply() {
+        return ply;
+    }
+
+    /**
+     * @return material plus piece-square values, white's minus black's, for the middlegame
+     */
+    public int middlegameScore() {
+        return middlegame;
+    }
+
+    /**
+     * @return material plus piece-square values, white's minus black's, for the endgame
+     */
+    public int endgameScore() {
+        return endgame;
+    }
+
+    /**
+     * @return how much material is left, from {@link Evaluator#MAX_PHASE} with every piece on the
+     * board down to 0 (it can go over with promotions)
+     */
+    public int phase() {
+        return phase;
+    }
+
+    /**
+     * @return where {@code color}'s king is, or -1 if it has none
+     */
+    public int kingSquare(int color) {
+        return kingSquare[color];
+    }
+
+    // MAKING MOVES
+
+    /**
+     * Makes a move given by {@link #generate} or {@link #legalMoves}. Moves that leave the mover's
+     * own king attacked are still made; check with {@link #leftKingAttacked}.
+     */
+    public void make(int move) {
+        int from = Moves.from(move);
+        int to = Moves.to(move);
+        int piece = board[from];
+        int captured = board[to];
+        capturedStack[ply] = captured;
+        keyStack[ply] = key;
+        middlegameStack[ply] = middlegame;
+        endgameStack[ply] = endgame;
+        phaseStack[ply] = phase;
+        pawnKeyStack[ply] = pawnKey;
+        whitePawnStack[ply] = pawns[WHITE];
+        blackPawnStack[ply] = pawns[BLACK];
+        ply++;
+
+        int placed = Moves.promotion(move) != 0 ? piece(side, Moves.promotionType(move)) : piece;
+        key ^= KEYS[piece][from] ^ KEYS[placed][to] ^ KEYS[captured][to] ^ Zobrist.blackToMoveKey();
+        middlegame += Evaluator.MG[placed][to] - Evaluator.MG[piece][from] - Evaluator.MG[captured][to];
+        endgame += Evaluator.EG[placed][to] - Evaluator.EG[piece][from] - Evaluator.EG[captured][to];
+        phase += Evaluator.PHASE[placed] - Evaluator.PHASE[piece] - Evaluator.PHASE[captured];
+        if (type(piece) == PAWN) {
+            pawnKey ^= KEYS[piece][from];
+            pawns[side] &= ~(1L << from);
+            if (placed == piece) {
+                pawnKey ^= KEYS[piece][to];
+                pawns[side] |= 1L << to;
+            }
+        }
+        if (captured != 0 && type(captured) == PAWN) {
+            pawnKey ^= KEYS[captured][to];
+            pawns[side ^ 1] &= ~(1L << to);
+        }
+        board[from] = 0;
+        board[to] = placed;
+        if (type(piece) == KING) {
+            kingSquare[side] = to;
+        }
+        side ^= 1;
+    }
+
+    /**
+     * Takes back the last move made, which must be {@code move}
+     */
+    public void unmake(int move) {
+        int from = Moves.from(move);
+        int to = Moves.to(move);
+        ply--;
+        side ^= 1;
+        int piece = Moves.promotion(move) != 0 ? piece(side, PAWN) : board[to];
+        board[from] = piece;
+        board[to] = capturedStack[ply];
+        key = keyStack[ply];
+        middlegame = middlegameStack[ply];
+        endgame = endgameStack[ply];
+        phase = phaseStack[ply];
+        pawnKey = pawnKeyStack[ply];
+        pawns[WHITE] = whitePawnStack[ply];
+        pawns[BLACK] = blackPawnStack[ply];
+        if (type(piece) == KING) {
+            kingSquare[side] = from;
+        }
+    }
+
+    /**
+     * Passes the turn without moving, for null move pruning. Must not be called in check.
+     */
+    public void makeNull() {
+        keyStack[ply] = key;
+        ply++;
+        key ^= Zobrist.blackToMoveKey();
+        side ^= 1;
+    }
+
+    public void unmakeNull() {
+        ply--;
+        side ^= 1;
+        key = keyStack[ply];
+    }
+
+    /**
+     * @return true if {@code color} has anything besides its king and pawns. Positions where it
+     * doesn't are the ones where passing could be better than any move (zugzwang).
+     */
+    public boolean hasPieces(int color) {
+        for (int piece : board) {
+            if (piece != 0 && color(piece) == color && type(piece) != KING && type(piece) != PAWN) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the move just made left the mover's king attacked, so it wasn't legal
+     */
+    public boolean leftKingAttacked() {
+        int mover = side ^ 1;
+        return kingSquare[mover] >= 0 && isAttacked(kingSquare[mover], side);
+    }
+
+    public boolean inCheck() {
+        return kingSquare[side] >= 0 && isAttacked(kingSquare[side], side ^ 1);
+    }
+
+    /**
+     * @return true if any piece of color {@code by} attacks {@code square}
+     */
+    public boolean isAttacked(int square, int by) {
+        // pawns of color 'by' attack from one row behind them (from the attacker's side)
+        int pawn = piece(by, PAWN);
+        int row = square / 8 - (by == WHITE ? 1 : -1);
+        int col = square % 8;
+        if (row >= 0 && row < 8) {
+            if (col > 0 && board[row * 8 + col - 1] == pawn) {
+                return true;
+            }
+            if (col < 7 && board[row * 8 + col + 1] == pawn) {
+                return true;
+            }
+        }
+        int knight = piece(by, KNIGHT);
+        for (int target : KNIGHT_TARGETS[square]) {
+            if (board[target] == knight) {
+                return true;
+            }
+        }
+        int king = piece(by, KING);
+        for (int target : KING_TARGETS[square]) {
+            if (board[target] == king) {
+                return true;
+            }
+        }
+        int queen = piece(by, QUEEN);
+        for (int direction = 0; direction < 8; direction++) {
+            int slider = piece(by, direction < 4 ? ROOK : BISHOP);
+            for (int target : RAYS[direction][square]) {
+                int occupant = board[target];
+                if (occupant != 0) {
+                    if (occupant == slider || occupant == queen) {
+                        return true;
+                    }
+                    break;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return how many squares the knight, bishop, rook or queen on {@code square} can move to,
+     * not counting whether its king would be safe
+     */
+    public int mobility(int square) {
+        int piece = board[square];
+        int type = type(piece);
+        int color = color(piece);
+        if (type == KNIGHT) {
+            int count = 0;
+            for (int target : KNIGHT_TARGETS[square]) {
+                if (board[target] == 0 || color(board[target]) != color) {
+                    count++;
+                }
+            }
+            return count;
+        }
+        int first = type == BISHOP ? 4 : 0;
+        int last = type == ROOK ? 4 : 8;
+        int count = 0;
+        for (int direction = first; direction < last; direction++) {
+            for (int target : RAYS[direction][square]) {
+                int occupant = board[target];
+                if (occupant == 0) {
+                    count++;
+                } else {
+                    if (color(occupant) != color) {
+                        count++;
+                    }
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    // MOVE GENERATION
+
+    // what generate() writes: captures and promotions ("noisy" moves), everything else, or both
+    public static final int NOISY = 1;
+    public static final int QUIET = 2;
+    public static final int ALL = NOISY | QUIET;
+    // the most moves one piece can have is a queen's 27
+    private final int[] pieceMoveList = new int[32];
+
+    /**
+     * Writes every move the side to move could make if it didn't have to keep its king safe
+     *
+     * @param moves where to put them, at least {@link #MAX_MOVES} long
+     * @return how many there are
+     */
+    public int generate(int[] moves) {
+        return generate(moves, ALL);
+    }
+
+    /**
+     * Like {@link #generate(int[])}, but only the {@link #NOISY} or {@link #QUIET} moves
+     */
+    public int generate(int[] moves, int kinds) {
+        int count = 0;
+        for (int from = 0; from < 64; from++) {
+            int piece = board[from];
+            if (piece != 0 && color(piece) == side) {
+                count = pieceMoves(from, moves, count, kinds);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return true if {@link #generate(int[])} would give this move, e.g. for checking that a move
+     * from the transposition table (which could be from another position with the same key) can
+     * be made here
+     */
+    public boolean isPseudoLegal(int move) {
+        int piece = board[Moves.from(move)];
+        if (move == Moves.NONE || piece == 0 || color(piece) != side) {
+            return false;
+        }
+        int count = pieceMoves(Moves.from(move), pieceMoveList, 0, ALL);
+        for (int i = 0; i < count; i++) {
+            if (pieceMoveList[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int pieceMoves(int from, int[] moves, int count, int kinds) {
+        int type = type(board[from]);
+        if (type == PAWN) {
+            return pawnMoves(from, moves, count, kinds);
+        } else if (type == KNIGHT) {
+            return stepMoves(from, KNIGHT_TARGETS[from], moves, count, kinds);
+        } else if (type == KING) {
+            return stepMoves(from, KING_TARGETS[from], moves, count, kinds);
+        }
+        int first = type == BISHOP ? 4 : 0;
+        int last = type == ROOK ? 4 : 8;
+        for (int direction = first; direction < last; direction++) {
+            count = slideMoves(from, RAYS[direction][from], moves, count, kinds);
+        }
+        return count;
+    }
+
+    private int stepMoves(int from, int[] targets, int[] moves, int count, int kinds) {
+        for (int to : targets) {
+            int occupant = board[to];
+            if (occupant == 0 ? (kinds & QUIET) != 0 : color(occupant) != side && (kinds & NOISY) != 0) {
+                moves[count++] = Moves.of(from, to);
+            }
+        }
+        return count;
+    }
+
+    private int slideMoves(int from, int[] ray, int[] moves, int count, int kinds) {
+        for (int to : ray) {
+            int occupant = board[to];
+            if (occupant == 0) {
+                if ((kinds & QUIET) != 0) {
+                    moves[count++] = Moves.of(from, to);
+                }
+            } else {
+                if (color(occupant) != side && (kinds & NOISY) != 0) {
+                    moves[count++] = Moves.of(from, to);
+                }
+                break;
+            }
+        }
+        return count;
+    }
+
+    private int pawnMoves(int from, int[] moves, int count, int kinds) {
+        int forward = side == WHITE ? 8 : -8;
+        int row = from / 8;
+        int col = from % 8;
+        int to = from + forward;
+        boolean promoting = to / 8 == 0 || to / 8 == 7;
+        if (board[to] == 0) {
+            // pushing to the last row is a promotion, which counts as noisy
+            if ((kinds & (promoting ? NOISY : QUIET)) != 0) {
+                count = pawnMove(from, to, moves, count);
+            }
+            int startRow = side == WHITE ? 1 : 6;
+            if (row == startRow && board[to + forward] == 0 && (kinds & QUIET) != 0) {
+                moves[count++] = Moves.of(from, to + forward);
+            }
+        }
+        if ((kinds & NOISY) != 0) {
+            if (col > 0 && isEnemy(to - 1)) {
+                count = pawnMove(from, to - 1, moves, count);
+            }
+            if (col < 7 && isEnemy(to + 1)) {
+                count = pawnMove(from, to + 1, moves, count);
+            }
+        }
+        return count;
+    }
+
+    private boolean isEnemy(int square) {
+        int occupant = board[square];
+        return occupant != 0 && color(occupant) != side;
+    }
+
+    private int pawnMove(int from, int to, int[] moves, int count) {
+        int row = to / 8;
+        if (row == 0 || row == 7) {
+            for (int type : PROMOTIONS) {
+                moves[count++] = Moves.of(from, to, type);
+            }
+        } else {
+            moves[count++] = Moves.of(from, to);
+        }
+        return count;
+    }
+
+    /**
+     * @return true if the move captures something or promotes
+     */
+    public boolean isNoisy(int move) {
+        return board[Moves.to(move)] != 0 || Moves.promotion(move) != 0;
+    }
+
+    // STATIC EXCHANGE EVALUATION
+
+    // by piece type ordinal; the king is worth more than anything it could win
+    private static final int[] SEE_VALUES = {20_000, 900, 330, 320, 500, 100};
+    private final int[] swapGains = new int[32];
+
+    /**
+     * Works out what a capture wins or loses if both sides keep taking on the target square with
+     * their least valuable piece and either side can stop when it's ahead (static exchange
+     * evaluation). Pieces behind others on the same line join in as the ones in front go.
+     *
+     * @return the material the mover comes out with, in centipawns; negative if the move loses
+     * material
+     */
+    public int see(int move) {
+        int from = Moves.from(move);
+        int to = Moves.to(move);
+        int[] gain = swapGains;
+        int captured = board[to];
+        gain[0] = captured == 0 ? 0 : SEE_VALUES[type(captured)];
+        int onSquare = SEE_VALUES[type(board[from])];
+        if (Moves.promotion(move) != 0) {
+            onSquare = SEE_VALUES[Moves.promotionType(move)];
+            gain[0] += onSquare - SEE_VALUES[PAWN];
+        }
+
+        long removed = 1L << from;
+        int by = color(board[from]) ^ 1;
+        int depth = 0;
+        while (depth < gain.length - 1) {
+            depth++;
+            // what's been won so far if the piece now on the square is taken
+            gain[depth] = onSquare - gain[depth - 1];
+            if (Math.max(-gain[depth - 1], gain[depth]) < 0) {
+                break;
+            }
+            int attacker = leastValuableAttacker(to, by, removed);
+            if (attacker < 0) {
+                break;
+            }
+            onSquare = SEE_VALUES[type(board[attacker])];
+            removed |= 1L << attacker;
+            by ^= 1;
+        }
+        while (--depth > 0) {
+            gain[depth - 1] = -Math.max(-gain[depth - 1], gain[depth]);
+        }
+        return gain[0];
+    }
+
+    // the square of the cheapest piece of color 'by' that attacks 'square', ignoring pieces
+    // already used up in the exchange, or -1 if there isn't one
+    private int leastValuableAttacker(int square, int by, long removed) {
+        int pawn = piece(by, PAWN);
+        int row = square / 8 - (by == WHITE ? 1 : -1);
+        int col = square % 8;
+        if (row >= 0 && row < 8) {
+            if (col > 0 && board[row * 8 + col - 1] == pawn && (removed & 1L << row * 8 + col - 1) == 0) {
+                return row * 8 + col - 1;
+            }
+            if (col < 7 && board[row * 8 + col + 1] == pawn && (removed & 1L << row * 8 + col + 1) == 0) {
+                return row * 8 + col + 1;
+            }
+        }
+        int knight = piece(by, KNIGHT);
+        for (int target : KNIGHT_TARGETS[square]) {
+            if (board[target] == knight && (removed & 1L << target) == 0) {
+                return target;
+            }
+        }
+
+        int best = -1;
+        int bestValue = Integer.MAX_VALUE;
+        for (int direction = 0; direction < 8; direction++) {
+            for (int target : RAYS[direction][square]) {
+                int occupant = board[target];
+                if (occupant == 0 || (removed & 1L << target) != 0) {
+                    continue;
+                }
+                int type = type(occupant);
+                boolean slides = type == QUEEN || type == (direction < 4 ? ROOK : BISHOP);
+                if (color(occupant) == by && slides && SEE_VALUES[type] < bestValue) {
+                    best = target;
+                    bestValue = SEE_VALUES[type];
+                }
+                break;
+            }
+        }
+        if (best >= 0) {
+            return best;
+        }
+
+        int king = piece(by, KING);
+        for (int target : KING_TARGETS[square]) {
+            if (board[target] == king && (removed & 1L << target) == 0) {
+                return target;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the moves the side to move can actually make
+     */
+    public int[] legalMoves() {
+        int[] moves = new int[MAX_MOVES];
+        int count = 0;
+        int total = generate(moves);
+        for (int i = 0; i < total; i++) {
+            make(moves[i]);
+            if (!leftKingAttacked()) {
+                moves[count++] = moves[i];
+            }
+            unmake(moves[i]);
+        }
+        return Arrays.copyOf(moves, count);
+    }
+
+    // CONVERSION
+
+    /**
+     * @return the engine move for a {@link ChessMove}, or 0 if it isn't a legal move here
+     */
+    public int find(ChessMove chessMove) {
+        int wanted = Moves.of(chessMove);
+        for (int move : legalMoves()) {
+            if (move == wanted) {
+                return move;
+            }
+        }
+        return 0;
+    }
+}
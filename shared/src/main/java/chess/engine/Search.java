@@ -0,0 +1,400 @@
+package chess.engine;
+
+import chess.ChessGame;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Finds the best move in a position with an alpha-beta (negamax) search.
+ * <p>
+ * The search deepens one move at a time (iterative deepening) until it hits one of its
+ * {@link SearchLimits} or is {@link #stop() stopped}, and gives back the best move of the deepest
+ * iteration it finished. The best move so far is tried first in the next iteration. Below the
+ * first move at each node, moves are searched with a null window first to prove they're no
+ * better, and only searched again with the full window if they are (principal variation search).
+ * <p>
+ * Where the depth runs out, captures are played out until the position is quiet (quiescence
+ * search), so a piece halfway through a trade isn't counted as won or lost. The search looks
+ * further when in check, less far at moves late in the order that are unlikely to be any good
+ * (late move reductions), and not at all where even passing the turn would be good enough
+ * (null move pruning).
+ * <p>
+ * What each node found is kept in a {@link TranspositionTable}, which cuts off positions reached
+ * again and gives the move to try first. Searches can share one table. Each Search also has its
+ * own {@link PawnHashTable}, and its own {@link MoveOrdering} for the order it tries the other
+ * moves in (see {@link MovePicker}).
+ * <p>
+ * One Search can be used for many searches, but only one at a time; it keeps its move lists
+ * between searches so searching doesn't allocate.
+ */
+public class Search {
+    // score for mating right now; mate in n plies scores MATE - n
+    public static final int MATE = 30_000;
+    public static final int INFINITY = 32_000;
+    // how many nodes go by between looking at the clock
+    private static final int CHECK_EVERY = 1024;
+
+    // table size for searches that don't share one
+    private static final int DEFAULT_TABLE_MB = 1;
+    public static final int DEFAULT_PAWN_TABLE_KB = 256;
+
+    // a capture in quiescence search is skipped if winning the piece plus this much couldn't
+    // bring the score up to alpha (delta pruning)
+    private static final int DELTA_MARGIN = 200;
+    // [depth][move number] -> how many plies less to search a late quiet move
+    private static final int[][] REDUCTIONS = new int[64][64];
+
+    static {
+        for (int depth = 1; depth < 64; depth++) {
+            for (int moveNumber = 1; moveNumber < 64; moveNumber++) {
+                REDUCTIONS[depth][moveNumber] = (int) (0.5 + Math.log(depth) * Math.log(moveNumber) / 2.5);
+            }
+        }
+    }
+
+    private final TranspositionTable ownTable;
+    private final AtomicBoolean ownStop = new AtomicBoolean();
+    private final PawnHashTable pawnTable;
+    private final MoveOrdering ordering = new MoveOrdering();
+    private final MovePicker[] pickers = new MovePicker[Position.MAX_PLY];
+    // the move made at each ply of the line being searched, and the quiet moves tried at each node
+    private final int[] played = new int[Position.MAX_PLY];
+    private final int[][] triedQuiets = new int[Position.MAX_PLY][Position.MAX_MOVES];
+    // the table and stop flag of the search that's running, which may be shared with other threads
+    private TranspositionTable table;
+    private AtomicBoolean stop;
+    private Position position;
+    private long nodes;
+    private long maxNodes;
+    private long deadlineNanos;
+    private boolean mustFinish;
+    private int rootDepth;
+    private boolean aborted;
+
+    public Search() {
+        this(new TranspositionTable(DEFAULT_TABLE_MB));
+    }
+
+    public Search(TranspositionTable table) {
+        this(table, DEFAULT_PAWN_TABLE_KB);
+    }
+
+    /**
+     * @param pawnTableKb size of this search's own pawn structure cache
+     */
+    public Search(TranspositionTable table, int pawnTableKb) {
+        this.ownTable = table;
+        this.pawnTable = new PawnHashTable(pawnTableKb);
+        for (int ply = 0; ply < pickers.length; ply++) {
+            pickers[ply] = new MovePicker();
+        }
+    }
+
+    // a search with no table of its own, for ParallelSearch, which always gives run() the table to
+    // use. Only run() works on it
+    static Search withoutTable() {
+        return new Search(null, DEFAULT_PAWN_TABLE_KB);
+    }
+
+    public SearchResult search(ChessGame game, SearchLimits limits) {
+        return search(Position.from(game), limits);
+    }
+
+    /**
+     * Searches {@code position}, which is put back the way it was afterward
+     */
+    public SearchResult search(Position position, SearchLimits limits) {
+        ownStop.set(false);
+        ownTable.newSearch();
+        return run(position, limits, ownTable, ownStop, 1, false);
+    }
+
+    /**
+     * Runs one thread's part of a search
+     *
+     * @param firstDepth the depth of the first iteration
+     * @param helper     true if another thread's result is the one that counts, so this one can
+     *                   stop at any time rather than finish its first iteration
+     */
+    SearchResult run(Position position, SearchLimits limits, TranspositionTable table, AtomicBoolean stop,
+                     int firstDepth, boolean helper) {
+        long start = System.nanoTime();
+        this.position = position;
+        this.table = table;
+        this.stop = stop;
+        nodes = 0;
+        maxNodes = limits.nodes();
+        deadlineNanos = limits.millis() > 0 ? start + limits.millis() * 1_000_000 : Long.MAX_VALUE;
+        aborted = false;
+        mustFinish = !helper;
+        ordering.newSearch();
+
+        int[] rootMoves = position.legalMoves();
+        if (rootMoves.length == 0) {
+            return new SearchResult(null, position.inCheck() ? -MATE : 0, 0, 0, millisSince(start));
+        }
+
+        int bestScore = 0;
+        int completed = 0;
+        for (int depth = firstDepth; depth <= limits.depth(); depth++) {
+            int score = searchRoot(rootMoves, depth);
+            if (aborted) {
+                break;
+            }
+            bestScore = score;
+            completed = depth;
+            mustFinish = false;
+            // a mate that's been found won't get any shorter
+            if (Math.abs(score) >= MATE - depth) {
+                break;
+            }
+        }
+        return new SearchResult(Moves.toChessMove(rootMoves[0]), bestScore, completed, nodes, millisSince(start));
+    }
+
+    public TranspositionTable table() {
+        return ownTable;
+    }
+
+    /**
+     * Makes a running search wrap up as soon as it can. Can be called from any thread.
+     */
+    public void stop() {
+        ownStop.set(true);
+    }
+
+    // searches every root move, then puts the best one first for the next iteration
+    private int searchRoot(int[] moves, int depth) {
+        rootDepth = depth;
+        int alpha = -INFINITY;
+        int bestIndex = 0;
+        for (int i = 0; i < moves.length; i++) {
+            position.make(moves[i]);
+            played[0] = moves[i];
+            int score;
+            if (i == 0) {
+                score = -negamax(depth - 1, 1, -INFINITY, -alpha);
+            } else {
+                score = -negamax(depth - 1, 1, -alpha - 1, -alpha);
+                if (score > alpha && !aborted) {
+                    score = -negamax(depth - 1, 1, -INFINITY, -alpha);
+                }
+            }
+            position.unmake(moves[i]);
+            if (aborted) {
+                break;
+            }
+            if (score > alpha) {
+                alpha = score;
+                bestIndex = i;
+            }
+        }
+        int best = moves[bestIndex];
+        System.arraycopy(moves, 0, moves, 1, bestIndex);
+        moves[0] = best;
+        if (!aborted) {
+            table.store(position.key(), best, TranspositionTable.toTable(alpha, 0), depth, TranspositionTable.EXACT);
+        }
+        return alpha;
+    }
+
+    private int negamax(int depth, int ply, int alpha, int beta) {
+        nodes++;
+        if (outOfBudget()) {
+            return 0;
+        }
+        boolean inCheck = position.inCheck();
+        // a check could be hiding a threat just past the horizon, so look one move further (but
+        // not forever, in case the checks go on and on)
+        if (inCheck && ply < 2 * rootDepth) {
+            depth++;
+        }
+        if (depth <= 0) {
+            return quiescence(ply, alpha, beta);
+        }
+        if (ply >= Position.MAX_PLY - 1) {
+            return Evaluator.evaluate(position, pawnTable);
+        }
+
+        long entry = table.probe(position.key());
+        int hashMove = TranspositionTable.move(entry);
+        // a null window node can take the table's word for it, if it searched at least as deep
+        if (entry != 0 && beta - alpha == 1 && TranspositionTable.depth(entry) >= depth) {
+            int score = TranspositionTable.fromTable(TranspositionTable.score(entry), ply);
+            int bound = TranspositionTable.bound(entry);
+            if (bound == TranspositionTable.EXACT
+                    || bound == TranspositionTable.LOWER && score >= beta
+                    || bound == TranspositionTable.UPPER && score <= alpha) {
+                return score;
+            }
+        }
+
+        int previousMove = played[ply - 1];
+        // if passing the turn is still good enough, a real move will be too: search what happens
+        // if we pass, with less depth. Not when the side has only pawns left, where passing can
+        // be better than any move.
+        if (!inCheck && beta - alpha == 1 && depth >= 3 && previousMove != Moves.NONE
+                && position.hasPieces(position.sideToMove())
+                && Evaluator.evaluate(position, pawnTable) >= beta) {
+            int reduction = depth >= 6 ? 3 : 2;
+            position.makeNull();
+            played[ply] = Moves.NONE;
+            int score = -negamax(depth - 1 - reduction, ply + 1, -beta, -beta + 1);
+            position.unmakeNull();
+            if (aborted) {
+                return 0;
+            }
+            if (score >= beta) {
+                // a mate found after passing isn't a real one
+                return score >= MATE - Position.MAX_PLY ? beta : score;
+            }
+        }
+
+        MovePicker picker = pickers[ply];
+        int previousTo = Moves.to(previousMove);
+        int previousPiece = previousMove == Moves.NONE ? 0 : position.pieceAt(previousTo);
+        picker.reset(position, ordering, hashMove, ply, previousPiece, previousTo);
+        int[] quiets = triedQuiets[ply];
+        int quietCount = 0;
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = Moves.NONE;
+        int legal = 0;
+        for (int move = picker.next(); move != Moves.NONE; move = picker.next()) {
+            boolean quiet = !position.isNoisy(move);
+            position.make(move);
+            if (position.leftKingAttacked()) {
+                position.unmake(move);
+                continue;
+            }
+            played[ply] = move;
+            legal++;
+            int score;
+            if (legal == 1) {
+                score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+            } else {
+                int reduction = 0;
+                if (depth >= 3 && legal > 3 && quiet && !inCheck && !position.inCheck()) {
+                    reduction = Math.min(REDUCTIONS[Math.min(depth, 63)][Math.min(legal, 63)], depth - 2);
+                }
+                score = -negamax(depth - 1 - reduction, ply + 1, -alpha - 1, -alpha);
+                // a reduced move that looks better gets its full depth
+                if (score > alpha && reduction > 0 && !aborted) {
+                    score = -negamax(depth - 1, ply + 1, -alpha - 1, -alpha);
+                }
+                if (score > alpha && score < beta && !aborted) {
+                    score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+                }
+            }
+            position.unmake(move);
+            if (aborted) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                if (score > alpha) {
+                    alpha = score;
+                    bestMove = move;
+                    if (alpha >= beta) {
+                        if (quiet) {
+                            ordering.cutoff(position.sideToMove(), move, depth, ply, quiets, quietCount,
+                                    previousPiece, previousTo);
+                        }
+                        break;
+                    }
+                }
+            }
+            if (quiet) {
+                quiets[quietCount++] = move;
+            }
+        }
+        if (legal == 0) {
+            return inCheck ? -MATE + ply : 0;
+        }
+
+        int bound = best >= beta ? TranspositionTable.LOWER
+                : best > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        table.store(position.key(), bestMove, TranspositionTable.toTable(best, ply), depth, bound);
+        return best;
+    }
+
+    // plays out captures and promotions until there are none worth making; the side to move can
+    // always stop ("stand pat") and take the static score instead, unless it's in check
+    private int quiescence(int ply, int alpha, int beta) {
+        nodes++;
+        if (outOfBudget()) {
+            return 0;
+        }
+        if (ply >= Position.MAX_PLY - 1) {
+            return Evaluator.evaluate(position, pawnTable);
+        }
+        boolean inCheck = position.inCheck();
+        int standPat = -INFINITY;
+        MovePicker picker = pickers[ply];
+        if (inCheck) {
+            // every move, since any of them might be the only way out
+            picker.reset(position, ordering, Moves.NONE, ply, 0, 0);
+        } else {
+            standPat = Evaluator.evaluate(position, pawnTable);
+            if (standPat >= beta) {
+                return standPat;
+            }
+            alpha = Math.max(alpha, standPat);
+            // the picker skips captures that lose material
+            picker.resetCaptures(position);
+        }
+
+        int best = standPat;
+        int legal = 0;
+        for (int move = picker.next(); move != Moves.NONE; move = picker.next()) {
+            if (!inCheck && Moves.promotion(move) == 0
+                    && standPat + Evaluator.PIECE_VALUES[Position.type(position.pieceAt(Moves.to(move)))]
+                    + DELTA_MARGIN <= alpha) {
+                continue;
+            }
+            position.make(move);
+            if (position.leftKingAttacked()) {
+                position.unmake(move);
+                continue;
+            }
+            legal++;
+            int score = -quiescence(ply + 1, -beta, -alpha);
+            position.unmake(move);
+            if (aborted) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        if (inCheck && legal == 0) {
+            return -MATE + ply;
+        }
+        return best;
+    }
+
+    private boolean outOfBudget() {
+        if (aborted) {
+            return true;
+        }
+        if (mustFinish) {
+            return false;
+        }
+        if (maxNodes > 0 && nodes >= maxNodes) {
+            aborted = true;
+        } else if (nodes % CHECK_EVERY == 0) {
+            aborted = stop.get() || System.nanoTime() > deadlineNanos || Thread.currentThread().isInterrupted();
+        }
+        return aborted;
+    }
+
+    private static long millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
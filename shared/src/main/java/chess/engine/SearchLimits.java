@@ -0,0 +1,31 @@
+package chess.engine;
+
+/**
+ * When a search should stop. The search stops at whichever limit it reaches first, and always
+ * finishes at least a one move deep search so it has a move to give back.
+ *
+ * @param depth  deepest iteration to search, in moves
+ * @param millis longest to search for; 0 means no time limit
+ * @param nodes  most positions to visit; 0 means no node limit
+ */
+public record SearchLimits(int depth, long millis, long nodes) {
+    public static final int MAX_DEPTH = 64;
+
+    public SearchLimits {
+        depth = Math.max(1, Math.min(depth, MAX_DEPTH));
+        millis = Math.max(0, millis);
+        nodes = Math.max(0, nodes);
+    }
+
+    public static SearchLimits depth(int depth) {
+        return new SearchLimits(depth, 0, 0);
+    }
+
+    public static SearchLimits millis(long millis) {
+        return new SearchLimits(MAX_DEPTH, millis, 0);
+    }
+
+    public static SearchLimits nodes(long nodes) {
+        return new SearchLimits(MAX_DEPTH, 0, nodes);
+    }
+}
@@ -0,0 +1,33 @@
+package chess.engine;
+
+import chess.ChessMove;
+
+/**
+ * What a search found
+ *
+ * @param move   the best move, or null if the side to move has no moves
+ * @param score  how good the position is for the side to move, in centipawns; see {@link #mateIn()}
+ * @param depth  deepest iteration that finished
+ * @param nodes  positions visited
+ * @param millis how long the search took
+ */
+public record SearchResult(ChessMove move, int score, int depth, long nodes, long millis) {
+    // scores this far from Search.MATE are mates, counted in plies
+    private static final int MATE_RANGE = Position.MAX_PLY;
+
+    public boolean isMate() {
+        return Math.abs(score) >= Search.MATE - MATE_RANGE;
+    }
+
+    /**
+     * @return moves (by the side to move) until mate: positive if the side to move mates,
+     * negative if it gets mated, 0 if the search didn't find a mate
+     */
+    public int mateIn() {
+        if (!isMate()) {
+            return 0;
+        }
+        int plies = Search.MATE - Math.abs(score);
+        return score > 0 ? (plies + 1) / 2 : -(plies / 2);
+    }
+}
@@ -0,0 +1,187 @@
+package chess.engine;
+
+import java.util.Arrays;
+
+/**
+ * Remembers what searches found out about positions they've seen, so a position reached again
+ * (by a different order of moves, a later iteration or another search thread) isn't searched
+ * from scratch.
+ * <p>
+ * Everything lives in one {@code long[]}, so the table takes the memory it's given and no more,
+ * and the garbage collector doesn't have to look inside it. Entries are two longs, the key xor-ed
+ * with the data and the data itself, and are grouped in buckets of four (64 bytes, one cache line).
+ * <p>
+ * Many search threads can share one table without locks. Two threads writing the same entry at
+ * once can leave it with halves from each; such an entry's key half no longer xors back to the
+ * position's key, so a probe treats it as a miss rather than trusting it.
+ * <p>
+ * When a bucket is full, a new entry replaces the one that's worth the least: the shallowest,
+ * counting entries left by earlier searches as shallower the older they are.
+ */
+public final class TranspositionTable {
+    public static final int EXACT = 1;
+    // the score is at most this (every move failed low)
+    public static final int UPPER = 2;
+    // the score is at least this (a move failed high)
+    public static final int LOWER = 3;
+
+    private static final int BUCKET_ENTRIES = 4;
+    private static final int LONGS_PER_BUCKET = BUCKET_ENTRIES * 2;
+
+    // data layout: bits 0-14 move, 15-30 score + 32768, 31-38 depth, 39-40 bound, 41-46 age
+    private static final int SCORE_SHIFT = 15;
+    private static final int DEPTH_SHIFT = 31;
+    private static final int BOUND_SHIFT = 39;
+    private static final int AGE_SHIFT = 41;
+    private static final int AGE_MASK = 0x3F;
+
+    private final long[] table;
+    private final long bucketMask;
+    private volatile int age;
+
+    /**
+     * @param megabytes most memory to use; rounded down to a power of two buckets
+     */
+    public TranspositionTable(int megabytes) {
+        long buckets = Math.max(1, ((long) Math.max(1, megabytes) << 20) / (LONGS_PER_BUCKET * Long.BYTES));
+        buckets = Long.highestOneBit(Math.min(buckets, Integer.MAX_VALUE / LONGS_PER_BUCKET));
+        table = new long[(int) (buckets * LONGS_PER_BUCKET)];
+        bucketMask = buckets - 1;
+    }
+
+    /**
+     * Starts a new search: entries already in the table get older, so they're replaced first
+     */
+    public void newSearch() {
+        age = (age + 1) & AGE_MASK;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0);
+    }
+
+    public long sizeBytes() {
+        return (long) table.length * Long.BYTES;
+    }
+
+    /**
+     * @return the entry's data for the position, or 0 if the table doesn't have it; read it with
+     * {@link #move}, {@link #score}, {@link #depth} and {@link #bound}
+     */
+    public long probe(long key) {
+        int bucket = bucketOf(key);
+        for (int i = bucket; i < bucket + LONGS_PER_BUCKET; i += 2) {
+            long data = table[i + 1];
+            if ((table[i] ^ data) == key && data != 0) {
+                return data;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Records what a search of a position found
+     *
+     * @param score the score, with mates counted from this position (see {@link #toTable})
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        int bucket = bucketOf(key);
+        int currentAge = age;
+        int victim = bucket;
+        int victimWorth = Integer.MAX_VALUE;
+        for (int i = bucket; i < bucket + LONGS_PER_BUCKET; i += 2) {
+            long data = table[i + 1];
+            if ((table[i] ^ data) == key || data == 0) {
+                // the same position again: keep the move we knew if this search didn't find one
+                if (move == Moves.NONE && data != 0) {
+                    move = move(data);
+                }
+                victim = i;
+                break;
+            }
+            int staleness = (currentAge - age(data)) & AGE_MASK;
+            int worth = depth(data) - 8 * staleness;
+            if (worth < victimWorth) {
+                victimWorth = worth;
+                victim = i;
+            }
+        }
+
+        long data = move
+                | (long) (score + 32768) << SCORE_SHIFT
+                | (long) Math.max(0, Math.min(depth, 255)) << DEPTH_SHIFT
+                | (long) bound << BOUND_SHIFT
+                | (long) currentAge << AGE_SHIFT;
+        table[victim] = key ^ data;
+        table[victim + 1] = data;
+    }
+
+    /**
+     * @return roughly how full the table is with entries from this search, per thousand
+     */
+    public int permille() {
+        int currentAge = age;
+        int sampled = Math.min(1000, table.length / 2);
+        int used = 0;
+        for (int i = 0; i < sampled; i++) {
+            long data = table[i * 2 + 1];
+            if (data != 0 && age(data) == currentAge) {
+                used++;
+            }
+        }
+        return used * 1000 / sampled;
+    }
+
+    private int bucketOf(long key) {
+        // the low bits of the key pick the bucket
+        return (int) (key & bucketMask) * LONGS_PER_BUCKET;
+    }
+
+    // READING ENTRIES
+
+    public static int move(long data) {
+        return (int) (data & 0x7FFF);
+    }
+
+    public static int score(long data) {
+        return (int) (data >>> SCORE_SHIFT & 0xFFFF) - 32768;
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT & 0xFF);
+    }
+
+    public static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT & 0x3);
+    }
+
+    private static int age(long data) {
+        return (int) (data >>> AGE_SHIFT & AGE_MASK);
+    }
+
+    // MATE SCORES
+
+    /**
+     * Mate scores count plies from the root, but the same position can be reached at any ply, so
+     * the table counts them from the position itself instead
+     */
+    public static int toTable(int score, int ply) {
+        if (score >= Search.MATE - Position.MAX_PLY) {
+            return score + ply;
+        }
+        if (score <= -Search.MATE + Position.MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    public static int fromTable(int score, int ply) {
+        if (score >= Search.MATE - Position.MAX_PLY) {
+            return score - ply;
+        }
+        if (score <= -Search.MATE + Position.MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+}
@@ -0,0 +1,25 @@
+package websocket.commands;
+
+/**
+ * An ANALYZE command: asks the engine for the best move in the game's current position. The
+ * answer comes back to just this client as an ANALYSIS message. Limits left out use the server's
+ * defaults, and limits past the server's maximums are cut down to them.
+ */
+public class AnalyzeCommand extends UserGameCommand {
+    private final Integer depth;
+    private final Long millis;
+
+    public AnalyzeCommand(String authToken, Integer gameID, Integer depth, Long millis) {
+        super(CommandType.ANALYZE, authToken, gameID);
+        this.depth = depth;
+        this.millis = millis;
+    }
+
+    public Integer getDepth() {
+        return depth;
+    }
+
+    public Long getMillis() {
+        return millis;
+    }
+}
@@ -0,0 +1,229 @@
+package websocket.commands;
+
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary form of {@link UserGameCommand}, for clients that send a lot of commands.
+ * Sent as binary websocket frames; JSON text frames keep working alongside it.
+ * <pre>
+ *   byte     command type: 0 CONNECT, 1 MAKE_MOVE, 2 LEAVE, 3 RESIGN, 4 RESYNC, 5 ANALYZE
+ *   varint   gameID
+ *   varint   token handle, or 0 followed by varint length + UTF-8 auth token
+ *   short    the move, MAKE_MOVE only: bits 0-5 start square, 6-11 end square, 12-14 promotion
+ *   varint   last event sequence seen, CONNECT only and only when resuming
+ *   varint   depth, then varint millis, ANALYZE only; 0 or left off means the server's default
+ * </pre>
+ * Squares are numbered 0 (a1) to 63 (h8). The first time a connection sends a token it's sent in
+ * full and both ends give it the next handle (1, 2, ...), so after that only the handle is sent.
+ * Each end keeps its own {@link Encoder} or {@link Decoder} per connection.
+ * <p>
+ * A client asks for this format when it opens the websocket, with {@code ?binary=}{@link #VERSION};
+ * the server only reads binary frames from connections that did. A varint bigger than the field
+ * it's read into, or that would make it negative, is refused.
+ */
+public final class BinaryCommandCodec {
+    // most tokens one connection can give handles to; tokens past this are always sent in full
+    public static final int MAX_HANDLES = 64;
+    // what a client puts in ?binary= to ask for this version of the format
+    public static final int VERSION = 1;
+
+    private static final ChessPiece.PieceType[] PROMOTIONS = {
+            null,
+            ChessPiece.PieceType.QUEEN,
+            ChessPiece.PieceType.ROOK,
+            ChessPiece.PieceType.BISHOP,
+            ChessPiece.PieceType.KNIGHT
+    };
+
+    private BinaryCommandCodec() {
+    }
+
+    /**
+     * Client side: turns commands into frames, remembering which tokens have handles
+     */
+    public static class Encoder {
+        private final Map<String, Integer> handles = new HashMap<>();
+
+        public byte[] encode(UserGameCommand command) {
+            var out = new ByteArrayOutputStream(16);
+            out.write(code(command.getCommandType()));
+            writeVarint(out, command.getGameID());
+
+            Integer handle = handles.get(command.getAuthToken());
+            if (handle != null) {
+                writeVarint(out, handle);
+            } else {
+                byte[] token = command.getAuthToken().getBytes(StandardCharsets.UTF_8);
+                writeVarint(out, 0);
+                writeVarint(out, token.length);
+                out.writeBytes(token);
+                if (handles.size() < MAX_HANDLES) {
+                    handles.put(command.getAuthToken(), handles.size() + 1);
+                }
+            }
+
+            if (command instanceof MakeMoveCommand makeMove) {
+                int move = encodeMove(makeMove.getMove());
+                out.write(move >>> 8);
+                out.write(move);
+            }
+            if (command instanceof ConnectCommand connect && connect.getLastSequence() != null) {
+                writeVarint(out, connect.getLastSequence());
+            }
+            if (command instanceof AnalyzeCommand analyze) {
+                writeVarint(out, analyze.getDepth() == null ? 0 : analyze.getDepth());
+                writeVarint(out, analyze.getMillis() == null ? 0 : analyze.getMillis());
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Server side: reads frames back into commands, keeping the same handles as the client's Encoder
+     */
+    public static class Decoder {
+        private final List<String> tokens = new ArrayList<>();
+
+        /**
+         * @throws IllegalArgumentException if the frame is malformed or uses a handle it was never given
+         */
+        public UserGameCommand decode(ByteBuffer frame) {
+            try {
+                UserGameCommand.CommandType type = type(frame.get() & 0xFF);
+                int gameID = readVarint(frame);
+                String token = readToken(frame);
+
+                if (type == UserGameCommand.CommandType.MAKE_MOVE) {
+                    return new MakeMoveCommand(token, gameID, decodeMove(frame.getShort() & 0xFFFF));
+                }
+                if (type == UserGameCommand.CommandType.CONNECT) {
+                    return new ConnectCommand(token, gameID, frame.hasRemaining() ? readVarint(frame, 63) : null);
+                }
+                if (type == UserGameCommand.CommandType.ANALYZE) {
+                    int depth = frame.hasRemaining() ? readVarint(frame) : 0;
+                    long millis = frame.hasRemaining() ? readVarint(frame, 63) : 0;
+                    return new AnalyzeCommand(token, gameID, depth == 0 ? null : depth, millis == 0 ? null : millis);
+                }
+                return new UserGameCommand(type, token, gameID);
+            } catch (BufferUnderflowException ex) {
+                throw new IllegalArgumentException("frame is too short");
+            }
+        }
+
+        private String readToken(ByteBuffer frame) {
+            int handle = readVarint(frame);
+            if (handle != 0) {
+                if (handle > tokens.size()) {
+                    throw new IllegalArgumentException("unknown token handle " + handle);
+                }
+                return tokens.get(handle - 1);
+            }
+            int length = readVarint(frame);
+            if (length > frame.remaining()) {
+                throw new IllegalArgumentException("frame is too short");
+            }
+            byte[] bytes = new byte[length];
+            frame.get(bytes);
+            String token = new String(bytes, StandardCharsets.UTF_8);
+            if (tokens.size() < MAX_HANDLES) {
+                tokens.add(token);
+            }
+            return token;
+        }
+    }
+
+    // COMMAND TYPES (fixed codes, so adding or reordering CommandType doesn't change the format)
+
+    private static int code(UserGameCommand.CommandType type) {
+        return switch (type) {
+            case CONNECT -> 0;
+            case MAKE_MOVE -> 1;
+            case LEAVE -> 2;
+            case RESIGN -> 3;
+            case RESYNC -> 4;
+            case ANALYZE -> 5;
+        };
+    }
+
+    private static UserGameCommand.CommandType type(int code) {
+        return switch (code) {
+            case 0 -> UserGameCommand.CommandType.CONNECT;
+            case 1 -> UserGameCommand.CommandType.MAKE_MOVE;
+            case 2 -> UserGameCommand.CommandType.LEAVE;
+            case 3 -> UserGameCommand.CommandType.RESIGN;
+            case 4 -> UserGameCommand.CommandType.RESYNC;
+            case 5 -> UserGameCommand.CommandType.ANALYZE;
+            default -> throw new IllegalArgumentException("unknown command type " + code);
+        };
+    }
+
+    // MOVES
+
+    static int encodeMove(ChessMove move) {
+        int promotion = 0;
+        for (int i = 1; i < PROMOTIONS.length; i++) {
+            if (PROMOTIONS[i] == move.getPromotionPiece()) {
+                promotion = i;
+            }
+        }
+        return square(move.getStartPosition()) | square(move.getEndPosition()) << 6 | promotion << 12;
+    }
+
+    static ChessMove decodeMove(int bits) {
+        int promotion = bits >>> 12 & 0x7;
+        if (promotion >= PROMOTIONS.length) {
+            throw new IllegalArgumentException("unknown promotion piece " + promotion);
+        }
+        return new ChessMove(position(bits & 0x3F), position(bits >>> 6 & 0x3F), PROMOTIONS[promotion]);
+    }
+
+    private static int square(ChessPosition position) {
+        return (position.getRow() - 1) * 8 + position.getColumn() - 1;
+    }
+
+    private static ChessPosition position(int square) {
+        return new ChessPosition(square / 8 + 1, square % 8 + 1);
+    }
+
+    // VARINTS (7 bits per byte, low bits first, high bit set on every byte but the last)
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        return (int) readVarint(in, 31);
+    }
+
+    // reads a varint that has to fit in {@code bits} bits: 31 for an int and 63 for a long, so
+    // neither can come out negative
+    private static long readVarint(ByteBuffer in, int bits) {
+        long value = 0;
+        for (int shift = 0; shift < bits; shift += 7) {
+            int b = in.get() & 0xFF;
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value >>> bits != 0) {
+                    throw new IllegalArgumentException("varint is too big");
+                }
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("varint is too long");
+    }
+}
@@ -0,0 +1,19 @@
+package websocket.commands;
+
+/**
+ * A CONNECT command. A client that was already watching the game and got disconnected can send
+ * the sequence number of the last event it saw, and will be sent just the events it missed
+ * instead of the whole game when the server still has them.
+ */
+public class ConnectCommand extends UserGameCommand {
+    private final Long lastSequence;
+
+    public ConnectCommand(String authToken, Integer gameID, Long lastSequence) {
+        super(CommandType.CONNECT, authToken, gameID);
+        this.lastSequence = lastSequence;
+    }
+
+    public Long getLastSequence() {
+        return lastSequence;
+    }
+}
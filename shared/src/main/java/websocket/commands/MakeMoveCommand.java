@@ -0,0 +1,19 @@
+package websocket.commands;
+
+import chess.ChessMove;
+
+/**
+ * A MAKE_MOVE command, which also carries the move being made
+ */
+public class MakeMoveCommand extends UserGameCommand {
+    private final ChessMove move;
+
+    public MakeMoveCommand(String authToken, Integer gameID, ChessMove move) {
+        super(CommandType.MAKE_MOVE, authToken, gameID);
+        this.move = move;
+    }
+
+    public ChessMove getMove() {
+        return move;
+    }
+}
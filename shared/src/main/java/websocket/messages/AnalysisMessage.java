@@ -0,0 +1,59 @@
+package websocket.messages;
+
+import chess.ChessMove;
+
+/**
+ * The engine's answer to an ANALYZE command, sent to just the client that asked. {@code ply}
+ * says which position was analyzed, since the game may have moved on by the time it arrives.
+ */
+public class AnalysisMessage extends ServerMessage {
+    private final int gameID;
+    private final int ply;
+    // null if the side to move has no moves
+    private final ChessMove move;
+    // for the side to move, in centipawns
+    private final int score;
+    // moves until mate, negative if the side to move gets mated; 0 if no mate was found
+    private final int mateIn;
+    private final int depth;
+    private final long nodes;
+
+    public AnalysisMessage(int gameID, int ply, ChessMove move, int score, int mateIn, int depth, long nodes) {
+        super(ServerMessageType.ANALYSIS);
+        this.gameID = gameID;
+        this.ply = ply;
+        this.move = move;
+        this.score = score;
+        this.mateIn = mateIn;
+        this.depth = depth;
+        this.nodes = nodes;
+    }
+
+    public int getGameID() {
+        return gameID;
+    }
+
+    public int getPly() {
+        return ply;
+    }
+
+    public ChessMove getMove() {
+        return move;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getMateIn() {
+        return mateIn;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+}
@@ -1,13 +1,14 @@
 package websocket.messages;
 
 public class ErrorMessage extends ServerMessage {
-    private String ErrorMessage;
+    private final String errorMessage;
 
-    public ErrorMessage(String ErrorMessage) {
+    public ErrorMessage(String errorMessage) {
         super(ServerMessageType.ERROR);
+        this.errorMessage = errorMessage;
     }
 
     public String getErrorMessage() {
-        return ErrorMessage;
+        return errorMessage;
     }
 }
@@ -0,0 +1,112 @@
+package websocket.messages;
+
+import chess.ChessClock;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.InvalidMoveException;
+import chess.Zobrist;
+
+/**
+ * Sent instead of a full LOAD_GAME after each move to clients that asked for move updates.
+ * Carries only the move and what the position looks like after it; the client applies the
+ * move to its own board and can check it stayed in step with {@code ply} and {@code hash}.
+ */
+public class MoveMessage extends ServerMessage {
+    private final int gameID;
+    private final ChessMove move;
+    private final int ply;
+    private final long hash;
+    private final ChessGame.TeamColor turn;
+    private final boolean check;
+    private final boolean checkmate;
+    private final boolean stalemate;
+    // time each side has left after the move, timed games only
+    private Long whiteMillis;
+    private Long blackMillis;
+
+    public MoveMessage(int gameID, ChessMove move, int ply, long hash, ChessGame.TeamColor turn,
+                       boolean check, boolean checkmate, boolean stalemate) {
+        super(ServerMessageType.MOVE);
+        this.gameID = gameID;
+        this.move = move;
+        this.ply = ply;
+        this.hash = hash;
+        this.turn = turn;
+        this.check = check;
+        this.checkmate = checkmate;
+        this.stalemate = stalemate;
+    }
+
+    public int getGameID() {
+        return gameID;
+    }
+
+    public ChessMove getMove() {
+        return move;
+    }
+
+    public int getPly() {
+        return ply;
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    public ChessGame.TeamColor getTurn() {
+        return turn;
+    }
+
+    public boolean isCheck() {
+        return check;
+    }
+
+    public boolean isCheckmate() {
+        return checkmate;
+    }
+
+    public boolean isStalemate() {
+        return stalemate;
+    }
+
+    public Long getWhiteMillis() {
+        return whiteMillis;
+    }
+
+    public Long getBlackMillis() {
+        return blackMillis;
+    }
+
+    public void setClocks(long whiteMillis, long blackMillis) {
+        this.whiteMillis = whiteMillis;
+        this.blackMillis = blackMillis;
+    }
+
+    /**
+     * Plays the move on a copy of the client's game
+     *
+     * @return the game after the move, or null if {@code game} isn't the position the move was made
+     * from (a MOVE was missed or came twice), in which case the client should ask for a RESYNC
+     */
+    public ChessGame applyTo(ChessGame game) {
+        if (game.getPly() + 1 != ply) {
+            return null;
+        }
+        ChessGame next = new ChessGame(game);
+        // the server's clock is the one that counts, so ours mustn't refuse the move
+        ChessClock clock = next.getClock();
+        next.setClock(null);
+        try {
+            next.makeMove(move);
+        } catch (InvalidMoveException ex) {
+            return null;
+        } finally {
+            next.setClock(clock);
+        }
+        if (Zobrist.hash(next) != hash) {
+            return null;
+        }
+        next.setGameOver(checkmate || stalemate);
+        return next;
+    }
+}
@@ -11,10 +11,15 @@ import java.util.Objects;
 public class ServerMessage {
     ServerMessageType serverMessageType;
 
+    // where this message falls in its game's stream of events; null for replies to one client
+    private Long sequence;
+
     public enum ServerMessageType {
         LOAD_GAME,
         ERROR,
-        NOTIFICATION
+        NOTIFICATION,
+        MOVE,
+        ANALYSIS
     }
 
     public ServerMessage(ServerMessageType type) {
@@ -25,6 +30,14 @@ public class ServerMessage {
         return this.serverMessageType;
     }
 
+    public Long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(Long sequence) {
+        this.sequence = sequence;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
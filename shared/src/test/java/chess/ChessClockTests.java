@@ -0,0 +1,75 @@
+package chess;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChessClockTests {
+    private static final ChessGame.TeamColor WHITE = ChessGame.TeamColor.WHITE;
+    private static final ChessGame.TeamColor BLACK = ChessGame.TeamColor.BLACK;
+    // times are milliseconds since the epoch; count from some real moment
+    private static final long T = 1_700_000_000_000L;
+
+    private static ChessMove move(String from, String to) {
+        return new ChessMove(square(from), square(to), null);
+    }
+
+    private static ChessPosition square(String name) {
+        return new ChessPosition(name.charAt(1) - '0', name.charAt(0) - 'a' + 1);
+    }
+
+    @Test
+    void fischerAddsIncrementEveryMove() throws InvalidMoveException {
+        var game = new ChessGame();
+        game.setClock(new ChessClock(ChessClock.Mode.FISCHER, 60_000, 2_000));
+
+        game.makeMove(move("e2", "e4"), T + 1_000);
+        // white's first move is free, then black's clock runs
+        assertEquals(60_000, game.getClock().storedMillis(WHITE));
+        assertEquals(55_000, game.getClock().remainingMillis(BLACK, BLACK, T + 6_000));
+
+        game.makeMove(move("e7", "e5"), T + 6_000);
+        assertEquals(57_000, game.getClock().storedMillis(BLACK));
+        assertEquals(T + 6_000 + 60_000, game.getClock().flagDeadline(WHITE));
+    }
+
+    @Test
+    void bronsteinGivesBackAtMostTheDelay() throws InvalidMoveException {
+        var game = new ChessGame();
+        game.setClock(new ChessClock(ChessClock.Mode.BRONSTEIN, 60_000, 2_000));
+
+        game.makeMove(move("e2", "e4"), T);
+        game.makeMove(move("e7", "e5"), T + 1_500);   // quick move: all 1.5s given back
+        game.makeMove(move("d2", "d4"), T + 11_500);  // slow move: only 2s given back
+
+        assertEquals(60_000, game.getClock().storedMillis(BLACK));
+        assertEquals(52_000, game.getClock().storedMillis(WHITE));
+    }
+
+    @Test
+    void cantMoveAfterFlagFalls() throws InvalidMoveException {
+        var game = new ChessGame();
+        game.setClock(new ChessClock(ChessClock.Mode.FISCHER, 10_000, 0));
+        game.makeMove(move("e2", "e4"), T);
+
+        assertFalse(game.getClock().isFlagged(BLACK, T + 9_999));
+        assertTrue(game.getClock().isFlagged(BLACK, T + 10_000));
+        assertThrows(InvalidMoveException.class, () -> game.makeMove(move("e7", "e5"), T + 10_001));
+        assertEquals(BLACK, game.getTeamTurn());
+    }
+
+    @Test
+    void stopFreezesTheClock() throws InvalidMoveException {
+        var game = new ChessGame();
+        game.setClock(new ChessClock(ChessClock.Mode.FISCHER, 10_000, 0));
+        game.makeMove(move("e2", "e4"), T);
+        game.getClock().stop(BLACK, T + 4_000);
+
+        assertFalse(game.getClock().isRunning());
+        assertEquals(6_000, game.getClock().remainingMillis(BLACK, BLACK, T + 100_000));
+
+        var copy = new ChessGame(game);
+        assertEquals(6_000, copy.getClock().storedMillis(BLACK));
+        assertNotSame(game.getClock(), copy.getClock());
+    }
+}
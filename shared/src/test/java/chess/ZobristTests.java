@@ -0,0 +1,48 @@
+package chess;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ZobristTests {
+    private static ChessMove move(String from, String to) {
+        return new ChessMove(square(from), square(to), null);
+    }
+
+    private static ChessPosition square(String name) {
+        return new ChessPosition(name.charAt(1) - '0', name.charAt(0) - 'a' + 1);
+    }
+
+    private static ChessGame play(String... moves) throws InvalidMoveException {
+        var game = new ChessGame();
+        for (int i = 0; i < moves.length; i += 2) {
+            game.makeMove(move(moves[i], moves[i + 1]));
+        }
+        return game;
+    }
+
+    @Test
+    void sameGameSameHash() throws InvalidMoveException {
+        // a fixed seed, so this is the same on every run, and a copy hashes the same as the original
+        assertEquals(Zobrist.hash(new ChessGame()), Zobrist.hash(new ChessGame()));
+        ChessGame game = play("e2", "e4", "e7", "e5");
+        assertEquals(Zobrist.hash(game), Zobrist.hash(new ChessGame(game)));
+    }
+
+    @Test
+    void moveOrderDoesNotMatter() throws InvalidMoveException {
+        ChessGame kingsPawnFirst = play("e2", "e4", "g8", "f6", "g1", "f3");
+        ChessGame knightFirst = play("g1", "f3", "g8", "f6", "e2", "e4");
+        assertEquals(kingsPawnFirst.getBoard(), knightFirst.getBoard());
+        assertEquals(Zobrist.hash(kingsPawnFirst), Zobrist.hash(knightFirst));
+    }
+
+    @Test
+    void sideToMoveChangesHash() throws InvalidMoveException {
+        ChessGame game = play("e2", "e4");
+        var whiteToMove = new ChessGame(game);
+        whiteToMove.setTeamTurn(ChessGame.TeamColor.WHITE);
+        assertEquals(Zobrist.hash(game) ^ Zobrist.blackToMoveKey(), Zobrist.hash(whiteToMove));
+        assertNotEquals(Zobrist.hash(new ChessGame()), Zobrist.hash(game));
+    }
+}
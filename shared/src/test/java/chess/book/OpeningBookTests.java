@@ -0,0 +1,121 @@
+package chess.book;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.Zobrist;
+import chess.engine.Moves;
+import chess.engine.Position;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OpeningBookTests {
+    private static final String PGN = """
+            [Event "One"]
+            [Result "1-0"]
+
+            1. e4 {best by test} e5 2. Nf3 (2. Bc4 Nf6) Nc6 3. Bb5 a6 4. Ba4 Nf6 5. O-O Be7 1-0
+
+            [Event "Two"]
+            [Result "0-1"]
+
+            1.e4 c5 2.Nf3 $1 d6; a comment
+            3.d4 cxd4 0-1
+
+            [Event "Three"]
+            [Result "1/2-1/2"]
+
+            1. d4 d5 2. c4 e6 1/2-1/2
+
+            [Event "Not from the start"]
+            [SetUp "1"]
+            [FEN "4k3/8/8/8/8/8/4P3/4K3 w - - 0 1"]
+
+            1. e4 Kd7 *
+            """;
+
+    @TempDir
+    Path dir;
+
+    private static ChessMove move(String from, String to) {
+        return new ChessMove(position(from), position(to), null);
+    }
+
+    private static ChessPosition position(String name) {
+        return new ChessPosition(name.charAt(1) - '0', name.charAt(0) - 'a' + 1);
+    }
+
+    private OpeningBook build(int maxPly, int minGames) throws IOException {
+        var builder = new OpeningBookBuilder(maxPly, minGames);
+        assertEquals(3, builder.addPgn(new StringReader(PGN)));
+        Path path = dir.resolve("test.book");
+        builder.write(path);
+        return OpeningBook.open(path);
+    }
+
+    @Test
+    void countsMovesAndResults() throws IOException {
+        var book = build(20, 1);
+        long start = Zobrist.hash(new ChessGame());
+
+        assertEquals(List.of(new OpeningBook.Entry(move("e2", "e4"), 2, 1, 1),
+                new OpeningBook.Entry(move("d2", "d4"), 1, 0, 0)), book.entries(start));
+        assertEquals(2, book.count(start));
+        assertEquals(Moves.of(12, 28), book.move(book.first(start)));
+
+        // after 1. e4 both replies were seen once
+        var position = Position.from(new ChessGame());
+        position.make(Moves.of(12, 28));
+        assertEquals(2, book.count(position.key()));
+        assertEquals(-1, book.first(position.key() ^ 1));
+        assertTrue(book.entries(position.key() ^ 1).isEmpty());
+    }
+
+    @Test
+    void stopsAtCastlingAndSkipsVariations() throws IOException {
+        var book = build(20, 1);
+        var position = Position.from(new ChessGame());
+        for (String san : List.of("e4", "e5", "Nf3", "Nc6", "Bb5", "a6", "Ba4", "Nf6")) {
+            int move = San.parse(position, san);
+            assertTrue(book.count(position.key()) > 0, san);
+            position.make(move);
+        }
+        // 5. O-O can't be played here, so the game stops going in
+        assertEquals(0, book.count(position.key()));
+
+        position = Position.from(new ChessGame());
+        for (String san : List.of("e4", "e5")) {
+            position.make(San.parse(position, san));
+        }
+        // the 2. Bc4 variation isn't in the book
+        assertEquals(List.of(new OpeningBook.Entry(move("g1", "f3"), 1, 1, 0)), book.entries(position.key()));
+        // game two's 1. e4 is the same record as game one's
+        assertEquals(8 + 5 + 4, book.size());
+    }
+
+    @Test
+    void leavesOutRareMovesAndDeepMoves() throws IOException {
+        var book = build(1, 2);
+        assertEquals(1, book.size());
+        assertEquals(2, book.games(0));
+        assertEquals(Zobrist.hash(new ChessGame()), book.key(0));
+    }
+
+    @Test
+    void emptyAndBadBooks() throws IOException {
+        assertEquals(0, OpeningBook.empty().size());
+        assertEquals(-1, OpeningBook.empty().first(42));
+
+        Path bad = dir.resolve("bad.book");
+        Files.writeString(bad, "this is not a book at all");
+        assertThrows(IOException.class, () -> OpeningBook.open(bad));
+    }
+}
@@ -0,0 +1,61 @@
+package chess.book;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.engine.Moves;
+import chess.engine.Position;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SanTests {
+    private static int square(String name) {
+        return (name.charAt(1) - '1') * 8 + name.charAt(0) - 'a';
+    }
+
+    private static int move(String from, String to) {
+        return Moves.of(square(from), square(to));
+    }
+
+    @Test
+    void readsPawnAndPieceMoves() {
+        var position = Position.from(new ChessGame());
+        assertEquals(move("e2", "e4"), San.parse(position, "e4"));
+        assertEquals(move("g1", "f3"), San.parse(position, "Nf3"));
+        assertEquals(move("g1", "f3"), San.parse(position, "Nf3+!?"));
+        assertEquals(Moves.NONE, San.parse(position, "e5"));
+        assertEquals(Moves.NONE, San.parse(position, "Bc4"));
+        assertEquals(Moves.NONE, San.parse(position, "O-O"));
+        assertEquals(Moves.NONE, San.parse(position, "xyz"));
+    }
+
+    @Test
+    void readsCapturesAndDisambiguation() {
+        var board = new ChessBoard();
+        board.addPiece(new ChessPosition(1, 5), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        board.addPiece(new ChessPosition(8, 5), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING));
+        // knights on b1 and f3 can both go to d2; rooks on a4 and a8 can both go to a6
+        board.addPiece(new ChessPosition(1, 2), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT));
+        board.addPiece(new ChessPosition(3, 6), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KNIGHT));
+        board.addPiece(new ChessPosition(4, 1), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+        board.addPiece(new ChessPosition(8, 1), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+        board.addPiece(new ChessPosition(4, 5), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
+        board.addPiece(new ChessPosition(5, 4), new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
+        board.addPiece(new ChessPosition(7, 2), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
+        var game = new ChessGame();
+        game.setBoard(board);
+        var position = Position.from(game);
+
+        assertEquals(Moves.NONE, San.parse(position, "Nd2"));
+        assertEquals(move("b1", "d2"), San.parse(position, "Nbd2"));
+        assertEquals(move("f3", "d2"), San.parse(position, "Nfd2"));
+        assertEquals(Moves.NONE, San.parse(position, "Ra6"));
+        assertEquals(move("a4", "a6"), San.parse(position, "R4a6"));
+        assertEquals(move("e4", "d5"), San.parse(position, "exd5"));
+        assertEquals(Moves.of(square("b7"), square("b8"), Position.QUEEN), San.parse(position, "b8=Q"));
+        assertEquals(Moves.of(square("b7"), square("b8"), Position.KNIGHT), San.parse(position, "b8N+"));
+        assertEquals(Moves.NONE, San.parse(position, "b8"));
+    }
+}
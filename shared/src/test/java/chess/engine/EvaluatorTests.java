@@ -0,0 +1,138 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.InvalidMoveException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static chess.engine.SearchTests.game;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EvaluatorTests {
+    @Test
+    void startingPositionIsEven() {
+        var position = Position.from(new ChessGame());
+        assertEquals(0, Evaluator.evaluate(position));
+        assertEquals(Evaluator.MAX_PHASE, position.phase());
+    }
+
+    @Test
+    void incrementalScoresMatchScoresFromScratch() {
+        var random = new Random(7);
+        for (int gameNumber = 0; gameNumber < 20; gameNumber++) {
+            var game = new ChessGame();
+            var position = Position.from(game);
+            for (int ply = 0; ply < 100; ply++) {
+                int[] moves = position.legalMoves();
+                if (moves.length == 0) {
+                    break;
+                }
+                int move = moves[random.nextInt(moves.length)];
+                position.make(move);
+                try {
+                    game.makeMove(Moves.toChessMove(move));
+                } catch (InvalidMoveException ex) {
+                    fail(ex);
+                }
+
+                var fresh = Position.from(game);
+                assertEquals(fresh.middlegameScore(), position.middlegameScore());
+                assertEquals(fresh.endgameScore(), position.endgameScore());
+                assertEquals(fresh.phase(), position.phase());
+                assertEquals(Evaluator.evaluate(fresh), Evaluator.evaluate(position));
+            }
+        }
+    }
+
+    @Test
+    void unmakeRestoresScores() {
+        var position = Position.from(new ChessGame());
+        int before = Evaluator.evaluate(position);
+        int[] line = {Moves.of(12, 28), Moves.of(51, 35), Moves.of(28, 35)};
+        for (int move : line) {
+            position.make(move);
+        }
+        for (int i = line.length - 1; i >= 0; i--) {
+            position.unmake(line[i]);
+        }
+        assertEquals(before, Evaluator.evaluate(position));
+    }
+
+    @Test
+    void colorsAreScoredTheSame() {
+        var white = Position.from(game("""
+                | | | | | | |k| |
+                | | | | | |p|p|p|
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | |P| | | | |
+                | | |N| | | | | |
+                |P|P| | | | | | |
+                | |K| | | | | |R|
+                """, ChessGame.TeamColor.WHITE));
+        // the same position with colors swapped and the board flipped
+        var black = Position.from(game("""
+                | |k| | | | | |r|
+                |p|p| | | | | | |
+                | | |n| | | | | |
+                | | | |p| | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | |P|P|P|
+                | | | | | | |K| |
+                """, ChessGame.TeamColor.BLACK));
+        assertEquals(Evaluator.evaluate(white), Evaluator.evaluate(black));
+    }
+
+    @Test
+    void passedPawnsAreWorthMoreInTheEndgame() {
+        var passed = Position.from(game("""
+                | | | | | | |k| |
+                | | | | | | | | |
+                | |P| | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | |K| |
+                """, ChessGame.TeamColor.WHITE));
+        var blocked = Position.from(game("""
+                | | | | | | |k| |
+                | |p| | | | | | |
+                | |P| | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | |p|
+                | | | | | | |K| |
+                """, ChessGame.TeamColor.WHITE));
+        // a pawn up either way, but only the passed one is about to queen
+        assertTrue(Evaluator.evaluate(passed) > Evaluator.evaluate(blocked) + 100);
+    }
+
+    @Test
+    void kingWithoutPawnsInFrontIsLessSafe() {
+        var sheltered = Position.from(game("""
+                |r| | | | | |k| |
+                | | | | | |p|p|p|
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | |P|P|P|
+                |R| | |Q| | |K| |
+                """, ChessGame.TeamColor.WHITE));
+        var exposed = Position.from(game("""
+                |r| | | | | |k| |
+                | | | | | |p|p|p|
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | |P|P|P|
+                | | | | | | | | |
+                | | | | | | | | |
+                |R| | |Q| | |K| |
+                """, ChessGame.TeamColor.WHITE));
+        assertTrue(Evaluator.evaluate(sheltered) > Evaluator.evaluate(exposed));
+    }
+}
@@ -0,0 +1,119 @@
+package chess.engine;
+
+import chess.ChessGame;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static chess.engine.SearchTests.game;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MovePickerTests {
+    private static int move(String from, String to) {
+        return Moves.of(SearchTests.move(from, to));
+    }
+
+    @Test
+    void staticExchange() {
+        var position = Position.from(game("""
+                | | | |r| | |k| |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | |r| | | | |
+                | | | | | | | |n|
+                | | | | | |N| | |
+                | | | |R| | | | |
+                | | | |R| | |K|Q|
+                """, ChessGame.TeamColor.WHITE));
+        // nothing guards the knight
+        assertEquals(320, position.see(move("f3", "h4")));
+        // the rook on d1 takes back after the one on d8 does
+        assertEquals(500, position.see(move("d2", "d5")));
+        // moving somewhere the king can take it
+        assertEquals(-900, position.see(move("h1", "h7")));
+
+        var queenTrade = Position.from(game("""
+                | | | | | | |k| |
+                | | |p| | | | | |
+                | | | |p| | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | |Q| | |K| |
+                """, ChessGame.TeamColor.WHITE));
+        // the pawn on c7 takes the queen back
+        assertEquals(-800, queenTrade.see(move("d1", "d6")));
+    }
+
+    @Test
+    void picksMovesInStages() {
+        var position = Position.from(game("""
+                | | | | | | | |k|
+                | | |p| | | | | |
+                | | | |p| | | | |
+                | | | | | | |n| |
+                | | | | | | | | |
+                | | | | | |N| | |
+                | | | | | | | | |
+                | | | |Q| | | |K|
+                """, ChessGame.TeamColor.WHITE));
+        var ordering = new MoveOrdering();
+        int killer = move("d1", "b3");
+        ordering.cutoff(Position.WHITE, killer, 4, 2, new int[0], 0, 0, 0);
+        int hashMove = move("h1", "h2");
+
+        var picker = new MovePicker();
+        picker.reset(position, ordering, hashMove, 2, 0, 0);
+        List<Integer> picked = new ArrayList<>();
+        for (int move = picker.next(); move != Moves.NONE; move = picker.next()) {
+            picked.add(move);
+        }
+
+        assertEquals(hashMove, picked.get(0));
+        assertEquals(move("f3", "g5"), picked.get(1));
+        assertEquals(killer, picked.get(2));
+        // taking a guarded pawn with the queen loses material, so it's left for last
+        assertEquals(move("d1", "d6"), picked.get(picked.size() - 1));
+
+        int[] all = new int[Position.MAX_MOVES];
+        int count = position.generate(all);
+        int[] expected = Arrays.copyOf(all, count);
+        int[] actual = picked.stream().mapToInt(Integer::intValue).toArray();
+        Arrays.sort(expected);
+        Arrays.sort(actual);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    void ignoresHashMoveThatCantBeMadeHere() {
+        var position = Position.from(new ChessGame());
+        var picker = new MovePicker();
+        // a move from another position with the same key, which is rare but can happen
+        picker.reset(position, new MoveOrdering(), move("e4", "e5"), 1, 0, 0);
+        int picked = 0;
+        for (int move = picker.next(); move != Moves.NONE; move = picker.next()) {
+            assertNotEquals(move("e4", "e5"), move);
+            picked++;
+        }
+        assertEquals(20, picked);
+    }
+
+    @Test
+    void historyRewardsCutoffsAndPunishesTheMovesTriedBefore() {
+        var ordering = new MoveOrdering();
+        int good = move("g1", "f3");
+        int bad = move("a2", "a3");
+        ordering.cutoff(Position.WHITE, good, 6, 3, new int[]{bad}, 1, 0, 0);
+        assertTrue(ordering.history(Position.WHITE, good) > 0);
+        assertTrue(ordering.history(Position.WHITE, bad) < 0);
+        assertEquals(0, ordering.history(Position.BLACK, good));
+
+        for (int i = 0; i < 1000; i++) {
+            ordering.cutoff(Position.WHITE, good, 20, 3, new int[0], 0, 0, 0);
+        }
+        assertTrue(ordering.history(Position.WHITE, good) <= MoveOrdering.MAX_HISTORY);
+    }
+}
@@ -0,0 +1,77 @@
+package chess.engine;
+
+import chess.ChessGame;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static chess.engine.SearchTests.game;
+import static chess.engine.SearchTests.move;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelSearchTests {
+    private final ParallelSearch parallel = new ParallelSearch(3);
+
+    @AfterEach
+    void shutdown() {
+        parallel.shutdown();
+    }
+
+    @Test
+    void findsTheSameMoveAsOneThread() {
+        var game = game("""
+                | | | | |k| | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | |q| | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | |R| | |K| |
+                """, ChessGame.TeamColor.WHITE);
+
+        SearchResult result = parallel.search(game, SearchLimits.depth(5), 4, new TranspositionTable(4));
+        assertEquals(move("d1", "d5"), result.move());
+        assertTrue(result.depth() >= 5);
+    }
+
+    @Test
+    void helpersAddToTheNodeCount() {
+        SearchResult alone = new Search(new TranspositionTable(4)).search(new ChessGame(), SearchLimits.depth(5));
+        SearchResult helped = parallel.search(new ChessGame(), SearchLimits.depth(5), 4, new TranspositionTable(4));
+
+        assertNotNull(helped.move());
+        // the helpers searched too, and all of it is counted
+        assertTrue(helped.nodes() > alone.nodes() / 2, alone.nodes() + " vs " + helped.nodes());
+        assertEquals(1, parallel.stats().searches());
+    }
+
+    @Test
+    void searchesNeverUseMoreHelpersThanTheCap() throws Exception {
+        var table = new TranspositionTable(4);
+        var first = CompletableFuture.supplyAsync(() ->
+                parallel.search(new ChessGame(), SearchLimits.millis(400), 8, table));
+        var second = CompletableFuture.supplyAsync(() ->
+                parallel.search(new ChessGame(), SearchLimits.millis(400), 8, table));
+
+        int mostBusy = 0;
+        while (!first.isDone() || !second.isDone()) {
+            mostBusy = Math.max(mostBusy, parallel.stats().busyHelpers());
+            Thread.sleep(5);
+        }
+        assertNotNull(first.get().move());
+        assertNotNull(second.get().move());
+        assertTrue(mostBusy > 0 && mostBusy <= 3, "busy helpers: " + mostBusy);
+        assertEquals(0, parallel.stats().busyHelpers());
+        assertEquals(0, parallel.stats().running());
+    }
+
+    @Test
+    void oneThreadNeedsNoHelpers() {
+        SearchResult result = parallel.search(new ChessGame(), SearchLimits.depth(3), 1, new TranspositionTable(1));
+        assertNotNull(result.move());
+        assertEquals(3, result.depth());
+        assertEquals(0, parallel.stats().busyHelpers());
+    }
+}
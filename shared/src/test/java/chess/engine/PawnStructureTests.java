@@ -0,0 +1,138 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import org.junit.jupiter.api.Test;
+import passoff.chess.TestUtilities;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static chess.engine.SearchTests.game;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PawnStructureTests {
+    private static final ChessGame.TeamColor WHITE = ChessGame.TeamColor.WHITE;
+    private static final ChessGame.TeamColor BLACK = ChessGame.TeamColor.BLACK;
+
+    private static List<ChessPosition> squares(String... names) {
+        return Arrays.stream(names).map(SearchTests::square).toList();
+    }
+
+    @Test
+    void findsWeakAndStrongPawns() {
+        var structure = PawnStructure.of(TestUtilities.loadBoard("""
+                | | | | | | |k| |
+                |p| | | | |p| |p|
+                | | | | |p| | | |
+                | | | | | | | | |
+                | |P| | | | |P| |
+                | |P| | | | | | |
+                | | |P| | | | | |
+                | | | | | | |K| |
+                """));
+
+        // b3 is behind b4; g4 has no white pawns beside it
+        assertEquals(squares("b3"), structure.doubled(WHITE));
+        assertEquals(squares("g4"), structure.isolated(WHITE));
+        // no black pawn on the b, c or d files can stop c2, and none of the white ones can stop e6
+        assertEquals(squares("c2"), structure.passed(WHITE));
+        assertEquals(squares("e6"), structure.passed(BLACK));
+        assertEquals(2, structure.islands(WHITE));
+        assertEquals(3, structure.islands(BLACK));
+    }
+
+    @Test
+    void findsBackwardPawns() {
+        var structure = PawnStructure.of(TestUtilities.loadBoard("""
+                | | | | | | |k| |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | |p| | | |
+                | | |P| |P| | | |
+                | | | |P| | | | |
+                | | | | | | | | |
+                | | | | | | |K| |
+                """));
+        // d3 is behind both its neighbours, and e5 takes it if it moves up to d4
+        assertEquals(squares("d3"), structure.backward(WHITE));
+        assertEquals(List.of(), structure.backward(BLACK));
+    }
+
+    @Test
+    void pawnKeyFollowsThePawnsOnly() {
+        var random = new Random(11);
+        var game = new ChessGame();
+        var position = Position.from(game);
+        for (int ply = 0; ply < 200; ply++) {
+            int[] moves = position.legalMoves();
+            if (moves.length == 0) {
+                break;
+            }
+            position.make(moves[random.nextInt(moves.length)]);
+        }
+        // rebuild the position from its board and compare
+        var rebuilt = new ChessGame();
+        var board = new ChessBoard();
+        for (int square = 0; square < 64; square++) {
+            int piece = position.pieceAt(square);
+            if (piece != 0) {
+                board.addPiece(Moves.position(square), new ChessPiece(
+                        ChessGame.TeamColor.values()[Position.color(piece)],
+                        ChessPiece.PieceType.values()[Position.type(piece)]));
+            }
+        }
+        rebuilt.setBoard(board);
+        rebuilt.setTeamTurn(ChessGame.TeamColor.values()[position.sideToMove()]);
+        var fresh = Position.from(rebuilt);
+
+        assertEquals(fresh.pawnKey(), position.pawnKey());
+        assertEquals(fresh.pawns(Position.WHITE), position.pawns(Position.WHITE));
+        assertEquals(fresh.pawns(Position.BLACK), position.pawns(Position.BLACK));
+    }
+
+    @Test
+    void tableGivesTheSameScoresAndHitsForKnightMoves() {
+        var table = new PawnHashTable(16);
+        var position = Position.from(new ChessGame());
+        assertEquals(Evaluator.evaluate(position), Evaluator.evaluate(position, table));
+        assertEquals(1, table.misses());
+
+        // moving knights doesn't change the pawns
+        position.make(Moves.of(6, 21));
+        position.make(Moves.of(62, 45));
+        assertEquals(Evaluator.evaluate(position), Evaluator.evaluate(position, table));
+        assertEquals(1, table.hits());
+        assertEquals(1, table.misses());
+    }
+
+    @Test
+    void passedPawnScoresMoreAsItAdvances() {
+        var further = Position.from(game("""
+                | | | | | | |k| |
+                | | | | | | | | |
+                |P| | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | |K| |
+                """, WHITE));
+        var behind = Position.from(game("""
+                | | | | | | |k| |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                |P| | | | | | | |
+                | | | | | | | | |
+                | | | | | | |K| |
+                """, WHITE));
+        int furtherScore = PawnStructure.score(further.pawns(Position.WHITE), 0);
+        int behindScore = PawnStructure.score(behind.pawns(Position.WHITE), 0);
+        assertTrue(Evaluator.endgame(furtherScore) > Evaluator.endgame(behindScore));
+    }
+}
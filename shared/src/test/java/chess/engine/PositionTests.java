@@ -0,0 +1,124 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import chess.Zobrist;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PositionTests {
+    private static long perft(Position position, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        long total = 0;
+        for (int move : position.legalMoves()) {
+            position.make(move);
+            total += perft(position, depth - 1);
+            position.unmake(move);
+        }
+        return total;
+    }
+
+    @Test
+    void perftFromTheStart() {
+        var position = Position.from(new ChessGame());
+        assertEquals(20, perft(position, 1));
+        assertEquals(400, perft(position, 2));
+        assertEquals(8_902, perft(position, 3));
+        // castling and en passant can't happen this early, so these match the standard counts
+        assertEquals(197_281, perft(position, 4));
+        assertEquals(Zobrist.hash(new ChessGame()), position.key());
+    }
+
+    @Test
+    void agreesWithChessGameThroughRandomGames() throws InvalidMoveException {
+        var random = new Random(42);
+        for (int gameNumber = 0; gameNumber < 20; gameNumber++) {
+            var game = new ChessGame();
+            var position = Position.from(game);
+            for (int ply = 0; ply < 120; ply++) {
+                Set<ChessMove> expected = validMoves(game);
+                Set<ChessMove> actual = new HashSet<>();
+                for (int move : position.legalMoves()) {
+                    actual.add(Moves.toChessMove(move));
+                }
+                assertEquals(expected, actual, "moves differ in\n" + game);
+                assertEquals(Zobrist.hash(game), position.key());
+                if (expected.isEmpty()) {
+                    assertEquals(game.isInCheck(game.getTeamTurn()), position.inCheck());
+                    break;
+                }
+
+                var choices = new ArrayList<>(expected);
+                choices.sort((a, b) -> Integer.compare(Moves.of(a), Moves.of(b)));
+                ChessMove move = choices.get(random.nextInt(choices.size()));
+                game.makeMove(move);
+                position.make(position.find(move));
+            }
+        }
+    }
+
+    private static Set<ChessMove> validMoves(ChessGame game) {
+        Set<ChessMove> moves = new HashSet<>();
+        for (int row = 1; row <= 8; row++) {
+            for (int col = 1; col <= 8; col++) {
+                var square = new ChessPosition(row, col);
+                var piece = game.getBoard().getPiece(square);
+                if (piece != null && piece.getTeamColor() == game.getTeamTurn()) {
+                    moves.addAll(game.validMoves(square));
+                }
+            }
+        }
+        return moves;
+    }
+
+    @Test
+    void unmakePutsEverythingBack() {
+        var position = Position.from(new ChessGame());
+        long key = position.key();
+        int[] pieces = new int[64];
+        for (int square = 0; square < 64; square++) {
+            pieces[square] = position.pieceAt(square);
+        }
+
+        int[] line = {Moves.of(12, 28), Moves.of(51, 35), Moves.of(28, 35)};
+        for (int move : line) {
+            position.make(move);
+        }
+        assertEquals(Position.piece(Position.WHITE, Position.PAWN), position.pieceAt(35));
+        for (int i = line.length - 1; i >= 0; i--) {
+            position.unmake(line[i]);
+        }
+
+        assertEquals(key, position.key());
+        assertEquals(0, position.ply());
+        for (int square = 0; square < 64; square++) {
+            assertEquals(pieces[square], position.pieceAt(square));
+        }
+    }
+
+    @Test
+    void nullMovePassesTheTurn() {
+        var position = Position.from(new ChessGame());
+        long key = position.key();
+        position.make(Moves.of(12, 28));
+        position.makeNull();
+        // the same as if black had moved and white was to move again
+        assertEquals(Position.WHITE, position.sideToMove());
+        assertNotEquals(key, position.key());
+        position.unmakeNull();
+        position.unmake(Moves.of(12, 28));
+        assertEquals(key, position.key());
+        assertEquals(Position.WHITE, position.sideToMove());
+        assertEquals(0, position.ply());
+    }
+}
@@ -0,0 +1,149 @@
+package chess.engine;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import org.junit.jupiter.api.Test;
+import passoff.chess.TestUtilities;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchTests {
+    static ChessGame game(String board, ChessGame.TeamColor toMove) {
+        var game = new ChessGame();
+        game.setBoard(TestUtilities.loadBoard(board));
+        game.setTeamTurn(toMove);
+        return game;
+    }
+
+    static ChessMove move(String from, String to) {
+        return new ChessMove(square(from), square(to), null);
+    }
+
+    static ChessPosition square(String name) {
+        return new ChessPosition(name.charAt(1) - '0', name.charAt(0) - 'a' + 1);
+    }
+
+    @Test
+    void findsMateInOne() {
+        var game = game("""
+                | | | | | | |k| |
+                | | | | | |p|p|p|
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                |R| | | | | |K| |
+                """, ChessGame.TeamColor.WHITE);
+
+        SearchResult result = new Search().search(game, SearchLimits.depth(4));
+        assertEquals(move("a1", "a8"), result.move());
+        assertEquals(1, result.mateIn());
+    }
+
+    @Test
+    void takesAHangingQueen() {
+        var game = game("""
+                | | | | |k| | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | |q| | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | |R| | |K| |
+                """, ChessGame.TeamColor.WHITE);
+
+        SearchResult result = new Search().search(game, SearchLimits.depth(3));
+        assertEquals(move("d1", "d5"), result.move());
+        assertTrue(result.score() > 300);
+    }
+
+    @Test
+    void seesTheRecapturePastTheLastPly() {
+        var game = game("""
+                | | | | | | |k| |
+                | | |p| | | | | |
+                | | | |p| | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | |Q| | |K| |
+                """, ChessGame.TeamColor.WHITE);
+
+        // one ply deep, the pawn looks free, but the capture search sees c7 take the queen back
+        SearchResult result = new Search().search(game, SearchLimits.depth(1));
+        assertNotEquals(move("d1", "d6"), result.move());
+        assertTrue(result.score() > 500);
+    }
+
+    @Test
+    void findsMateBehindChecks() {
+        var game = game("""
+                | | | |r| | |k| |
+                | | | | | |p|p|p|
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | |R| | | |
+                | | | | |R| |K| |
+                """, ChessGame.TeamColor.WHITE);
+
+        // Re8+ forces Rxe8, then Rxe8 is mate
+        SearchResult result = new Search().search(game, SearchLimits.depth(5));
+        assertEquals(move("e2", "e8"), result.move());
+        assertEquals(2, result.mateIn());
+    }
+
+    @Test
+    void reportsNoMoveWhenMated() {
+        var game = game("""
+                |R| | | | | |k| |
+                | | | | | |p|p|p|
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | | | |
+                | | | | | | |K| |
+                """, ChessGame.TeamColor.BLACK);
+
+        SearchResult result = new Search().search(game, SearchLimits.depth(3));
+        assertNull(result.move());
+        assertEquals(-Search.MATE, result.score());
+    }
+
+    @Test
+    void staysWithinNodeLimit() {
+        SearchResult result = new Search().search(new ChessGame(), SearchLimits.nodes(20_000));
+        assertNotNull(result.move());
+        assertTrue(result.depth() >= 1);
+        assertTrue(result.nodes() <= 20_000, "visited " + result.nodes());
+    }
+
+    @Test
+    void stopsWhenAsked() throws Exception {
+        var search = new Search();
+        var running = CompletableFuture.supplyAsync(() -> search.search(new ChessGame(), SearchLimits.depth(30)));
+        Thread.sleep(100);
+        search.stop();
+
+        SearchResult result = running.get(5, TimeUnit.SECONDS);
+        assertNotNull(result.move());
+        assertTrue(result.depth() < 30);
+    }
+
+    @Test
+    void leavesTheGameAlone() {
+        var game = new ChessGame();
+        var before = new ChessGame(game);
+        new Search().search(game, SearchLimits.depth(3));
+        assertEquals(before, game);
+    }
+}
@@ -0,0 +1,137 @@
+package chess.engine;
+
+import chess.ChessGame;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TranspositionTableTests {
+    // keys that differ only above the bits that pick the bucket all land in the same bucket
+    private static long sameBucket(int n) {
+        return 0x1234L | (long) n << 40;
+    }
+
+    @Test
+    void storesAndProbes() {
+        var table = new TranspositionTable(1);
+        assertEquals(1 << 20, table.sizeBytes());
+
+        long key = 0x9E3779B97F4A7C15L;
+        assertEquals(0, table.probe(key));
+        table.store(key, Moves.of(12, 28), -1234, 7, TranspositionTable.LOWER);
+
+        long data = table.probe(key);
+        assertEquals(Moves.of(12, 28), TranspositionTable.move(data));
+        assertEquals(-1234, TranspositionTable.score(data));
+        assertEquals(7, TranspositionTable.depth(data));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(data));
+        assertEquals(0, table.probe(key ^ 1));
+    }
+
+    @Test
+    void keepsTheMoveWhenAPositionIsStoredAgainWithoutOne() {
+        var table = new TranspositionTable(1);
+        table.store(42, Moves.of(1, 18), 10, 3, TranspositionTable.EXACT);
+        table.store(42, Moves.NONE, -50, 4, TranspositionTable.UPPER);
+
+        long data = table.probe(42);
+        assertEquals(Moves.of(1, 18), TranspositionTable.move(data));
+        assertEquals(-50, TranspositionTable.score(data));
+    }
+
+    @Test
+    void fullBucketReplacesTheShallowestEntry() {
+        var table = new TranspositionTable(1);
+        int[] depths = {9, 2, 7, 5};
+        for (int i = 0; i < 4; i++) {
+            table.store(sameBucket(i), Moves.NONE, 0, depths[i], TranspositionTable.EXACT);
+        }
+        table.store(sameBucket(4), Moves.NONE, 0, 1, TranspositionTable.EXACT);
+
+        assertEquals(0, table.probe(sameBucket(1)));
+        assertNotEquals(0, table.probe(sameBucket(4)));
+        assertNotEquals(0, table.probe(sameBucket(0)));
+    }
+
+    @Test
+    void oldEntriesAreReplacedFirst() {
+        var table = new TranspositionTable(1);
+        table.store(sameBucket(0), Moves.NONE, 0, 12, TranspositionTable.EXACT);
+        table.newSearch();
+        table.newSearch();
+        for (int i = 1; i < 4; i++) {
+            table.store(sameBucket(i), Moves.NONE, 0, 6, TranspositionTable.EXACT);
+        }
+        table.store(sameBucket(4), Moves.NONE, 0, 6, TranspositionTable.EXACT);
+
+        // deepest, but two searches old
+        assertEquals(0, table.probe(sameBucket(0)));
+    }
+
+    @Test
+    void mateScoresAreCountedFromThePosition() {
+        int mateInFiveFromRoot = Search.MATE - 5;
+        int stored = TranspositionTable.toTable(mateInFiveFromRoot, 3);
+        // reached again two plies deeper, it's mate two plies later
+        assertEquals(Search.MATE - 7, TranspositionTable.fromTable(stored, 5));
+        assertEquals(150, TranspositionTable.fromTable(TranspositionTable.toTable(150, 9), 2));
+    }
+
+    @Test
+    void threadsSharingATableNeverSeeAnotherPositionsEntry() throws Exception {
+        // a tiny table so threads keep writing over each other's entries
+        var table = new TranspositionTable(1);
+        var wrong = new AtomicLong();
+        var hits = new AtomicLong();
+        var workers = new ArrayList<CompletableFuture<Void>>();
+        for (int t = 0; t < 4; t++) {
+            long seed = t;
+            workers.add(CompletableFuture.runAsync(() -> {
+                var random = new SplittableRandom(seed);
+                for (int i = 0; i < 500_000; i++) {
+                    // keys from a small set, each with its own move, score and depth
+                    long key = random.nextInt(200_000) * 0x9E3779B97F4A7C15L;
+                    if (random.nextBoolean()) {
+                        table.store(key, expectedMove(key), expectedScore(key), 5, TranspositionTable.EXACT);
+                    } else {
+                        long data = table.probe(key);
+                        if (data != 0) {
+                            hits.incrementAndGet();
+                            if (TranspositionTable.move(data) != expectedMove(key)
+                                    || TranspositionTable.score(data) != expectedScore(key)) {
+                                wrong.incrementAndGet();
+                            }
+                        }
+                    }
+                }
+            }));
+        }
+        CompletableFuture.allOf(workers.toArray(CompletableFuture[]::new)).get();
+        assertTrue(hits.get() > 0);
+        assertEquals(0, wrong.get());
+    }
+
+    private static int expectedMove(long key) {
+        return (int) (key >>> 20 & 0x7FFF);
+    }
+
+    private static int expectedScore(long key) {
+        return (int) (key >>> 40 & 0x3FFF) - 8000;
+    }
+
+    @Test
+    void sharedTableMakesTheSecondSearchCheaper() {
+        var table = new TranspositionTable(8);
+        var first = new Search(table).search(new ChessGame(), SearchLimits.depth(5));
+        var second = new Search(table).search(new ChessGame(), SearchLimits.depth(5));
+
+        assertEquals(first.move(), second.move());
+        assertEquals(first.score(), second.score());
+        assertTrue(second.nodes() < first.nodes() / 2, first.nodes() + " then " + second.nodes());
+    }
+}
@@ -0,0 +1,111 @@
+package websocket.commands;
+
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryCommandCodecTests {
+    private final BinaryCommandCodec.Encoder encoder = new BinaryCommandCodec.Encoder();
+    private final BinaryCommandCodec.Decoder decoder = new BinaryCommandCodec.Decoder();
+
+    private UserGameCommand roundTrip(UserGameCommand command) {
+        return decoder.decode(ByteBuffer.wrap(encoder.encode(command)));
+    }
+
+    @Test
+    void tokenIsOnlySentInFullOnce() {
+        var connect = new UserGameCommand(UserGameCommand.CommandType.CONNECT, "token-abc", 300);
+        byte[] first = encoder.encode(connect);
+        byte[] second = encoder.encode(connect);
+        assertTrue(second.length < first.length);
+
+        assertEquals(connect, decoder.decode(ByteBuffer.wrap(first)));
+        assertEquals(connect, decoder.decode(ByteBuffer.wrap(second)));
+    }
+
+    @Test
+    void movesRoundTrip() {
+        roundTrip(new UserGameCommand(UserGameCommand.CommandType.CONNECT, "token", 1));
+        var promote = new ChessMove(new ChessPosition(7, 8), new ChessPosition(8, 8), ChessPiece.PieceType.KNIGHT);
+        var plain = new ChessMove(new ChessPosition(1, 1), new ChessPosition(2, 1), null);
+
+        for (ChessMove move : new ChessMove[]{promote, plain}) {
+            var decoded = (MakeMoveCommand) roundTrip(new MakeMoveCommand("token", 70_000, move));
+            assertEquals(move, decoded.getMove());
+            assertEquals("token", decoded.getAuthToken());
+            assertEquals(70_000, decoded.getGameID());
+        }
+        // type, 3 byte gameID, 1 byte handle, 2 byte move
+        assertEquals(7, encoder.encode(new MakeMoveCommand("token", 70_000, plain)).length);
+    }
+
+    @Test
+    void connectCarriesLastSequence() {
+        var resume = (ConnectCommand) roundTrip(new ConnectCommand("token", 5, 1_760_000_000_000_123L));
+        assertEquals(1_760_000_000_000_123L, resume.getLastSequence());
+
+        var fresh = (ConnectCommand) roundTrip(new ConnectCommand("token", 5, null));
+        assertNull(fresh.getLastSequence());
+    }
+
+    @Test
+    void analyzeCarriesLimits() {
+        var limited = (AnalyzeCommand) roundTrip(new AnalyzeCommand("token", 5, 12, 2_500L));
+        assertEquals(12, limited.getDepth());
+        assertEquals(2_500L, limited.getMillis());
+        var defaults = (AnalyzeCommand) roundTrip(new AnalyzeCommand("token", 5, null, null));
+        assertNull(defaults.getDepth());
+        assertNull(defaults.getMillis());
+    }
+
+    @Test
+    void rejectsBadFrames() {
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode(ByteBuffer.wrap(new byte[]{9, 1, 0})));
+        // handle 1 was never set up
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode(ByteBuffer.wrap(new byte[]{0, 1, 1})));
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode(ByteBuffer.wrap(new byte[]{1, 1})));
+    }
+
+    @Test
+    void rejectsVarintsTooBigForTheirField() {
+        // gameID 0xFFFFFFFF would come out as -1 if it were cut down to an int
+        byte[] overflow = {0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, 0, 1, 'x'};
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode(ByteBuffer.wrap(overflow)));
+        // Integer.MAX_VALUE + 1 as a token length
+        byte[] length = {2, 1, 0, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x08};
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode(ByteBuffer.wrap(length)));
+        // six bytes is too long for any int
+        byte[] tooLong = {2, (byte) 0x81, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x00, 0, 1, 'x'};
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode(ByteBuffer.wrap(tooLong)));
+
+        byte[] largest = {2, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 0, 1, 'x'};
+        assertEquals(Integer.MAX_VALUE, decoder.decode(ByteBuffer.wrap(largest)).getGameID());
+    }
+
+    @Test
+    void rejectsNegativeSequence() {
+        var resume = encoder.encode(new ConnectCommand("token", 5, -1L));
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode(ByteBuffer.wrap(resume)));
+    }
+
+    @Test
+    void commandTypesHaveFixedCodes() {
+        UserGameCommand.CommandType[] expected = {
+                UserGameCommand.CommandType.CONNECT,
+                UserGameCommand.CommandType.MAKE_MOVE,
+                UserGameCommand.CommandType.LEAVE,
+                UserGameCommand.CommandType.RESIGN,
+                UserGameCommand.CommandType.RESYNC,
+                UserGameCommand.CommandType.ANALYZE
+        };
+        for (int code = 0; code < expected.length; code++) {
+            var command = new UserGameCommand(expected[code], "token", 1);
+            assertEquals(code, encoder.encode(command)[0]);
+        }
+    }
+}
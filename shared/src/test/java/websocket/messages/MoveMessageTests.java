@@ -0,0 +1,68 @@
+package websocket.messages;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import chess.Zobrist;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoveMessageTests {
+    private static ChessMove move(String from, String to) {
+        return new ChessMove(square(from), square(to), null);
+    }
+
+    private static ChessPosition square(String name) {
+        return new ChessPosition(name.charAt(1) - '0', name.charAt(0) - 'a' + 1);
+    }
+
+    // what the server sends after making the move on its own copy of the game
+    private static MoveMessage update(ChessGame before, ChessMove move) throws InvalidMoveException {
+        var game = new ChessGame(before);
+        game.makeMove(move);
+        return new MoveMessage(1, move, game.getPly(), Zobrist.hash(game), game.getTeamTurn(),
+                false, false, false);
+    }
+
+    @Test
+    void appliesMove() throws InvalidMoveException {
+        var game = new ChessGame();
+        MoveMessage update = update(game, move("e2", "e4"));
+
+        ChessGame next = update.applyTo(game);
+        assertNotNull(next);
+        assertEquals(1, next.getPly());
+        assertEquals(ChessGame.TeamColor.BLACK, next.getTeamTurn());
+        assertEquals(update.getHash(), Zobrist.hash(next));
+        // the game it was given is left alone
+        assertEquals(new ChessGame(), game);
+    }
+
+    @Test
+    void plyGapNeedsResync() throws InvalidMoveException {
+        var game = new ChessGame();
+        ChessGame afterFirst = update(game, move("e2", "e4")).applyTo(game);
+        MoveMessage second = update(afterFirst, move("e7", "e5"));
+        MoveMessage third = update(second.applyTo(afterFirst), move("g1", "f3"));
+
+        // the second MOVE never arrived
+        assertNull(third.applyTo(afterFirst));
+        // and one that arrives twice
+        assertNull(second.applyTo(second.applyTo(afterFirst)));
+    }
+
+    @Test
+    void wrongBoardNeedsResync() throws InvalidMoveException {
+        var game = new ChessGame();
+        MoveMessage update = update(game, move("e2", "e4"));
+
+        // same ply count, different position
+        var other = new ChessGame();
+        other.makeMove(move("d2", "d4"));
+        other.makeMove(move("d7", "d5"));
+        other.setPly(0);
+        assertNull(update.applyTo(other));
+    }
+}